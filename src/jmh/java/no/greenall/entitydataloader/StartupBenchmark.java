@@ -0,0 +1,91 @@
+package no.greenall.entitydataloader;
+
+import no.greenall.entitydataloader.util.StubRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.nonNull;
+
+/**
+ * The startup of a small load from the command line, measured once in each of a number of fresh JVMs: the time from
+ * {@link App#main(String[])} to the first request the registry receives, and to the end of the load. The stub
+ * registry is started before the measurement, so Jackson and the JDK HTTP server are loaded ahead of the load.
+ *
+ * <p>The JVM of each fork can be given an AppCDS archive to compare, e.g.
+ * {@code ./gradlew jmh -PjmhArgs='StartupBenchmark -jvmArgsAppend -XX:SharedArchiveFile=app.jsa'}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class StartupBenchmark {
+    private static final String API_KEY = "benchmark";
+    private static final String HUMORD_MINI_TTL = "humord-mini.ttl";
+    private static final String LOAD_THREAD = "startup-benchmark-load";
+    private static final long FIRST_REQUEST_TIMEOUT_MINUTES = 1;
+    private static final String NO_REQUEST_ERROR = "The load sent no request to the registry";
+
+    private StubRegistry stubRegistry;
+    private String[] args;
+    private Thread load;
+    private PrintStream systemOut;
+
+    @Setup(Level.Trial)
+    public void startRegistry() throws IOException {
+        stubRegistry = new StubRegistry();
+        String filepath = getClass().getClassLoader().getResource(HUMORD_MINI_TTL).getPath();
+        // The parse cache is left out, so that every fork parses the input like the first load of a file
+        args = new String[]{"-i", filepath, "-u", stubRegistry.getUrl().toString(), "-k", API_KEY, "--no-cache"};
+        systemOut = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+                // Progress output is not part of the measurement
+            }
+        }));
+    }
+
+    @TearDown(Level.Trial)
+    public void stopRegistry() throws InterruptedException {
+        if (nonNull(load)) {
+            load.join();
+        }
+        System.setOut(systemOut);
+        stubRegistry.close();
+    }
+
+    /**
+     * Starts the load and returns when the registry receives its first request, leaving the rest of the load to
+     * finish before the registry is stopped.
+     */
+    @Benchmark
+    public void timeToFirstRequest() throws InterruptedException {
+        load = new Thread(() -> App.main(args), LOAD_THREAD);
+        load.start();
+        if (!stubRegistry.awaitFirstRequest(FIRST_REQUEST_TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+            throw new IllegalStateException(NO_REQUEST_ERROR);
+        }
+    }
+
+    @Benchmark
+    public void smallLoad() {
+        App.main(args);
+    }
+}
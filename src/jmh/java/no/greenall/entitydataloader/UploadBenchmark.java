@@ -0,0 +1,94 @@
+package no.greenall.entitydataloader;
+
+import no.greenall.entitydataloader.entity.EntityDataManager;
+import no.greenall.entitydataloader.util.StubRegistry;
+import no.greenall.entitydataloader.util.SyntheticVocabulary;
+import org.apache.jena.riot.Lang;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A whole load of a vocabulary, from parsing the file to the last update, against an in-process stub registry.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class UploadBenchmark {
+    private static final String API_KEY = "benchmark";
+
+    @Param({"1000", "10000", "100000"})
+    public int vocabularySize;
+
+    @Param({"1", "8"})
+    public int concurrency;
+
+    @Param({"false", "true"})
+    public boolean singlePass;
+
+    private File directory;
+    private File input;
+    private StubRegistry stubRegistry;
+    private PrintStream systemOut;
+
+    @Setup(Level.Trial)
+    public void writeInput() throws IOException {
+        directory = Files.createTempDirectory("upload-benchmark").toFile();
+        input = SyntheticVocabulary.write(vocabularySize, Lang.NTRIPLES, directory);
+        systemOut = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+                // Progress output is not part of the measurement
+            }
+        }));
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteInput() {
+        System.setOut(systemOut);
+        input.delete();
+        directory.delete();
+    }
+
+    /**
+     * Every load gets an empty registry, so that the entities of earlier loads do not accumulate in the heap.
+     */
+    @Setup(Level.Iteration)
+    public void startRegistry() throws IOException {
+        stubRegistry = new StubRegistry();
+    }
+
+    @TearDown(Level.Iteration)
+    public void stopRegistry() {
+        stubRegistry.close();
+    }
+
+    @Benchmark
+    public void upload() {
+        LoaderOptions options = new LoaderOptions();
+        options.setConcurrency(concurrency);
+        options.setSinglePass(singlePass);
+        new EntityDataManager(input.getPath(), Lang.NTRIPLES, stubRegistry.getUrl().toString(), API_KEY, options);
+    }
+}
@@ -0,0 +1,81 @@
+package no.greenall.entitydataloader.entity;
+
+import no.greenall.entitydataloader.util.SyntheticVocabulary;
+import org.apache.jena.rdf.model.Model;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-concept work of a load on a parsed vocabulary: extracting the descriptions of all concepts, and remapping
+ * and serializing a single description, cycling through the concepts so that caches see the whole vocabulary.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ConceptBenchmark {
+    private static final String REGISTRY_ENTITY_URL = "https://registry.example.org/entity/";
+
+    @Param({"1000", "10000", "100000"})
+    public int vocabularySize;
+
+    private Model vocabulary;
+    private List<Model> descriptions;
+    private List<Model> remappedDescriptions;
+    private IriMapping mappedIRIs;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void generateVocabulary() {
+        vocabulary = SyntheticVocabulary.generate(vocabularySize);
+        ConceptIndex conceptIndex = new ConceptIndex(vocabulary);
+        mappedIRIs = new InMemoryIriMapping();
+        descriptions = new ArrayList<>();
+        for (ConceptDescription concept : conceptIndex) {
+            mappedIRIs.put(concept.getConceptIRI(),
+                    REGISTRY_ENTITY_URL + PredictedIriMapping.idFor(concept.getConceptIRI()));
+            descriptions.add(concept.getModel());
+        }
+        remappedDescriptions = new ArrayList<>();
+        for (Model description : descriptions) {
+            remappedDescriptions.add(EntityDataManager.remapIRIs(description, mappedIRIs));
+        }
+    }
+
+    private int nextConcept() {
+        next = (next + 1) % descriptions.size();
+        return next;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public ConceptIndex extract() {
+        return new ConceptIndex(vocabulary);
+    }
+
+    @Benchmark
+    public Model remap() {
+        return EntityDataManager.remapIRIs(descriptions.get(nextConcept()), mappedIRIs);
+    }
+
+    @Benchmark
+    public String serialize() {
+        return EntityDataManager.modelToString(remappedDescriptions.get(nextConcept()));
+    }
+}
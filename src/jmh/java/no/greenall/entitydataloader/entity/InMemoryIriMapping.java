@@ -0,0 +1,22 @@
+package no.greenall.entitydataloader.entity;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A mapping in a plain hash map of strings, the baseline that the benchmarks compare the compact dictionary against.
+ */
+public class InMemoryIriMapping implements IriMapping {
+
+    private final Map<String, String> mappedIRIs = new ConcurrentHashMap<>();
+
+    @Override
+    public String get(String sourceIRI) {
+        return mappedIRIs.get(sourceIRI);
+    }
+
+    @Override
+    public void put(String sourceIRI, String replacementIRI) {
+        mappedIRIs.put(sourceIRI, replacementIRI);
+    }
+}
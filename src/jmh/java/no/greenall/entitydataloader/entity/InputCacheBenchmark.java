@@ -0,0 +1,75 @@
+package no.greenall.entitydataloader.entity;
+
+import no.greenall.entitydataloader.entity.util.Serialization;
+import no.greenall.entitydataloader.util.SyntheticVocabulary;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading a whole vocabulary into a model from the {@link InputCache}, to compare with parsing it in
+ * {@link ParseBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class InputCacheBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int vocabularySize;
+
+    @Param({"turtle", "ntriples"})
+    public String serialization;
+
+    private Lang lang;
+    private File directory;
+    private File input;
+
+    @Setup(Level.Trial)
+    public void writeCache() throws IOException {
+        lang = Serialization.getByName(serialization);
+        directory = Files.createTempDirectory("input-cache-benchmark").toFile();
+        input = SyntheticVocabulary.write(vocabularySize, lang, directory);
+        InputCache inputCache = new InputCache(directory.getPath(), input.getPath(), lang);
+        Model model = ModelFactory.createDefaultModel();
+        inputCache.read(model);
+        EntityDataManager.loadData(model, input.getPath(), lang);
+        inputCache.write(model);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteCache() {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Benchmark
+    public Model readCache() {
+        Model model = ModelFactory.createDefaultModel();
+        new InputCache(directory.getPath(), input.getPath(), lang).read(model);
+        return model;
+    }
+}
@@ -0,0 +1,79 @@
+package no.greenall.entitydataloader.entity;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups in the mapping stores, and the memory each store retains per mapping, measured after a full collection
+ * on the heap and in direct buffers and printed when the mapping is filled.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class MappingBenchmark {
+    private static final String CONCEPT_TEMPLATE = "http://data.ub.uio.no/humord/c%d";
+    private static final String REGISTRY_ENTITY_URL = "https://registry.example.org/entity/";
+    private static final String FOOTPRINT_OUTPUT_TEMPLATE = "%n%s store: %d bytes per mapping for %d mappings%n";
+    private static final String DIRECT_BUFFER_POOL = "direct";
+
+    @Param({"hashmap", "compact", "compact-offheap"})
+    public String store;
+
+    @Param({"100000", "1000000"})
+    public int mappings;
+
+    private IriMapping mappedIRIs;
+    private String[] sourceIRIs;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void fillMapping() {
+        sourceIRIs = new String[mappings];
+        for (int i = 0; i < mappings; i++) {
+            sourceIRIs[i] = String.format(CONCEPT_TEMPLATE, i);
+        }
+        long before = retainedBytes();
+        mappedIRIs = "hashmap".equals(store) ? new InMemoryIriMapping()
+                : new CompactIriMapping("compact-offheap".equals(store));
+        for (String sourceIRI : sourceIRIs) {
+            mappedIRIs.put(new String(sourceIRI), REGISTRY_ENTITY_URL + PredictedIriMapping.idFor(sourceIRI));
+        }
+        long retained = retainedBytes() - before;
+        System.out.println(String.format(FOOTPRINT_OUTPUT_TEMPLATE, store, retained / mappings, mappings));
+    }
+
+    private static long retainedBytes() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        long direct = ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                .filter(pool -> DIRECT_BUFFER_POOL.equals(pool.getName()))
+                .mapToLong(BufferPoolMXBean::getMemoryUsed)
+                .sum();
+        return runtime.totalMemory() - runtime.freeMemory() + direct;
+    }
+
+    @Benchmark
+    public String lookup() {
+        next = (next + 1) % mappings;
+        return mappedIRIs.get(sourceIRIs[next]);
+    }
+}
@@ -0,0 +1,75 @@
+package no.greenall.entitydataloader.entity;
+
+import no.greenall.entitydataloader.entity.util.Serialization;
+import no.greenall.entitydataloader.util.SyntheticVocabulary;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading a whole vocabulary into a model with {@link EntityDataManager#loadData}, or with
+ * {@link ParallelRdfReader} when more than one parse thread is given, per input serialization.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParseBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int vocabularySize;
+
+    @Param({"turtle", "ntriples", "rdfxml", "jsonld", "rdfthrift"})
+    public String serialization;
+
+    @Param({"1", "4"})
+    public int parseThreads;
+
+    private Lang lang;
+    private File directory;
+    private File input;
+
+    @Setup(Level.Trial)
+    public void writeInput() throws IOException {
+        lang = Serialization.getByName(serialization);
+        directory = Files.createTempDirectory("parse-benchmark").toFile();
+        input = SyntheticVocabulary.write(vocabularySize, lang, directory);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteInput() {
+        input.delete();
+        directory.delete();
+    }
+
+    @Benchmark
+    public Model parse() {
+        Model model = ModelFactory.createDefaultModel();
+        if (parseThreads > 1) {
+            ParallelRdfReader.read(model, input.getPath(), lang, parseThreads);
+        } else {
+            EntityDataManager.loadData(model, input.getPath(), lang);
+        }
+        return model;
+    }
+}
@@ -1,35 +1,247 @@
 package no.greenall.entitydataloader;
 
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.ProcessingException;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.Invocation;
 import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.GenericEntity;
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.Variant;
 
-import org.apache.http.client.HttpClient;
+import no.greenall.entitydataloader.metrics.ByteCountingInterceptor;
+import no.greenall.entitydataloader.metrics.LoadMetrics;
+import no.greenall.entitydataloader.metrics.Phase;
+import no.greenall.entitydataloader.upload.AdaptiveConcurrencyLimiter;
+import no.greenall.entitydataloader.upload.CircuitBreaker;
+import no.greenall.entitydataloader.upload.Compression;
+import no.greenall.entitydataloader.upload.CompressionInterceptor;
+import no.greenall.entitydataloader.upload.RateLimiter;
+import no.greenall.entitydataloader.upload.RetryPolicy;
+import org.apache.http.ConnectionClosedException;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.glassfish.jersey.apache.connector.ApacheClientProperties;
+import org.glassfish.jersey.apache.connector.ApacheConnectorProvider;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.client.ClientProperties;
+import org.glassfish.jersey.client.RequestEntityProcessing;
 
+import java.io.Closeable;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
-public class ApiIntegrator {
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Client for the entity registry API. An instance holds a pool of keep-alive connections and is meant to be shared
+ * by all requests of a load, and closed when the load is done.
+ *
+ * <p>Requests answered with a transient status code, or failing on the connection or timing out, are retried
+ * according to the {@link RetryPolicy} if they are idempotent: every PUT, and a POST only when it carries a
+ * client-supplied id and the registry is known to honour such ids, see {@link #setClientIdsHonoured(boolean)}. Any
+ * other POST may have reached the registry and is retried only if it failed on connecting. All requests go through
+ * one {@link CircuitBreaker}, so a failing registry pauses every worker of the load, and one {@link RateLimiter} and
+ * optional {@link AdaptiveConcurrencyLimiter}, so the load stays within the quota of the key.
+ *
+ * <p>The asynchronous variants of the requests return at once. Each attempt is queued on a pool of one thread per
+ * pooled connection, retries are scheduled rather than waited for, and cancelling a returned stage, or closing the
+ * client, cancels the request whether it is queued, in flight or waiting to be retried, so that any number of
+ * requests can be pending on a few threads.
+ *
+ * <p>The Jersey client and its connection pool are created on the first request rather than with the instance, as
+ * bootstrapping them takes a large part of the startup of a small load, and a load that sends nothing, such as a
+ * prepare run or a snapshot load without changes, does not need them at all. {@link #createClientInBackground()}
+ * starts creating them on a thread of its own, so that a load can overlap it with parsing the input.
+ */
+public class ApiIntegrator implements Closeable {
 
     private static final String API_KEY = "api-key";
     private static final String LOCATION = "Location";
     private static final String PATH_SEPARATOR = "/";
     private static final String ENTITY = "entity";
     private static final String IMPROPERLY_FORMED_URI_TEMPLATE = "The URL %s was not a properly formed URI";
+    private static final String IDLE_CONNECTION_REAPER = "idle-connection-reaper";
+    private static final String REQUEST_THREAD_TEMPLATE = "registry-request-%d";
+    private static final String REQUEST_RETRY_SCHEDULER = "registry-request-retry";
+    private static final String CLIENT_CREATOR = "registry-client-creator";
+    private static final String CLIENT_CLOSED_ERROR = "The registry client was closed";
+    private static final String BULK = "bulk";
+    private static final String RETRY_AFTER = "Retry-After";
+    private static final String ETAG_TEMPLATE = "\"%s\"";
+    private static final String UPDATE_CONFLICT_TEMPLATE = "The entity %s was changed in the registry since the last load and was not updated";
+    private static final int INITIAL_ADAPTIVE_LIMIT = 1;
+    private static final List<Integer> OVERLOADED_STATUS_CODES = Arrays.asList(
+            Status.TOO_MANY_REQUESTS.getStatusCode(),
+            Status.SERVICE_UNAVAILABLE.getStatusCode());
+    private static final String RETRYING_STATUS_TEMPLATE = "Request to %s failed with status code %d, retrying in %d ms";
+    private static final String RETRYING_ERROR_TEMPLATE = "Request to %s failed with %s, retrying in %d ms";
+    private static final String INTERRUPTED_ERROR = "Interrupted while waiting to retry a request";
+    private static final String BULK_UNSUPPORTED_TEMPLATE = "The registry returned status code %d for bulk requests, falling back to single requests";
+    private static final List<Integer> BULK_UNSUPPORTED_STATUS_CODES = Arrays.asList(
+            Status.NOT_FOUND.getStatusCode(),
+            Status.METHOD_NOT_ALLOWED.getStatusCode(),
+            Status.NOT_IMPLEMENTED.getStatusCode());
     private final URL apiUrl;
     private final String apiKey;
-    private final Client client;
+    private final int maxConnectionsPerRoute;
+    private final long idleTimeoutSeconds;
+    private final int requestTimeoutMillis;
+    private volatile Client client;
+    private PoolingHttpClientConnectionManager connectionManager;
+    private boolean closed;
+    private final ScheduledExecutorService idleConnectionReaper;
+    private final ExecutorService requestExecutor;
+    private final ScheduledExecutorService retryScheduler;
+    private final Set<AsyncRequest<?>> pendingRequests = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean bulkSupported = new AtomicBoolean(true);
+    private volatile boolean clientIdsHonoured;
+    private final RetryPolicy retryPolicy;
+    private final CircuitBreaker circuitBreaker;
+    private final RateLimiter rateLimiter;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final int maxConcurrency;
+    private final Compression compression;
+    private final int compressionThresholdBytes;
+    private final int maxBatchBytes;
+    private final LoadMetrics metrics;
 
     public ApiIntegrator(URL apiUrl, String apiKey) {
+        this(apiUrl, apiKey, new LoaderOptions());
+    }
+
+    public ApiIntegrator(URL apiUrl, String apiKey, LoaderOptions options) {
+        this(apiUrl, apiKey, options, new LoadMetrics());
+    }
+
+    public ApiIntegrator(URL apiUrl, String apiKey, LoaderOptions options, LoadMetrics metrics) {
         this.apiKey = apiKey;
+        this.metrics = metrics;
         this.apiUrl = apiUrl;
-        this.client = ClientBuilder.newClient();
+        this.maxConnectionsPerRoute = options.getMaxConnectionsPerRoute();
+        this.idleTimeoutSeconds = options.getIdleTimeoutSeconds();
+        this.requestTimeoutMillis = options.getRequestTimeoutMillis();
+        this.retryPolicy = new RetryPolicy(options.getMaxRetries(), options.getRetryDelayMillis(),
+                options.getMaxRetryDelayMillis());
+        this.circuitBreaker = new CircuitBreaker(CircuitBreaker.DEFAULT_WINDOW_SIZE,
+                options.getBreakerThresholdPercent(), TimeUnit.SECONDS.toMillis(options.getBreakerPauseSeconds()));
+        this.rateLimiter = new RateLimiter(options.getMaxRequestsPerSecond());
+        this.maxConcurrency = options.getConcurrency();
+        this.compression = options.getCompression();
+        this.compressionThresholdBytes = options.getCompressionThresholdBytes();
+        this.maxBatchBytes = options.getMaxBatchBytes();
+        this.concurrencyLimiter = options.isAdaptiveConcurrency()
+                ? new AdaptiveConcurrencyLimiter(INITIAL_ADAPTIVE_LIMIT, maxConcurrency)
+                : null;
+
+        this.idleConnectionReaper = Executors.newSingleThreadScheduledExecutor(daemonThreads(IDLE_CONNECTION_REAPER));
+        AtomicInteger requestThreads = new AtomicInteger();
+        this.requestExecutor = Executors.newFixedThreadPool(maxConnectionsPerRoute, runnable ->
+                daemonThreads(String.format(REQUEST_THREAD_TEMPLATE, requestThreads.incrementAndGet()))
+                        .newThread(runnable));
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(daemonThreads(REQUEST_RETRY_SCHEDULER));
+    }
+
+    /**
+     * The Jersey client, created with its connection pool by the first caller.
+     */
+    private Client client() {
+        Client created = client;
+        if (nonNull(created)) {
+            return created;
+        }
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException(CLIENT_CLOSED_ERROR);
+            }
+            if (isNull(client)) {
+                client = createClient();
+            }
+            return client;
+        }
+    }
+
+    private Client createClient() {
+        connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+        connectionManager.setMaxTotal(maxConnectionsPerRoute);
+
+        ClientConfig clientConfig = new ClientConfig()
+                .connectorProvider(new ApacheConnectorProvider())
+                .property(ApacheClientProperties.CONNECTION_MANAGER, connectionManager)
+                .property(ClientProperties.REQUEST_ENTITY_PROCESSING, RequestEntityProcessing.BUFFERED)
+                .property(ClientProperties.CONNECT_TIMEOUT, requestTimeoutMillis)
+                .property(ClientProperties.READ_TIMEOUT, requestTimeoutMillis)
+                .register(new CompressionInterceptor(metrics::bytesSent))
+                .register(new ByteCountingInterceptor(metrics));
+        Client created = ClientBuilder.newClient(clientConfig);
+
+        if (idleTimeoutSeconds > 0) {
+            PoolingHttpClientConnectionManager pool = connectionManager;
+            idleConnectionReaper.scheduleWithFixedDelay(
+                    () -> pool.closeIdleConnections(idleTimeoutSeconds, TimeUnit.SECONDS),
+                    idleTimeoutSeconds, idleTimeoutSeconds, TimeUnit.SECONDS);
+        }
+        return created;
+    }
+
+    /**
+     * Starts creating the client on a daemon thread, unless it was created or closed already, so that the first
+     * request does not wait for it.
+     */
+    public void createClientInBackground() {
+        daemonThreads(CLIENT_CREATOR).newThread(() -> {
+            synchronized (this) {
+                if (!closed && isNull(client)) {
+                    client = createClient();
+                }
+            }
+        }).start();
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
     }
 
     private String updateUrl(String... args) {
@@ -46,14 +258,69 @@ public class ApiIntegrator {
         }
     }
 
+    /**
+     * The JSON request entity, with a content coding if the entity bodies it holds are at least as large as the
+     * compression threshold.
+     */
+    private <T> Entity<T> jsonEntity(T entity, long entityBytes) {
+        String encoding = compression != Compression.NONE && entityBytes >= compressionThresholdBytes
+                ? compression.getContentCoding() : null;
+        return Entity.entity(entity, new Variant(MediaType.APPLICATION_JSON_TYPE, (Locale) null, encoding));
+    }
+
+    /**
+     * The size of an entity body, counting characters rather than encoded bytes, which is close enough for the
+     * mostly ASCII JSON-LD of the entities and does not need the body to be encoded.
+     */
+    private static long sizeOf(String entity) {
+        return isNull(entity) ? 0 : entity.length();
+    }
+
+    /**
+     * Makes creates with client-supplied ids idempotent, once the registry has been seen to create entities at the
+     * URLs of their ids, so that sending a create again cannot create a second entity.
+     */
+    public void setClientIdsHonoured(boolean clientIdsHonoured) {
+        this.clientIdsHonoured = clientIdsHonoured;
+    }
+
+    /**
+     * The URL of the entity with the given id, as the registry is expected to return it in the Location header.
+     */
+    public String entityUrl(String id) {
+        return updateUrl(ENTITY, id);
+    }
+
     public String createEntity(String id, String entity) {
-        WebTarget webTarget = client.target(updateUrl(ENTITY));
+        WebTarget webTarget = client().target(updateUrl(ENTITY));
         Invocation.Builder invocationBuilder = webTarget.request(MediaType.APPLICATION_JSON_TYPE);
         invocationBuilder.header(API_KEY, apiKey);
         EntityDto entityDto = new EntityDto();
         entityDto.setId(id);
         entityDto.setBody(entity);
-        Response createResponse = invocationBuilder.post(Entity.entity(entityDto, MediaType.APPLICATION_JSON_TYPE));
+        return send(Phase.POST, webTarget.getUri().toString(), isIdempotentCreate(id),
+                () -> invocationBuilder.post(jsonEntity(entityDto, sizeOf(entity))), ApiIntegrator::readLocation);
+    }
+
+    /**
+     * Creates the entity like {@link #createEntity(String, String)}, without waiting for the registry.
+     */
+    public CompletionStage<String> createEntityAsync(String id, String entity) {
+        WebTarget webTarget = client().target(updateUrl(ENTITY));
+        Invocation.Builder invocationBuilder = webTarget.request(MediaType.APPLICATION_JSON_TYPE);
+        invocationBuilder.header(API_KEY, apiKey);
+        EntityDto entityDto = new EntityDto();
+        entityDto.setId(id);
+        entityDto.setBody(entity);
+        return sendAsync(Phase.POST, webTarget.getUri().toString(), isIdempotentCreate(id),
+                () -> invocationBuilder.post(jsonEntity(entityDto, sizeOf(entity))), ApiIntegrator::readLocation);
+    }
+
+    private boolean isIdempotentCreate(String id) {
+        return clientIdsHonoured && nonNull(id);
+    }
+
+    private static String readLocation(Response createResponse) {
         if (createResponse.getStatus()!= Status.CREATED.getStatusCode()) {
             System.out.println( createResponse.readEntity(String.class));
             return null;
@@ -62,18 +329,530 @@ public class ApiIntegrator {
     }
 
     public void updateEntity(String id, String entity) {
+        updateEntity(id, entity, null);
+    }
+
+    /**
+     * Updates the entity, on the condition that it is unchanged in the registry if an ETag is given.
+     *
+     * @param ifMatch The ETag the entity must have in the registry, or null to update it unconditionally
+     * @return The ETag of the updated entity, as returned by the registry or else computed from the body
+     */
+    public String updateEntity(String id, String entity, String ifMatch) {
+        String url = updateUrl(ENTITY, id);
+        WebTarget webTarget = client().target(url);
+        Invocation.Builder invocationBuilder = webTarget.request(MediaType.APPLICATION_JSON_TYPE);
+        invocationBuilder.header(API_KEY, apiKey);
+        if (nonNull(ifMatch)) {
+            invocationBuilder.header(HttpHeaders.IF_MATCH, ifMatch);
+        }
+        EntityDto entityDto = new EntityDto();
+        entityDto.setId(id);
+        entityDto.setBody(entity);
+
+        return send(Phase.PUT, url, true, () -> invocationBuilder.put(jsonEntity(entityDto, sizeOf(entity))),
+                updateResponse -> readEtag(url, entityDto, updateResponse));
+    }
+
+    /**
+     * Updates the entity like {@link #updateEntity(String, String, String)}, without waiting for the registry.
+     */
+    public CompletionStage<String> updateEntityAsync(String id, String entity, String ifMatch) {
         String url = updateUrl(ENTITY, id);
-        WebTarget webTarget = client.target(url);
+        WebTarget webTarget = client().target(url);
         Invocation.Builder invocationBuilder = webTarget.request(MediaType.APPLICATION_JSON_TYPE);
         invocationBuilder.header(API_KEY, apiKey);
+        if (nonNull(ifMatch)) {
+            invocationBuilder.header(HttpHeaders.IF_MATCH, ifMatch);
+        }
         EntityDto entityDto = new EntityDto();
         entityDto.setId(id);
         entityDto.setBody(entity);
+        return sendAsync(Phase.PUT, url, true, () -> invocationBuilder.put(jsonEntity(entityDto, sizeOf(entity))),
+                updateResponse -> readEtag(url, entityDto, updateResponse));
+    }
 
-        Response createResponse = invocationBuilder.put(Entity.entity(entityDto, MediaType.APPLICATION_JSON_TYPE));
+    private static String readEtag(String url, EntityDto entityDto, Response createResponse) {
+        if (createResponse.getStatus() == Status.PRECONDITION_FAILED.getStatusCode()) {
+            throw new RuntimeException(String.format(UPDATE_CONFLICT_TEMPLATE, url));
+        }
         if (createResponse.getStatus() != Response.Status.OK.getStatusCode()) {
             throw new RuntimeException(String.format("Attempting to update %s failed with status code %d",
                     url, createResponse.getStatus()));
         }
+        String etag = createResponse.getHeaderString(HttpHeaders.ETAG);
+        return nonNull(etag) ? etag : String.format(ETAG_TEMPLATE, entityDto.getEtagValue());
+    }
+
+    /**
+     * Creates the entities with a single bulk request. Entities that the registry did not report as created are sent
+     * again as single requests, as are all entities once the registry has shown that it has no bulk endpoint.
+     *
+     * @param entityDtos The entities to create, each with a client-supplied id
+     * @return The locations of the entities, in the order they were given, with null for entities that were not created
+     */
+    public List<String> createEntities(List<EntityDto> entityDtos) {
+        Map<String, BulkResultDto> results = sendBulkRequest(HttpMethod.POST, entityDtos);
+        List<String> locations = new ArrayList<>();
+        for (EntityDto entityDto : entityDtos) {
+            BulkResultDto result = results.get(entityDto.getId());
+            if (isNull(result) || result.getStatus() != Status.CREATED.getStatusCode() || isNull(result.getLocation())) {
+                locations.add(createEntity(entityDto.getId(), entityDto.getBody()));
+            } else {
+                locations.add(result.getLocation());
+            }
+        }
+        return locations;
+    }
+
+    /**
+     * Updates the entities with a single bulk request, falling back to single requests like
+     * {@link #createEntities(List)}.
+     *
+     * @param entityDtos The entities to update, each with the id assigned by the registry
+     */
+    public void updateEntities(List<EntityDto> entityDtos) {
+        Map<String, BulkResultDto> results = sendBulkRequest(HttpMethod.PUT, entityDtos);
+        for (EntityDto entityDto : entityDtos) {
+            BulkResultDto result = results.get(entityDto.getId());
+            if (isNull(result) || result.getStatus() != Status.OK.getStatusCode()) {
+                updateEntity(entityDto.getId(), entityDto.getBody());
+            }
+        }
+    }
+
+    /**
+     * Creates the entities like {@link #createEntities(List)}, without waiting for the registry.
+     */
+    public CompletionStage<List<String>> createEntitiesAsync(List<EntityDto> entityDtos) {
+        CompletableFuture<Map<String, BulkResultDto>> bulkResults = sendBulkRequestAsync(HttpMethod.POST, entityDtos);
+        return cancelling(bulkResults, bulkResults.thenCompose(results -> {
+            List<CompletableFuture<String>> locations = new ArrayList<>();
+            for (EntityDto entityDto : entityDtos) {
+                BulkResultDto result = results.get(entityDto.getId());
+                if (isNull(result) || result.getStatus() != Status.CREATED.getStatusCode()
+                        || isNull(result.getLocation())) {
+                    locations.add(createEntityAsync(entityDto.getId(), entityDto.getBody()).toCompletableFuture());
+                } else {
+                    locations.add(CompletableFuture.completedFuture(result.getLocation()));
+                }
+            }
+            return CompletableFuture.allOf(locations.toArray(new CompletableFuture<?>[0]))
+                    .thenApply(done -> locations.stream().map(CompletableFuture::join).collect(Collectors.toList()));
+        }));
+    }
+
+    /**
+     * Updates the entities like {@link #updateEntities(List)}, without waiting for the registry.
+     */
+    public CompletionStage<Void> updateEntitiesAsync(List<EntityDto> entityDtos) {
+        CompletableFuture<Map<String, BulkResultDto>> bulkResults = sendBulkRequestAsync(HttpMethod.PUT, entityDtos);
+        return cancelling(bulkResults, bulkResults.thenCompose(results -> {
+            List<CompletableFuture<String>> updates = new ArrayList<>();
+            for (EntityDto entityDto : entityDtos) {
+                BulkResultDto result = results.get(entityDto.getId());
+                if (isNull(result) || result.getStatus() != Status.OK.getStatusCode()) {
+                    updates.add(updateEntityAsync(entityDto.getId(), entityDto.getBody(), null).toCompletableFuture());
+                }
+            }
+            return CompletableFuture.allOf(updates.toArray(new CompletableFuture<?>[0]));
+        }));
+    }
+
+    private Map<String, BulkResultDto> sendBulkRequest(String method, List<EntityDto> entityDtos) {
+        Map<String, BulkResultDto> results = new HashMap<>();
+        for (List<EntityDto> part : splitBySize(entityDtos)) {
+            if (!bulkSupported.get()) {
+                break;
+            }
+            BulkRequest bulkRequest = new BulkRequest(method, part);
+            send(bulkRequest.phase, bulkRequest.url, bulkRequest.idempotent, bulkRequest.invocation,
+                    this::readBulkResults).forEach(results::putIfAbsent);
+        }
+        return results;
+    }
+
+    private CompletableFuture<Map<String, BulkResultDto>> sendBulkRequestAsync(String method,
+                                                                              List<EntityDto> entityDtos) {
+        if (!bulkSupported.get()) {
+            return CompletableFuture.completedFuture(Collections.emptyMap());
+        }
+        List<CompletableFuture<Map<String, BulkResultDto>>> parts = new ArrayList<>();
+        for (List<EntityDto> part : splitBySize(entityDtos)) {
+            BulkRequest bulkRequest = new BulkRequest(method, part);
+            parts.add(sendAsync(bulkRequest.phase, bulkRequest.url, bulkRequest.idempotent, bulkRequest.invocation,
+                    this::readBulkResults));
+        }
+        CompletableFuture<Map<String, BulkResultDto>> results = CompletableFuture.allOf(
+                parts.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+                    Map<String, BulkResultDto> merged = new HashMap<>();
+                    parts.forEach(part -> part.join().forEach(merged::putIfAbsent));
+                    return merged;
+                });
+        results.whenComplete((merged, error) -> {
+            if (results.isCancelled()) {
+                parts.forEach(part -> part.cancel(false));
+            }
+        });
+        return results;
+    }
+
+    /**
+     * Splits the entities of a batch into consecutive parts whose bodies together are at most the maximum batch
+     * size, with at least one entity in each part.
+     */
+    private List<List<EntityDto>> splitBySize(List<EntityDto> entityDtos) {
+        if (maxBatchBytes <= 0) {
+            return Collections.singletonList(entityDtos);
+        }
+        List<List<EntityDto>> parts = new ArrayList<>();
+        int start = 0;
+        long partBytes = 0;
+        for (int i = 0; i < entityDtos.size(); i++) {
+            long entityBytes = sizeOf(entityDtos.get(i).getBody());
+            if (i > start && partBytes + entityBytes > maxBatchBytes) {
+                parts.add(entityDtos.subList(start, i));
+                start = i;
+                partBytes = 0;
+            }
+            partBytes += entityBytes;
+        }
+        parts.add(entityDtos.subList(start, entityDtos.size()));
+        return parts;
+    }
+
+    private Map<String, BulkResultDto> readBulkResults(Response bulkResponse) {
+        if (BULK_UNSUPPORTED_STATUS_CODES.contains(bulkResponse.getStatus())) {
+            if (bulkSupported.compareAndSet(true, false)) {
+                System.out.println(String.format(BULK_UNSUPPORTED_TEMPLATE, bulkResponse.getStatus()));
+            }
+            return Collections.emptyMap();
+        }
+        if (bulkResponse.getStatusInfo().getFamily() != Status.Family.SUCCESSFUL) {
+            return Collections.emptyMap();
+        }
+        List<BulkResultDto> results = bulkResponse.readEntity(new GenericType<List<BulkResultDto>>() { });
+        return results.stream()
+                .collect(Collectors.toMap(BulkResultDto::getId, Function.identity(), (first, second) -> first));
+    }
+
+    /**
+     * Sends the request and reads its response, retrying while the request fails in a way that may be retried. A
+     * response whose entity is cut off by a timeout or a reset while it is read is retried like a request that was not
+     * answered, as the registry may or may not have carried it out.
+     */
+    private <T> T send(Phase phase, String url, boolean idempotent, Supplier<Response> request,
+                       Function<Response, T> reader) {
+        for (int retry = 0; ; retry++) {
+            circuitBreaker.awaitPermission();
+            Response response;
+            try {
+                response = sendOnce(phase, request);
+            } catch (ProcessingException e) {
+                circuitBreaker.recordFailure();
+                if (!(idempotent || failedOnConnecting(e)) || retry >= retryPolicy.getMaxRetries()) {
+                    throw e;
+                }
+                long delay = retryPolicy.delayMillis(retry, null);
+                System.out.println(String.format(RETRYING_ERROR_TEMPLATE, url, e.getMessage(), delay));
+                metrics.retried();
+                pause(delay);
+                continue;
+            }
+
+            if (!retryPolicy.isRetryable(response.getStatus())) {
+                circuitBreaker.recordSuccess();
+            } else {
+                circuitBreaker.recordFailure();
+                if (idempotent && retry < retryPolicy.getMaxRetries()) {
+                    int status = response.getStatus();
+                    long delay = retryPolicy.delayMillis(retry, response.getHeaderString(RETRY_AFTER));
+                    response.close();
+                    System.out.println(String.format(RETRYING_STATUS_TEMPLATE, url, status, delay));
+                    metrics.retried();
+                    pause(delay);
+                    continue;
+                }
+            }
+            try (Response closedResponse = response) {
+                return reader.apply(closedResponse);
+            } catch (ProcessingException e) {
+                circuitBreaker.recordFailure();
+                if (!isRetryableRead(idempotent, e, retry)) {
+                    throw e;
+                }
+                long delay = retryPolicy.delayMillis(retry, null);
+                System.out.println(String.format(RETRYING_ERROR_TEMPLATE, url, e.getMessage(), delay));
+                metrics.retried();
+                pause(delay);
+            }
+        }
+    }
+
+    /**
+     * Sends the request on the request pool and reads its response on the request thread, retrying it like
+     * {@link #send} with the delays scheduled rather than slept. Cancelling the returned future cancels the attempt in
+     * progress or the scheduled retry.
+     */
+    private <T> CompletableFuture<T> sendAsync(Phase phase, String url, boolean idempotent,
+                                               Supplier<Response> request, Function<Response, T> reader) {
+        AsyncRequest<T> asyncRequest = new AsyncRequest<>(phase, url, idempotent, request, reader);
+        pendingRequests.add(asyncRequest);
+        asyncRequest.result.whenComplete((result, error) -> {
+            pendingRequests.remove(asyncRequest);
+            if (asyncRequest.result.isCancelled()) {
+                asyncRequest.cancelAttempt();
+            }
+        });
+        attemptAsync(asyncRequest, 0);
+        return asyncRequest.result;
+    }
+
+    private void attemptAsync(AsyncRequest<?> asyncRequest, int retry) {
+        FutureTask<Response> attempt = new FutureTask<Response>(() -> {
+            circuitBreaker.awaitPermission();
+            return sendOnce(asyncRequest.phase, asyncRequest.request);
+        }) {
+            @Override
+            protected void done() {
+                if (isCancelled()) {
+                    asyncRequest.result.cancel(false);
+                    return;
+                }
+                try {
+                    onAttemptCompleted(asyncRequest, retry, get());
+                } catch (ExecutionException e) {
+                    onAttemptFailed(asyncRequest, retry, e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    asyncRequest.result.completeExceptionally(e);
+                }
+            }
+        };
+        asyncRequest.attempt = attempt;
+        try {
+            requestExecutor.execute(attempt);
+        } catch (RejectedExecutionException e) {
+            asyncRequest.result.completeExceptionally(e);
+        }
+        if (asyncRequest.result.isCancelled()) {
+            attempt.cancel(true);
+        }
+    }
+
+    private <T> void onAttemptCompleted(AsyncRequest<T> asyncRequest, int retry, Response response) {
+        if (!retryPolicy.isRetryable(response.getStatus())) {
+            circuitBreaker.recordSuccess();
+        } else {
+            circuitBreaker.recordFailure();
+            if (asyncRequest.idempotent && retry < retryPolicy.getMaxRetries()) {
+                int status = response.getStatus();
+                long delay = retryPolicy.delayMillis(retry, response.getHeaderString(RETRY_AFTER));
+                response.close();
+                System.out.println(String.format(RETRYING_STATUS_TEMPLATE, asyncRequest.url, status, delay));
+                metrics.retried();
+                retryLater(asyncRequest, retry, delay);
+                return;
+            }
+        }
+        try (Response closedResponse = response) {
+            asyncRequest.result.complete(asyncRequest.reader.apply(closedResponse));
+        } catch (ProcessingException e) {
+            circuitBreaker.recordFailure();
+            if (!isRetryableRead(asyncRequest.idempotent, e, retry)) {
+                asyncRequest.result.completeExceptionally(e);
+                return;
+            }
+            long delay = retryPolicy.delayMillis(retry, null);
+            System.out.println(String.format(RETRYING_ERROR_TEMPLATE, asyncRequest.url, e.getMessage(), delay));
+            metrics.retried();
+            retryLater(asyncRequest, retry, delay);
+        } catch (RuntimeException e) {
+            asyncRequest.result.completeExceptionally(e);
+        }
+    }
+
+    private void onAttemptFailed(AsyncRequest<?> asyncRequest, int retry, Throwable failure) {
+        if (!(failure instanceof ProcessingException)) {
+            asyncRequest.result.completeExceptionally(failure);
+            return;
+        }
+        circuitBreaker.recordFailure();
+        if (!(asyncRequest.idempotent || failedOnConnecting(failure)) || retry >= retryPolicy.getMaxRetries()) {
+            asyncRequest.result.completeExceptionally(failure);
+            return;
+        }
+        long delay = retryPolicy.delayMillis(retry, null);
+        System.out.println(String.format(RETRYING_ERROR_TEMPLATE, asyncRequest.url, failure.getMessage(), delay));
+        metrics.retried();
+        retryLater(asyncRequest, retry, delay);
+    }
+
+    private void retryLater(AsyncRequest<?> asyncRequest, int retry, long delay) {
+        try {
+            asyncRequest.attempt = retryScheduler.schedule(() -> attemptAsync(asyncRequest, retry + 1),
+                    delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            asyncRequest.result.completeExceptionally(e);
+        }
+        if (asyncRequest.result.isCancelled()) {
+            asyncRequest.cancelAttempt();
+        }
+    }
+
+    /**
+     * Whether the request failed before a connection to the registry was made, so that it was certainly not sent.
+     */
+    private static boolean failedOnConnecting(Throwable failure) {
+        for (Throwable cause = failure; nonNull(cause); cause = cause.getCause()) {
+            if (cause instanceof ConnectException || cause instanceof ConnectTimeoutException
+                    || cause instanceof UnknownHostException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether a response whose entity could not be read is sent again: only an idempotent request is, and only if
+     * the entity was cut off by a timeout or a reset of the connection rather than being unreadable.
+     */
+    private boolean isRetryableRead(boolean idempotent, ProcessingException failure, int retry) {
+        return idempotent && failedInTransit(failure) && retry < retryPolicy.getMaxRetries();
+    }
+
+    private static boolean failedInTransit(Throwable failure) {
+        for (Throwable cause = failure; nonNull(cause); cause = cause.getCause()) {
+            if (cause instanceof SocketTimeoutException || cause instanceof SocketException
+                    || cause instanceof ConnectionClosedException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Makes cancelling the derived stage cancel the request it was derived from.
+     */
+    private static <T, R> CompletableFuture<R> cancelling(CompletableFuture<T> source, CompletableFuture<R> derived) {
+        derived.whenComplete((result, error) -> {
+            if (derived.isCancelled()) {
+                source.cancel(false);
+            }
+        });
+        return derived;
+    }
+
+    /**
+     * Cancels every asynchronous request that is queued, in flight or waiting to be retried.
+     */
+    public void cancelPendingRequests() {
+        for (AsyncRequest<?> asyncRequest : pendingRequests) {
+            asyncRequest.result.cancel(false);
+        }
+    }
+
+    private Response sendOnce(Phase phase, Supplier<Response> request) {
+        rateLimiter.acquire();
+        if (nonNull(concurrencyLimiter)) {
+            concurrencyLimiter.acquire();
+        }
+        long start = System.nanoTime();
+        boolean overloaded = true;
+        try {
+            Response response = request.get();
+            overloaded = OVERLOADED_STATUS_CODES.contains(response.getStatus());
+            return response;
+        } finally {
+            long latency = System.nanoTime() - start;
+            metrics.record(phase, latency);
+            if (nonNull(concurrencyLimiter)) {
+                concurrencyLimiter.release(latency, overloaded);
+            }
+        }
+    }
+
+    /**
+     * The number of requests sent to the registry per second, including retries.
+     */
+    public double getRequestRate() {
+        return rateLimiter.getCurrentRate();
+    }
+
+    /**
+     * The current limit on requests in flight, which is the concurrency of the load unless it is adaptive.
+     */
+    public int getConcurrencyLimit() {
+        return isNull(concurrencyLimiter) ? maxConcurrency : concurrencyLimiter.getLimit();
+    }
+
+    private static void pause(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(INTERRUPTED_ERROR, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        cancelPendingRequests();
+        retryScheduler.shutdownNow();
+        requestExecutor.shutdownNow();
+        idleConnectionReaper.shutdownNow();
+        synchronized (this) {
+            closed = true;
+            if (nonNull(client)) {
+                client.close();
+                connectionManager.shutdown();
+            }
+        }
+    }
+
+    private final class BulkRequest {
+        private final Phase phase;
+        private final String url;
+        private final boolean idempotent;
+        private final Supplier<Response> invocation;
+
+        private BulkRequest(String method, List<EntityDto> entityDtos) {
+            WebTarget webTarget = client().target(updateUrl(ENTITY, BULK));
+            Invocation.Builder invocationBuilder = webTarget.request(MediaType.APPLICATION_JSON_TYPE);
+            invocationBuilder.header(API_KEY, apiKey);
+            GenericEntity<List<EntityDto>> bulkEntity = new GenericEntity<List<EntityDto>>(entityDtos) { };
+            this.phase = HttpMethod.POST.equals(method) ? Phase.POST : Phase.PUT;
+            this.url = webTarget.getUri().toString();
+            this.idempotent = (HttpMethod.PUT.equals(method) || clientIdsHonoured)
+                    && entityDtos.stream().allMatch(entityDto -> nonNull(entityDto.getId()));
+            long entityBytes = entityDtos.stream().mapToLong(entityDto -> sizeOf(entityDto.getBody())).sum();
+            this.invocation = () -> invocationBuilder.method(method, jsonEntity(bulkEntity, entityBytes));
+        }
+    }
+
+    private static final class AsyncRequest<T> {
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final Phase phase;
+        private final String url;
+        private final boolean idempotent;
+        private final Supplier<Response> request;
+        private final Function<Response, T> reader;
+        private volatile Future<?> attempt;
+
+        private AsyncRequest(Phase phase, String url, boolean idempotent, Supplier<Response> request,
+                             Function<Response, T> reader) {
+            this.phase = phase;
+            this.url = url;
+            this.idempotent = idempotent;
+            this.request = request;
+            this.reader = reader;
+        }
+
+        private void cancelAttempt() {
+            Future<?> current = attempt;
+            if (nonNull(current)) {
+                current.cancel(true);
+            }
+        }
     }
 }
@@ -2,36 +2,65 @@ package no.greenall.entitydataloader;
 
 
 import no.greenall.entitydataloader.entity.EntityDataManager;
-import no.greenall.entitydataloader.entity.util.Serialization;
-import org.apache.jena.riot.Lang;
+import no.greenall.entitydataloader.shard.Shard;
 import picocli.CommandLine;
 
 import java.net.UnknownHostException;
-import java.util.Optional;
+import java.util.Arrays;
 
 import static java.util.Objects.nonNull;
 
-@CommandLine.Command(name = "App")
+@CommandLine.Command(name = "App", footer = {"%nCommands:",
+        "  prepare  Compile the input into a spool of entity payloads, see prepare -h",
+        "  replay   Send the entity payloads of a spool to the registry, see replay -h"})
 public class App implements Runnable {
-    private static final String EXTENSION_SEPARATOR = ".";
-    private static final String SERIALIZATION_PROVIDED_ERROR_TEMPLATE = "The provided serialization %s was not recognized and the serialization could not be determined from the file extension %s";
-    private static final String FILE_EXTENSION_UNRECOGNIZED_TEMPLATE = "The serialization of the input file could not be recognized from the extension %s";
+    private static final String JOURNAL_WITH_RESUME_ERROR = "--journal cannot be combined with --resume, which records "
+            + "the resumed load in the journal it reads";
 
     @CommandLine.Option(names = {"-h", "--help"}, usageHelp = true, description = "Display help for command")
     private boolean showHelp = false;
 
-    @CommandLine.Option(names = {"-i", "--input"}, description = "Path to input file", paramLabel = "FILE", required = true)
-    private String inputFilePath;
+    @CommandLine.Mixin
+    private InputOptions inputOptions = new InputOptions();
 
-    @CommandLine.Option(names = {"-s", "--serialization"},
-            description = "RDF serialization of input file", paramLabel = "SERIALIZATION", required = true)
-    private String serialization;
+    @CommandLine.Mixin
+    private UploadOptions uploadOptions = new UploadOptions();
 
-    @CommandLine.Option(names = {"-u", "--url"}, description = "API url", paramLabel = "URL", required = true)
-    private String baseUrl;
+    @CommandLine.Option(names = {"--journal"}, description = "Record created and updated entities in FILE",
+            paramLabel = "FILE")
+    private String journalFilePath;
 
-    @CommandLine.Option(names = {"-k", "--api-key"}, description = "API key", paramLabel = "KEY", required = true)
-    private String apiKey;
+    @CommandLine.Option(names = {"--resume"}, description = "Resume the load recorded in the journal FILE",
+            paramLabel = "FILE")
+    private String resumeFilePath;
+
+    @CommandLine.Option(names = {"--single-pass"},
+            description = "Send each entity once, with registry IRIs derived from client-supplied ids")
+    private boolean singlePass = false;
+
+    @CommandLine.Option(names = {"--snapshot"},
+            description = "Send only entities that changed since the load recorded in FILE, and update FILE",
+            paramLabel = "FILE")
+    private String snapshotFilePath;
+
+    @CommandLine.Option(names = {"--shard"},
+            description = "Load slice I of N of the concepts, for N processes loading the input together",
+            paramLabel = "I/N")
+    private String shard;
+
+    @CommandLine.Option(names = {"--shard-dir"},
+            description = "Directory shared by the shards to exchange the locations of their entities",
+            paramLabel = "DIR")
+    private String shardDirectory;
+
+    @CommandLine.Option(names = {"--shard-timeout"},
+            description = "Seconds to wait for the other shards to create their entities (default: 3600)",
+            paramLabel = "SECONDS")
+    private long shardTimeout = LoaderOptions.DEFAULT_SHARD_TIMEOUT_SECONDS;
+
+    @CommandLine.Option(names = {"--off-heap-mapping"},
+            description = "Keep the registry IRIs of the entities in direct memory rather than on the heap")
+    private boolean offHeapMapping = false;
 
     public static void main(String[] args) {
         if (args.length == 0) {
@@ -39,33 +68,39 @@ public class App implements Runnable {
             args = new String[]{"-h"};
         }
 
-        CommandLine.run(new App(), args);
-    }
-
-    @Override
-    public void run() {
-        Lang rdfSerialization = (nonNull(serialization)) ?
-                Optional.ofNullable(Serialization.getByName(serialization)).orElse(null)
-                :
-                Optional.ofNullable(Serialization.getByName(findFileExtension())).orElse(null);
-
-        if (nonNull(rdfSerialization)) {
-            new EntityDataManager(inputFilePath, rdfSerialization, baseUrl, apiKey);
+        String[] commandArgs = Arrays.copyOfRange(args, 1, args.length);
+        if (PrepareCommand.NAME.equals(args[0])) {
+            CommandLine.run(new PrepareCommand(), commandArgs);
+        } else if (ReplayCommand.NAME.equals(args[0])) {
+            CommandLine.run(new ReplayCommand(), commandArgs);
         } else {
-            throw new RuntimeException(getErrorMessage());
+            CommandLine.run(new App(), args);
         }
     }
 
-    private String getErrorMessage() {
-
-        String fileExtension = findFileExtension();
-
-        return (nonNull(serialization)) ? String.format(
-                SERIALIZATION_PROVIDED_ERROR_TEMPLATE, serialization, fileExtension)
-                : String.format(FILE_EXTENSION_UNRECOGNIZED_TEMPLATE, fileExtension);
+    @Override
+    public void run() {
+        new EntityDataManager(inputOptions.getInputFiles(), uploadOptions.getBaseUrl(),
+                uploadOptions.getApiKey(), getLoaderOptions());
     }
 
-    private String findFileExtension() {
-        return inputFilePath.substring(inputFilePath.lastIndexOf(EXTENSION_SEPARATOR) + 1);
+    private LoaderOptions getLoaderOptions() {
+        LoaderOptions options = new LoaderOptions();
+        inputOptions.applyTo(options);
+        uploadOptions.applyTo(options);
+        if (nonNull(journalFilePath) && nonNull(resumeFilePath)) {
+            throw new RuntimeException(JOURNAL_WITH_RESUME_ERROR);
+        }
+        options.setJournalPath(nonNull(resumeFilePath) ? resumeFilePath : journalFilePath);
+        options.setResume(nonNull(resumeFilePath));
+        options.setSinglePass(singlePass);
+        options.setSnapshotPath(snapshotFilePath);
+        if (nonNull(shard)) {
+            options.setShard(Shard.parse(shard));
+        }
+        options.setShardDirectory(shardDirectory);
+        options.setShardTimeoutSeconds(shardTimeout);
+        options.setOffHeapMapping(offHeapMapping);
+        return options;
     }
 }
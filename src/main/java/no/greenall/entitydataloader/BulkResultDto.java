@@ -0,0 +1,41 @@
+package no.greenall.entitydataloader;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * The outcome for a single entity of a bulk request, as reported by the registry.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class BulkResultDto {
+
+    private String id;
+    private int status;
+    private String location;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    /**
+     * The URL of a created entity, not set for updates.
+     */
+    public String getLocation() {
+        return location;
+    }
+
+    public void setLocation(String location) {
+        this.location = location;
+    }
+}
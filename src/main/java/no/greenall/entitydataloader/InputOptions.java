@@ -0,0 +1,175 @@
+package no.greenall.entitydataloader;
+
+import no.greenall.entitydataloader.entity.InputFile;
+import no.greenall.entitydataloader.entity.ReferencePolicy;
+import no.greenall.entitydataloader.entity.util.Serialization;
+import org.apache.jena.riot.Lang;
+import picocli.CommandLine;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.util.Objects.nonNull;
+
+/**
+ * The command line options of the commands that read the input, telling what to read and how.
+ */
+public class InputOptions {
+    private static final String EXTENSION_SEPARATOR = ".";
+    private static final String SERIALIZATION_PROVIDED_ERROR_TEMPLATE = "The provided serialization %s was not recognized and the serialization could not be determined from the file extension %s";
+    private static final String REFERENCE_POLICY_UNRECOGNIZED_TEMPLATE = "The reference policy %s was not recognized, use fail, drop or keep";
+    private static final String FILE_EXTENSION_UNRECOGNIZED_TEMPLATE = "The serialization of the input file could not be recognized from the extension %s";
+    private static final String NO_INPUT_FILES_TEMPLATE = "No input files with a recognized serialization were found at %s";
+    private static final String INPUT_DIRECTORY_ERROR_TEMPLATE = "Could not list the input files at %s";
+    private static final String GLOB_CHARACTERS = "*?[{";
+    private static final String GLOB_SYNTAX = "glob:";
+    private static final String PATH_SEPARATORS = "/" + File.separator;
+
+    @CommandLine.Option(names = {"-i", "--input"},
+            description = "Path to input file, or a directory or glob pattern of input files", paramLabel = "FILE",
+            required = true)
+    private String inputFilePath;
+
+    @CommandLine.Option(names = {"-s", "--serialization"},
+            description = "RDF serialization of input file, by default recognized from the extension of each file",
+            paramLabel = "SERIALIZATION")
+    private String serialization;
+
+    @CommandLine.Option(names = {"--streaming"},
+            description = "Group triples per subject on disk to keep memory use constant")
+    private boolean streaming = false;
+
+    @CommandLine.Option(names = {"--parse-threads"},
+            description = "Threads parsing N-Triples and Turtle input held in memory (default: 1)", paramLabel = "N")
+    private int parseThreads = LoaderOptions.DEFAULT_PARSE_THREADS;
+
+    @CommandLine.Option(names = {"--dangling"},
+            description = "Check references before loading, and fail, drop or keep references to missing concepts",
+            paramLabel = "POLICY")
+    private String referencePolicy;
+
+    @CommandLine.Option(names = {"--shapes"}, description = "Validate every concept against the SHACL shapes in FILE",
+            paramLabel = "FILE")
+    private String shapesFilePath;
+
+    @CommandLine.Option(names = {"--valid-only"},
+            description = "Load the concepts that conform to the shapes and skip the others")
+    private boolean validOnly = false;
+
+    @CommandLine.Option(names = {"--no-cache"},
+            description = "Parse the input even if it is in the cache of parsed input files")
+    private boolean noCache = false;
+
+    @CommandLine.Option(names = {"--cache-dir"},
+            description = "Directory of the cache of parsed input files, by default in the temporary directory",
+            paramLabel = "DIR")
+    private String cacheDirectory;
+
+    public String getInputFilePath() {
+        return inputFilePath;
+    }
+
+    /**
+     * The input file, or the files in the input directory or matching the input glob pattern. The files of a directory
+     * or pattern whose serialization cannot be recognized from the extension are left out, unless a serialization is
+     * given for all of them.
+     */
+    public List<InputFile> getInputFiles() {
+        int globStart = indexOfGlob(inputFilePath);
+        if (globStart < 0 && !Files.isDirectory(Paths.get(inputFilePath))) {
+            return Collections.singletonList(new InputFile(inputFilePath, getLang()));
+        }
+
+        int directoryEnd = globStart < 0 ? inputFilePath.length() : lastIndexOfSeparator(inputFilePath, globStart) + 1;
+        Path directory = Paths.get(directoryEnd == 0 ? "." : inputFilePath.substring(0, directoryEnd));
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher(GLOB_SYNTAX
+                + (globStart < 0 ? "**" : inputFilePath.substring(directoryEnd)));
+        Lang providedLang = nonNull(serialization) ? getLang() : null;
+        try (Stream<Path> paths = Files.walk(directory)) {
+            List<InputFile> inputFiles = paths.filter(Files::isRegularFile)
+                    .filter(path -> matcher.matches(directory.relativize(path)))
+                    .sorted()
+                    .map(path -> new InputFile(path.toString(), nonNull(providedLang) ? providedLang
+                            : Serialization.getByExtension(findFileExtension(path.getFileName().toString()))))
+                    .filter(inputFile -> nonNull(inputFile.getLang()))
+                    .collect(Collectors.toList());
+            if (inputFiles.isEmpty()) {
+                throw new RuntimeException(String.format(NO_INPUT_FILES_TEMPLATE, inputFilePath));
+            }
+            return inputFiles;
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format(INPUT_DIRECTORY_ERROR_TEMPLATE, inputFilePath), e);
+        }
+    }
+
+    private Lang getLang() {
+        Lang rdfSerialization = (nonNull(serialization)) ?
+                Optional.ofNullable(Serialization.getByName(serialization)).orElse(null)
+                :
+                Optional.ofNullable(Serialization.getByExtension(findFileExtension(inputFilePath))).orElse(null);
+
+        if (nonNull(rdfSerialization)) {
+            return rdfSerialization;
+        } else {
+            throw new RuntimeException(getErrorMessage());
+        }
+    }
+
+    private static int indexOfGlob(String path) {
+        for (int i = 0; i < path.length(); i++) {
+            if (GLOB_CHARACTERS.indexOf(path.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int lastIndexOfSeparator(String path, int end) {
+        for (int i = end - 1; i >= 0; i--) {
+            if (PATH_SEPARATORS.indexOf(path.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Sets the options of reading and checking the input on the loader options.
+     */
+    public void applyTo(LoaderOptions options) {
+        options.setStreaming(streaming);
+        options.setParseThreads(parseThreads);
+        options.setShapesPath(shapesFilePath);
+        options.setValidOnly(validOnly);
+        options.setInputCache(!noCache);
+        options.setCacheDirectory(cacheDirectory);
+        if (nonNull(referencePolicy)) {
+            options.setReferencePolicy(Optional.ofNullable(ReferencePolicy.getByName(referencePolicy)).orElseThrow(
+                    () -> new RuntimeException(String.format(REFERENCE_POLICY_UNRECOGNIZED_TEMPLATE, referencePolicy))));
+        }
+    }
+
+    private String getErrorMessage() {
+
+        String fileExtension = findFileExtension(inputFilePath);
+
+        return (nonNull(serialization)) ? String.format(
+                SERIALIZATION_PROVIDED_ERROR_TEMPLATE, serialization, fileExtension)
+                : String.format(FILE_EXTENSION_UNRECOGNIZED_TEMPLATE, fileExtension);
+    }
+
+    private static String findFileExtension(String path) {
+        return path.substring(path.lastIndexOf(EXTENSION_SEPARATOR) + 1);
+    }
+}
@@ -0,0 +1,416 @@
+package no.greenall.entitydataloader;
+
+import no.greenall.entitydataloader.entity.ReferencePolicy;
+import no.greenall.entitydataloader.shard.Shard;
+import no.greenall.entitydataloader.upload.Compression;
+
+/**
+ * Tuning options for a load, with the defaults used when an option is not given on the command line.
+ */
+public class LoaderOptions {
+    public static final int DEFAULT_CONCURRENCY = 1;
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 20;
+    public static final int DEFAULT_IDLE_TIMEOUT_SECONDS = 30;
+    public static final int DEFAULT_BATCH_SIZE = 1;
+    public static final int DEFAULT_MAX_RETRIES = 5;
+    public static final long DEFAULT_RETRY_DELAY_MILLIS = 200;
+    public static final long DEFAULT_MAX_RETRY_DELAY_MILLIS = 30_000;
+    public static final int DEFAULT_BREAKER_THRESHOLD_PERCENT = 50;
+    public static final int DEFAULT_BREAKER_PAUSE_SECONDS = 30;
+    public static final int DEFAULT_PARSE_THREADS = 1;
+    public static final long DEFAULT_SHARD_TIMEOUT_SECONDS = 3600;
+    public static final int DEFAULT_COMPRESSION_THRESHOLD_BYTES = 1024;
+
+    private int concurrency = DEFAULT_CONCURRENCY;
+    private int maxConnectionsPerRoute = DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+    private int idleTimeoutSeconds = DEFAULT_IDLE_TIMEOUT_SECONDS;
+    private int requestTimeoutMillis;
+    private boolean streaming;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private String journalPath;
+    private boolean resume;
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+    private long retryDelayMillis = DEFAULT_RETRY_DELAY_MILLIS;
+    private long maxRetryDelayMillis = DEFAULT_MAX_RETRY_DELAY_MILLIS;
+    private int breakerThresholdPercent = DEFAULT_BREAKER_THRESHOLD_PERCENT;
+    private int breakerPauseSeconds = DEFAULT_BREAKER_PAUSE_SECONDS;
+    private double maxRequestsPerSecond;
+    private boolean adaptiveConcurrency;
+    private boolean singlePass;
+    private String metricsPath;
+    private String snapshotPath;
+    private int parseThreads = DEFAULT_PARSE_THREADS;
+    private ReferencePolicy referencePolicy;
+    private String shapesPath;
+    private boolean validOnly;
+    private Shard shard;
+    private String shardDirectory;
+    private long shardTimeoutSeconds = DEFAULT_SHARD_TIMEOUT_SECONDS;
+    private boolean async;
+    private boolean offHeapMapping;
+    private Compression compression = Compression.NONE;
+    private int compressionThresholdBytes = DEFAULT_COMPRESSION_THRESHOLD_BYTES;
+    private int maxBatchBytes;
+    private String spoolPath;
+    private boolean compressSpool;
+    private boolean replayUpdates;
+    private boolean inputCache;
+    private String cacheDirectory;
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    }
+
+    public int getIdleTimeoutSeconds() {
+        return idleTimeoutSeconds;
+    }
+
+    public void setIdleTimeoutSeconds(int idleTimeoutSeconds) {
+        this.idleTimeoutSeconds = idleTimeoutSeconds;
+    }
+
+    /**
+     * @return Milliseconds to wait for a connection to the registry and for each read of an answer, or 0 to wait
+     * indefinitely
+     */
+    public int getRequestTimeoutMillis() {
+        return requestTimeoutMillis;
+    }
+
+    public void setRequestTimeoutMillis(int requestTimeoutMillis) {
+        this.requestTimeoutMillis = requestTimeoutMillis;
+    }
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Path of the journal recording the progress of the load, or null if no journal is kept.
+     */
+    public String getJournalPath() {
+        return journalPath;
+    }
+
+    public void setJournalPath(String journalPath) {
+        this.journalPath = journalPath;
+    }
+
+    /**
+     * Whether the journal must already exist, with entities recorded in it skipped.
+     */
+    public boolean isResume() {
+        return resume;
+    }
+
+    public void setResume(boolean resume) {
+        this.resume = resume;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    public long getRetryDelayMillis() {
+        return retryDelayMillis;
+    }
+
+    public void setRetryDelayMillis(long retryDelayMillis) {
+        this.retryDelayMillis = retryDelayMillis;
+    }
+
+    public long getMaxRetryDelayMillis() {
+        return maxRetryDelayMillis;
+    }
+
+    public void setMaxRetryDelayMillis(long maxRetryDelayMillis) {
+        this.maxRetryDelayMillis = maxRetryDelayMillis;
+    }
+
+    /**
+     * Percentage of failed requests among the recent ones that pauses the load, or 0 to never pause it.
+     */
+    public int getBreakerThresholdPercent() {
+        return breakerThresholdPercent;
+    }
+
+    public void setBreakerThresholdPercent(int breakerThresholdPercent) {
+        this.breakerThresholdPercent = breakerThresholdPercent;
+    }
+
+    public int getBreakerPauseSeconds() {
+        return breakerPauseSeconds;
+    }
+
+    public void setBreakerPauseSeconds(int breakerPauseSeconds) {
+        this.breakerPauseSeconds = breakerPauseSeconds;
+    }
+
+    /**
+     * Maximum number of requests per second sent to the registry, or 0 for no limit.
+     */
+    public double getMaxRequestsPerSecond() {
+        return maxRequestsPerSecond;
+    }
+
+    public void setMaxRequestsPerSecond(double maxRequestsPerSecond) {
+        this.maxRequestsPerSecond = maxRequestsPerSecond;
+    }
+
+    /**
+     * Whether the number of requests in flight is tuned by the loader, with the concurrency as upper bound.
+     */
+    public boolean isAdaptiveConcurrency() {
+        return adaptiveConcurrency;
+    }
+
+    public void setAdaptiveConcurrency(boolean adaptiveConcurrency) {
+        this.adaptiveConcurrency = adaptiveConcurrency;
+    }
+
+    /**
+     * Whether each entity is created once with its references rewritten up front, rather than created and then
+     * updated.
+     */
+    public boolean isSinglePass() {
+        return singlePass;
+    }
+
+    public void setSinglePass(boolean singlePass) {
+        this.singlePass = singlePass;
+    }
+
+    /**
+     * Path of the JSON file the metrics of the load are written to when it ends, or null to only print a summary.
+     */
+    public String getMetricsPath() {
+        return metricsPath;
+    }
+
+    public void setMetricsPath(String metricsPath) {
+        this.metricsPath = metricsPath;
+    }
+
+    /**
+     * Path of the snapshot of the entities sent by the previous load, so that only those that changed are sent, or
+     * null to send every entity.
+     */
+    public String getSnapshotPath() {
+        return snapshotPath;
+    }
+
+    public void setSnapshotPath(String snapshotPath) {
+        this.snapshotPath = snapshotPath;
+    }
+
+    /**
+     * Number of threads parsing an N-Triples or Turtle input that is held in memory.
+     */
+    public int getParseThreads() {
+        return parseThreads;
+    }
+
+    public void setParseThreads(int parseThreads) {
+        this.parseThreads = parseThreads;
+    }
+
+    /**
+     * What to do with references to IRIs in the namespace of the input that are not concepts of the input, or null to
+     * not check the references before the load.
+     */
+    public ReferencePolicy getReferencePolicy() {
+        return referencePolicy;
+    }
+
+    public void setReferencePolicy(ReferencePolicy referencePolicy) {
+        this.referencePolicy = referencePolicy;
+    }
+
+    /**
+     * Path of the SHACL shapes every concept is validated against before the load, or null to not validate.
+     */
+    public String getShapesPath() {
+        return shapesPath;
+    }
+
+    public void setShapesPath(String shapesPath) {
+        this.shapesPath = shapesPath;
+    }
+
+    /**
+     * Whether concepts that do not conform to the shapes are left out of the load rather than stopping it.
+     */
+    public boolean isValidOnly() {
+        return validOnly;
+    }
+
+    public void setValidOnly(boolean validOnly) {
+        this.validOnly = validOnly;
+    }
+
+    /**
+     * The slice of the concepts loaded by this process, or null to load all of them.
+     */
+    public Shard getShard() {
+        return shard;
+    }
+
+    public void setShard(Shard shard) {
+        this.shard = shard;
+    }
+
+    /**
+     * Directory shared by the shards of a load, through which they exchange the locations of their entities.
+     */
+    public String getShardDirectory() {
+        return shardDirectory;
+    }
+
+    public void setShardDirectory(String shardDirectory) {
+        this.shardDirectory = shardDirectory;
+    }
+
+    /**
+     * How long a shard waits for the other shards to publish the locations of their entities.
+     */
+    public long getShardTimeoutSeconds() {
+        return shardTimeoutSeconds;
+    }
+
+    public void setShardTimeoutSeconds(long shardTimeoutSeconds) {
+        this.shardTimeoutSeconds = shardTimeoutSeconds;
+    }
+
+    /**
+     * Whether the create and update phases send their requests without holding a worker thread per request.
+     */
+    public boolean isAsync() {
+        return async;
+    }
+
+    public void setAsync(boolean async) {
+        this.async = async;
+    }
+
+    /**
+     * Whether the registry IRIs of a load without a journal are kept in direct memory rather than on the heap.
+     */
+    public boolean isOffHeapMapping() {
+        return offHeapMapping;
+    }
+
+    public void setOffHeapMapping(boolean offHeapMapping) {
+        this.offHeapMapping = offHeapMapping;
+    }
+
+    public Compression getCompression() {
+        return compression;
+    }
+
+    public void setCompression(Compression compression) {
+        this.compression = compression;
+    }
+
+    /**
+     * The size of the entities of a request from which the request is compressed.
+     */
+    public int getCompressionThresholdBytes() {
+        return compressionThresholdBytes;
+    }
+
+    public void setCompressionThresholdBytes(int compressionThresholdBytes) {
+        this.compressionThresholdBytes = compressionThresholdBytes;
+    }
+
+    /**
+     * The largest size of the entities of a bulk request, or 0 for no limit. A batch of larger entities is sent as
+     * several bulk requests.
+     */
+    public int getMaxBatchBytes() {
+        return maxBatchBytes;
+    }
+
+    public void setMaxBatchBytes(int maxBatchBytes) {
+        this.maxBatchBytes = maxBatchBytes;
+    }
+
+    /**
+     * The spool that a load writes its payloads to instead of sending them, or null to send them.
+     */
+    public String getSpoolPath() {
+        return spoolPath;
+    }
+
+    public void setSpoolPath(String spoolPath) {
+        this.spoolPath = spoolPath;
+    }
+
+    public boolean isCompressSpool() {
+        return compressSpool;
+    }
+
+    public void setCompressSpool(boolean compressSpool) {
+        this.compressSpool = compressSpool;
+    }
+
+    /**
+     * Whether a replay updates the entities of the spool rather than creating them.
+     */
+    public boolean isReplayUpdates() {
+        return replayUpdates;
+    }
+
+    public void setReplayUpdates(boolean replayUpdates) {
+        this.replayUpdates = replayUpdates;
+    }
+
+    /**
+     * Whether the parsed input is cached, so that a later load of the same file does not parse it again.
+     */
+    public boolean isInputCache() {
+        return inputCache;
+    }
+
+    public void setInputCache(boolean inputCache) {
+        this.inputCache = inputCache;
+    }
+
+    /**
+     * The directory of the input cache, or null for a directory in the temporary directory.
+     */
+    public String getCacheDirectory() {
+        return cacheDirectory;
+    }
+
+    public void setCacheDirectory(String cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+}
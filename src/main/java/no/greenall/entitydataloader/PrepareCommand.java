@@ -0,0 +1,37 @@
+package no.greenall.entitydataloader;
+
+import no.greenall.entitydataloader.entity.EntityDataManager;
+import picocli.CommandLine;
+
+@CommandLine.Command(name = PrepareCommand.NAME,
+        description = "Compile the input into a spool of entity payloads, ready to be replayed to a registry")
+public class PrepareCommand implements Runnable {
+    public static final String NAME = "prepare";
+
+    @CommandLine.Option(names = {"-h", "--help"}, usageHelp = true, description = "Display help for command")
+    private boolean showHelp = false;
+
+    @CommandLine.Mixin
+    private InputOptions inputOptions = new InputOptions();
+
+    @CommandLine.Option(names = {"-u", "--url"},
+            description = "API url that the references between the entities are rewritten to", paramLabel = "URL",
+            required = true)
+    private String baseUrl;
+
+    @CommandLine.Option(names = {"-o", "--spool"}, description = "Spool file to write", paramLabel = "FILE",
+            required = true)
+    private String spoolFilePath;
+
+    @CommandLine.Option(names = {"--compress-spool"}, description = "Deflate each payload in the spool")
+    private boolean compressSpool = false;
+
+    @Override
+    public void run() {
+        LoaderOptions options = new LoaderOptions();
+        inputOptions.applyTo(options);
+        options.setSpoolPath(spoolFilePath);
+        options.setCompressSpool(compressSpool);
+        new EntityDataManager(inputOptions.getInputFiles(), baseUrl, null, options);
+    }
+}
@@ -0,0 +1,32 @@
+package no.greenall.entitydataloader;
+
+import no.greenall.entitydataloader.spool.SpoolReplayer;
+import picocli.CommandLine;
+
+@CommandLine.Command(name = ReplayCommand.NAME,
+        description = "Send the entity payloads of a spool written by prepare to the registry")
+public class ReplayCommand implements Runnable {
+    public static final String NAME = "replay";
+
+    @CommandLine.Option(names = {"-h", "--help"}, usageHelp = true, description = "Display help for command")
+    private boolean showHelp = false;
+
+    @CommandLine.Mixin
+    private UploadOptions uploadOptions = new UploadOptions();
+
+    @CommandLine.Option(names = {"--spool"}, description = "Spool file to replay", paramLabel = "FILE",
+            required = true)
+    private String spoolFilePath;
+
+    @CommandLine.Option(names = {"--update"},
+            description = "Update the entities that an earlier replay created, rather than creating them")
+    private boolean update = false;
+
+    @Override
+    public void run() {
+        LoaderOptions options = new LoaderOptions();
+        uploadOptions.applyTo(options);
+        options.setReplayUpdates(update);
+        new SpoolReplayer(spoolFilePath, uploadOptions.getBaseUrl(), uploadOptions.getApiKey(), options);
+    }
+}
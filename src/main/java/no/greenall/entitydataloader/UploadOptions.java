@@ -0,0 +1,126 @@
+package no.greenall.entitydataloader;
+
+import no.greenall.entitydataloader.upload.Compression;
+import picocli.CommandLine;
+
+import java.util.Optional;
+
+import static java.util.Objects.nonNull;
+
+/**
+ * The command line options of the commands that send entities to the registry.
+ */
+public class UploadOptions {
+    private static final String COMPRESSION_UNRECOGNIZED_TEMPLATE = "The compression %s was not recognized, use gzip, deflate or none";
+
+    @CommandLine.Option(names = {"-u", "--url"}, description = "API url", paramLabel = "URL", required = true)
+    private String baseUrl;
+
+    @CommandLine.Option(names = {"-k", "--api-key"}, description = "API key", paramLabel = "KEY", required = true)
+    private String apiKey;
+
+    @CommandLine.Option(names = {"-c", "--concurrency"}, description = "Number of concurrent requests (default: 1)",
+            paramLabel = "N")
+    private int concurrency = LoaderOptions.DEFAULT_CONCURRENCY;
+
+    @CommandLine.Option(names = {"--max-connections"},
+            description = "Maximum pooled connections to the registry (default: 20)", paramLabel = "N")
+    private int maxConnections = LoaderOptions.DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+
+    @CommandLine.Option(names = {"--idle-timeout"},
+            description = "Seconds before an idle connection is closed (default: 30)", paramLabel = "SECONDS")
+    private int idleTimeout = LoaderOptions.DEFAULT_IDLE_TIMEOUT_SECONDS;
+
+    @CommandLine.Option(names = {"--request-timeout"},
+            description = "Timeout of a request to the registry, 0 to wait indefinitely (default: 0)",
+            paramLabel = "MILLIS")
+    private int requestTimeout;
+
+    @CommandLine.Option(names = {"-b", "--batch-size"}, description = "Entities per bulk request (default: 1)",
+            paramLabel = "N")
+    private int batchSize = LoaderOptions.DEFAULT_BATCH_SIZE;
+
+    @CommandLine.Option(names = {"--max-retries"},
+            description = "Retries of a request failing with a transient error (default: 5)", paramLabel = "N")
+    private int maxRetries = LoaderOptions.DEFAULT_MAX_RETRIES;
+
+    @CommandLine.Option(names = {"--retry-delay"},
+            description = "Base delay before the first retry (default: 200)", paramLabel = "MILLIS")
+    private long retryDelay = LoaderOptions.DEFAULT_RETRY_DELAY_MILLIS;
+
+    @CommandLine.Option(names = {"--max-retry-delay"},
+            description = "Maximum delay before a retry (default: 30000)", paramLabel = "MILLIS")
+    private long maxRetryDelay = LoaderOptions.DEFAULT_MAX_RETRY_DELAY_MILLIS;
+
+    @CommandLine.Option(names = {"--breaker-threshold"},
+            description = "Percentage of failing requests that pauses the load, 0 to disable (default: 50)",
+            paramLabel = "PERCENT")
+    private int breakerThreshold = LoaderOptions.DEFAULT_BREAKER_THRESHOLD_PERCENT;
+
+    @CommandLine.Option(names = {"--breaker-pause"},
+            description = "Seconds the load is paused when the breaker opens (default: 30)", paramLabel = "SECONDS")
+    private int breakerPause = LoaderOptions.DEFAULT_BREAKER_PAUSE_SECONDS;
+
+    @CommandLine.Option(names = {"--max-rps"}, description = "Maximum requests per second, 0 for no limit (default: 0)",
+            paramLabel = "N")
+    private double maxRequestsPerSecond;
+
+    @CommandLine.Option(names = {"--adaptive"},
+            description = "Tune the requests in flight to the registry, up to the concurrency")
+    private boolean adaptive = false;
+
+    @CommandLine.Option(names = {"--metrics"}, description = "Write latencies and counters of the load to FILE as JSON",
+            paramLabel = "FILE")
+    private String metricsFilePath;
+
+    @CommandLine.Option(names = {"--async"},
+            description = "Queue up to twice the concurrency of requests; at most --max-connections are sent at once")
+    private boolean async = false;
+
+    @CommandLine.Option(names = {"--compress"},
+            description = "Compress request entities with gzip or deflate (default: none)", paramLabel = "CODING")
+    private String compression;
+
+    @CommandLine.Option(names = {"--compress-threshold"},
+            description = "Smallest request entity that is compressed (default: 1024)", paramLabel = "BYTES")
+    private int compressionThreshold = LoaderOptions.DEFAULT_COMPRESSION_THRESHOLD_BYTES;
+
+    @CommandLine.Option(names = {"--max-batch-bytes"},
+            description = "Split batches into bulk requests of at most this size, 0 for no limit (default: 0)",
+            paramLabel = "BYTES")
+    private int maxBatchBytes;
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public String getApiKey() {
+        return apiKey;
+    }
+
+    /**
+     * Sets the options of the requests to the registry on the loader options.
+     */
+    public void applyTo(LoaderOptions options) {
+        options.setConcurrency(concurrency);
+        options.setMaxConnectionsPerRoute(maxConnections);
+        options.setIdleTimeoutSeconds(idleTimeout);
+        options.setRequestTimeoutMillis(requestTimeout);
+        options.setBatchSize(batchSize);
+        options.setMaxRetries(maxRetries);
+        options.setRetryDelayMillis(retryDelay);
+        options.setMaxRetryDelayMillis(maxRetryDelay);
+        options.setBreakerThresholdPercent(breakerThreshold);
+        options.setBreakerPauseSeconds(breakerPause);
+        options.setMaxRequestsPerSecond(maxRequestsPerSecond);
+        options.setAdaptiveConcurrency(adaptive);
+        options.setMetricsPath(metricsFilePath);
+        options.setAsync(async);
+        if (nonNull(compression)) {
+            options.setCompression(Optional.ofNullable(Compression.getByName(compression)).orElseThrow(
+                    () -> new RuntimeException(String.format(COMPRESSION_UNRECOGNIZED_TEMPLATE, compression))));
+        }
+        options.setCompressionThresholdBytes(compressionThreshold);
+        options.setMaxBatchBytes(maxBatchBytes);
+    }
+}
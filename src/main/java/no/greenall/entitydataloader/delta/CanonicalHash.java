@@ -0,0 +1,86 @@
+package no.greenall.entitydataloader.delta;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.riot.out.NodeFmtLib;
+import org.apache.jena.util.iterator.ExtendedIterator;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Hash of the content of a description that does not depend on the order of its statements or on the labels of its
+ * blank nodes.
+ *
+ * <p>Every statement is written as an N-Triples line, with each blank node replaced by the hash of the statements
+ * it is the subject of, and the hash is taken over the sorted lines. Blank nodes that are reached again while their
+ * own hash is being computed are written as {@code _:cycle}, which keeps the hash stable for cyclic blank node
+ * structures at the cost of telling some of them apart.
+ */
+public final class CanonicalHash {
+    private static final String ALGORITHM = "SHA-256";
+    private static final String HEX_TEMPLATE = "%064x";
+    private static final String BLANK_NODE_PREFIX = "_:";
+    private static final String CYCLE = "_:cycle";
+    private static final char SEPARATOR = ' ';
+    private static final char LINE_SEPARATOR = '\n';
+
+    private CanonicalHash() {
+    }
+
+    public static String of(Model description) {
+        return hashLines(lines(description, null, new HashSet<>()));
+    }
+
+    private static List<String> lines(Model description, Node subject, Set<Node> visiting) {
+        List<String> lines = new ArrayList<>();
+        ExtendedIterator<Triple> triples = description.getGraph().find(subject, Node.ANY, Node.ANY);
+        try {
+            while (triples.hasNext()) {
+                Triple triple = triples.next();
+                lines.add(format(description, triple.getSubject(), visiting) + SEPARATOR
+                        + NodeFmtLib.str(triple.getPredicate()) + SEPARATOR
+                        + format(description, triple.getObject(), visiting));
+            }
+        } finally {
+            triples.close();
+        }
+        return lines;
+    }
+
+    private static String format(Model description, Node node, Set<Node> visiting) {
+        if (!node.isBlank()) {
+            return NodeFmtLib.str(node);
+        }
+        if (!visiting.add(node)) {
+            return CYCLE;
+        }
+        try {
+            return BLANK_NODE_PREFIX + hashLines(lines(description, node, visiting));
+        } finally {
+            visiting.remove(node);
+        }
+    }
+
+    private static String hashLines(List<String> lines) {
+        Collections.sort(lines);
+        try {
+            MessageDigest digest = MessageDigest.getInstance(ALGORITHM);
+            for (String line : lines) {
+                digest.update(line.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) LINE_SEPARATOR);
+            }
+            return String.format(HEX_TEMPLATE, new BigInteger(1, digest.digest()));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
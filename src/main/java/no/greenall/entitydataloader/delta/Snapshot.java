@@ -0,0 +1,142 @@
+package no.greenall.entitydataloader.delta;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * The entities sent to the registry by the previous load, and those sent by this one.
+ *
+ * <p>The snapshot is a tab-separated file with the source IRI, registry location, content hash and ETag of each
+ * entity. It is read whole when the load starts, and replaced when the load ends by entries for every concept that is
+ * still in the input: the entry recorded by this load if there is one, or else the previous one, so that entities
+ * that failed to upload are compared against what the registry last received.
+ */
+public class Snapshot {
+    private static final String HEADER = "# entitydataloader snapshot 1";
+    private static final String COMMENT = "#";
+    private static final String FIELD_SEPARATOR = "\t";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final String NO_VALUE = "";
+    private static final int FIELDS = 4;
+    private static final String SNAPSHOT_ERROR_TEMPLATE = "Could not access the snapshot %s";
+
+    private final Path snapshotPath;
+    private final Map<String, SnapshotEntry> previousEntries;
+    private final Map<String, SnapshotEntry> recordedEntries = new ConcurrentHashMap<>();
+
+    private Snapshot(Path snapshotPath, Map<String, SnapshotEntry> previousEntries) {
+        this.snapshotPath = snapshotPath;
+        this.previousEntries = previousEntries;
+    }
+
+    /**
+     * Reads the snapshot of the previous load, or starts an empty snapshot if there was none.
+     */
+    public static Snapshot read(String snapshotPath) {
+        Path path = Paths.get(snapshotPath);
+        Map<String, SnapshotEntry> entries = new HashMap<>();
+        if (Files.exists(path)) {
+            try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                String line;
+                while (nonNull(line = reader.readLine())) {
+                    if (line.isEmpty() || line.startsWith(COMMENT)) {
+                        continue;
+                    }
+                    String[] fields = line.split(FIELD_SEPARATOR, -1);
+                    if (fields.length == FIELDS) {
+                        entries.put(fields[0], new SnapshotEntry(fields[0], fields[1], valueOf(fields[2]),
+                                valueOf(fields[3])));
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(String.format(SNAPSHOT_ERROR_TEMPLATE, snapshotPath), e);
+            }
+        }
+        return new Snapshot(path, entries);
+    }
+
+    private static String valueOf(String field) {
+        return field.isEmpty() ? null : field;
+    }
+
+    /**
+     * @return What the previous load sent for the concept, or null if the concept is new
+     */
+    public SnapshotEntry getPrevious(String sourceIRI) {
+        return previousEntries.get(sourceIRI);
+    }
+
+    public void record(SnapshotEntry entry) {
+        recordedEntries.put(entry.getSourceIRI(), entry);
+    }
+
+    /**
+     * @return The registry IRI the previous load recorded for the concept, or null if the concept is new
+     */
+    public String getPreviousLocation(String sourceIRI) {
+        SnapshotEntry entry = previousEntries.get(sourceIRI);
+        return isNull(entry) ? null : entry.getLocation();
+    }
+
+    /**
+     * @param conceptIRIs The IRIs of the concepts in the input of this load
+     * @return The entries of the previous load for concepts that are no longer in the input
+     */
+    public List<SnapshotEntry> getRemoved(Set<String> conceptIRIs) {
+        List<SnapshotEntry> removed = new ArrayList<>();
+        for (SnapshotEntry entry : new TreeMap<>(previousEntries).values()) {
+            if (!conceptIRIs.contains(entry.getSourceIRI())) {
+                removed.add(entry);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Replaces the snapshot file with the entries of the concepts in the input of this load.
+     */
+    public void write(Set<String> conceptIRIs) {
+        Path temporaryPath = Paths.get(snapshotPath + TEMPORARY_SUFFIX);
+        try (BufferedWriter writer = Files.newBufferedWriter(temporaryPath, StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.newLine();
+            for (String conceptIRI : conceptIRIs) {
+                SnapshotEntry entry = recordedEntries.getOrDefault(conceptIRI, previousEntries.get(conceptIRI));
+                if (nonNull(entry)) {
+                    writer.write(String.join(FIELD_SEPARATOR, entry.getSourceIRI(), entry.getLocation(),
+                            fieldOf(entry.getContentHash()), fieldOf(entry.getEtag())));
+                    writer.newLine();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format(SNAPSHOT_ERROR_TEMPLATE, snapshotPath), e);
+        }
+        try {
+            Files.move(temporaryPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format(SNAPSHOT_ERROR_TEMPLATE, snapshotPath), e);
+        }
+    }
+
+    private static String fieldOf(String value) {
+        return isNull(value) ? NO_VALUE : value;
+    }
+}
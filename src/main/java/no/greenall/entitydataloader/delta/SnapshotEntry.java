@@ -0,0 +1,41 @@
+package no.greenall.entitydataloader.delta;
+
+/**
+ * What was last sent to the registry for a concept.
+ */
+public class SnapshotEntry {
+
+    private final String sourceIRI;
+    private final String location;
+    private final String contentHash;
+    private final String etag;
+
+    /**
+     * @param sourceIRI   The IRI of the concept in the input data
+     * @param location    The URL of the entity in the registry
+     * @param contentHash The canonical hash of the description that was sent, or null if it was only created
+     * @param etag        The ETag of the entity after the description was sent, or null if it is not known
+     */
+    public SnapshotEntry(String sourceIRI, String location, String contentHash, String etag) {
+        this.sourceIRI = sourceIRI;
+        this.location = location;
+        this.contentHash = contentHash;
+        this.etag = etag;
+    }
+
+    public String getSourceIRI() {
+        return sourceIRI;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+}
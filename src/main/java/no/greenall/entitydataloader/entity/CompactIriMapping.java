@@ -0,0 +1,93 @@
+package no.greenall.entitydataloader.entity;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory mapping that keeps the source and registry IRIs in {@link IriDictionary dictionaries} and maps the id of
+ * a source IRI to the id of its registry IRI in an array, so that a mapping costs a few dozen bytes rather than two
+ * strings and a hash map entry. The mapping can be read from several threads while one thread records IRIs.
+ */
+public class CompactIriMapping implements IriMapping {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int NO_REPLACEMENT = -1;
+
+    private final IriDictionary sourceIRIs;
+    private final IriDictionary replacementIRIs;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private int[] replacements = newReplacements(INITIAL_CAPACITY);
+
+    public CompactIriMapping() {
+        this(false);
+    }
+
+    /**
+     * @param offHeap Whether the local names of the IRIs are kept in direct memory rather than on the heap
+     */
+    public CompactIriMapping(boolean offHeap) {
+        this.sourceIRIs = new IriDictionary(offHeap);
+        this.replacementIRIs = new IriDictionary(offHeap);
+    }
+
+    @Override
+    public String get(String sourceIRI) {
+        lock.readLock().lock();
+        try {
+            int sourceId = sourceIRIs.find(sourceIRI);
+            if (sourceId == IriDictionary.NOT_FOUND || replacements[sourceId] == NO_REPLACEMENT) {
+                return null;
+            }
+            return replacementIRIs.get(replacements[sourceId]);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void put(String sourceIRI, String replacementIRI) {
+        lock.writeLock().lock();
+        try {
+            int sourceId = sourceIRIs.intern(sourceIRI);
+            if (sourceId >= replacements.length) {
+                int[] grown = newReplacements(replacements.length * 2);
+                System.arraycopy(replacements, 0, grown, 0, replacements.length);
+                replacements = grown;
+            }
+            replacements[sourceId] = replacementIRIs.append(replacementIRI);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return The number of source IRIs with a registry IRI
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return sourceIRIs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return The bytes held by the mapping, on and off the heap
+     */
+    public long getFootprintBytes() {
+        lock.readLock().lock();
+        try {
+            return sourceIRIs.getFootprintBytes() + replacementIRIs.getFootprintBytes()
+                    + (long) Integer.BYTES * replacements.length;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static int[] newReplacements(int capacity) {
+        int[] replacements = new int[capacity];
+        Arrays.fill(replacements, NO_REPLACEMENT);
+        return replacements;
+    }
+}
@@ -0,0 +1,29 @@
+package no.greenall.entitydataloader.entity;
+
+import org.apache.jena.rdf.model.Model;
+
+/**
+ * The triples describing a single concept, identified by the IRI of the concept in the input data.
+ */
+public class ConceptDescription {
+    private final String conceptIRI;
+    private final Model model;
+
+    public ConceptDescription(String conceptIRI, Model model) {
+        this.conceptIRI = conceptIRI;
+        this.model = model;
+    }
+
+    public String getConceptIRI() {
+        return conceptIRI;
+    }
+
+    public Model getModel() {
+        return model;
+    }
+
+    @Override
+    public String toString() {
+        return conceptIRI;
+    }
+}
@@ -0,0 +1,72 @@
+package no.greenall.entitydataloader.entity;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.ResIterator;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.ResourceFactory;
+import org.apache.jena.vocabulary.RDF;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of the concepts in an input model, holding a small subject-scoped description for each concept so that a
+ * request only carries the triples of the concept it describes.
+ */
+public class ConceptIndex implements ConceptSource {
+    public static final String UNIT_ONTOLOGY_IRI = "http://unit.no/entitydata#";
+    public static final Resource CONCEPT = ResourceFactory.createResource(UNIT_ONTOLOGY_IRI + "Concept");
+
+    private final Map<String, Model> descriptions = new LinkedHashMap<>();
+
+    public ConceptIndex(Model model) {
+        ResIterator subjects = model.listSubjectsWithProperty(RDF.type, CONCEPT);
+        while (subjects.hasNext()) {
+            Resource subject = subjects.nextResource();
+            if (subject.isURIResource() && !descriptions.containsKey(subject.getURI())) {
+                descriptions.put(subject.getURI(), extractDescription(model, subject));
+            }
+        }
+    }
+
+    private Model extractDescription(Model model, Resource subject) {
+        Model description = ModelFactory.createDefaultModel();
+        description.setNsPrefixes(model.getNsPrefixMap());
+        description.add(model.listStatements(subject, null, (RDFNode) null));
+        return description;
+    }
+
+    public Set<String> getConceptIRIs() {
+        return Collections.unmodifiableSet(descriptions.keySet());
+    }
+
+    public Model getDescription(String conceptIRI) {
+        return descriptions.get(conceptIRI);
+    }
+
+    public boolean contains(String conceptIRI) {
+        return descriptions.containsKey(conceptIRI);
+    }
+
+    @Override
+    public int size() {
+        return descriptions.size();
+    }
+
+    @Override
+    public Iterator<ConceptDescription> iterator() {
+        return descriptions.entrySet().stream()
+                .map(entry -> new ConceptDescription(entry.getKey(), entry.getValue()))
+                .iterator();
+    }
+
+    @Override
+    public void close() {
+        // NO-OP
+    }
+}
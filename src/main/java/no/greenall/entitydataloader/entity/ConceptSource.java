@@ -0,0 +1,18 @@
+package no.greenall.entitydataloader.entity;
+
+import java.io.Closeable;
+
+/**
+ * The concept descriptions of a load. A source can be iterated once per upload phase, and yields the concepts in the
+ * same order every time.
+ */
+public interface ConceptSource extends Iterable<ConceptDescription>, Closeable {
+
+    /**
+     * The number of concepts in the source, counted while the input was read.
+     */
+    int size();
+
+    @Override
+    void close();
+}
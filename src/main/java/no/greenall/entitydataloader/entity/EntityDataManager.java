@@ -1,14 +1,27 @@
 package no.greenall.entitydataloader.entity;
 
 import no.greenall.entitydataloader.ApiIntegrator;
+import no.greenall.entitydataloader.EntityDto;
+import no.greenall.entitydataloader.LoaderOptions;
+import no.greenall.entitydataloader.delta.CanonicalHash;
+import no.greenall.entitydataloader.delta.Snapshot;
+import no.greenall.entitydataloader.delta.SnapshotEntry;
+import no.greenall.entitydataloader.journal.MappingJournal;
+import no.greenall.entitydataloader.metrics.LoadMetrics;
+import no.greenall.entitydataloader.metrics.Phase;
+import no.greenall.entitydataloader.shard.MappingExchange;
+import no.greenall.entitydataloader.shard.ShardConceptSource;
+import no.greenall.entitydataloader.spool.SpoolWriter;
+import no.greenall.entitydataloader.upload.Batches;
+import no.greenall.entitydataloader.upload.ConcurrentUploader;
+import no.greenall.entitydataloader.validation.ConceptValidator;
+import no.greenall.entitydataloader.validation.ValidationSummary;
 import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.rdf.model.Property;
 import org.apache.jena.rdf.model.RDFNode;
-import org.apache.jena.rdf.model.ResIterator;
 import org.apache.jena.rdf.model.Resource;
 import org.apache.jena.rdf.model.ResourceFactory;
-import org.apache.jena.rdf.model.SimpleSelector;
 import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.rdf.model.StmtIterator;
 import org.apache.jena.riot.Lang;
@@ -19,109 +32,404 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.StringWriter;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.HashMap;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
 
 import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
 
 public class EntityDataManager {
-    private static final String UNIT_ONTOLOGY_IRI = "http://unit.no/entitydata#";
-    private static final String CONCEPT_IRI = UNIT_ONTOLOGY_IRI + "Concept";
     private static final String RESOURCE_NOT_PERSISTED_TETMPLATE = "The resource %s was not persisted to the database";
     private static final String FILE_NOT_FOUND_TEMPLATE = "The requested file %s was not found";
     private static final String MALFORMED_URL_TEMPLATE = "The URL %s is malformed";
     private static final String LOCATION_RESPONSE_MISSING_ERROR_TEMPLATE = "Posting data: %n%n %s %n%nto %s failed as no location header was returned";
     private static final String URL_PATH_SEPARATOR = "/";
     private static final String UPDATED_ENTITY_OUTPUT_TEMPLATE = "Updated %d entity at URL: %s";
+    private static final String CREATED_ENTITY_OUTPUT_TEMPLATE = "Created %d entity at URL: %s";
+    private static final String SKIPPED_CREATED_OUTPUT_TEMPLATE = "Skipped %d entities already created";
+    private static final String SKIPPED_UPDATED_OUTPUT_TEMPLATE = "Skipped %d entities already updated";
+    private static final String UNCHANGED_OUTPUT_TEMPLATE = "Skipped %d entities unchanged since the last load";
+    private static final String REMOVED_ENTITY_OUTPUT_TEMPLATE = "Removed from the input: %s, still at URL: %s";
+    private static final String REMOVED_OUTPUT_TEMPLATE = "%d entities were removed from the input since the last load";
+    private static final String ETAG_TEMPLATE = "\"%s\"";
+    private static final String DANGLING_REFERENCES_TEMPLATE = "The input has %d dangling references, no entities were created";
+    private static final String INVALID_CONCEPTS_TEMPLATE = "%d concepts do not conform to the shapes, no entities were created";
+    private static final String SKIPPED_INVALID_OUTPUT_TEMPLATE = "Skipping %d concepts that do not conform to the shapes";
+    private static final String SNAPSHOT_SINGLE_PASS_ERROR = "A snapshot cannot be used with a single-pass load";
+    private static final String SHARD_DIRECTORY_MISSING_ERROR = "A sharded load needs a directory shared by the shards";
+    private static final String SHARD_OUTPUT_TEMPLATE = "Loading shard %s with %d of the concepts";
+    private static final String THROUGHPUT_OUTPUT_TEMPLATE = ", sending %.1f requests/s with at most %d requests in flight";
+    private static final String CREATED_PROGRESS_LABEL = "Created";
+    private static final String UPDATED_PROGRESS_LABEL = "Updated";
+    private static final String PREDICTION_MISMATCH_OUTPUT_TEMPLATE = "The registry created %2$s rather than %1$s, falling back to creating and then updating the entities";
+    private static final String LATE_PREDICTION_MISMATCH_OUTPUT_TEMPLATE = "The registry created %2$s rather than %1$s, updating the entities once they are created";
+    private static final String SPOOLED_OUTPUT_TEMPLATE = "Wrote %d entity payloads to the spool %s";
+    private static final String SPOOLED_PROGRESS_LABEL = "Spooled";
+    private static final String CACHE_READ_OUTPUT_TEMPLATE = "Read the parsed input from the cache %s";
+    private static final String CACHE_WRITTEN_OUTPUT_TEMPLATE = "Wrote the parsed input to the cache %s";
+    private static final String INPUT_FILES_OUTPUT_TEMPLATE = "Read %d input files on %d threads";
+    private static final String JOURNAL_NOT_FOUND_TEMPLATE = "The journal %s to resume from was not found";
     private final URL baseUrl;
     private Model inputModel;
+    private ConceptSource conceptSource;
+    private ConceptSource allConcepts;
     private String apiKey;
+    private ConcurrentUploader uploader;
+    private ApiIntegrator apiIntegrator;
+    private int batchSize;
+    private boolean async;
+    private IriMapping mappedIRIs;
+    private MappingJournal journal;
+    private Snapshot snapshot;
+    private AtomicInteger unchanged = new AtomicInteger();
+    private ReferenceIndex droppedReferences;
+    private MappingExchange mappingExchange;
+    private LoadMetrics metrics;
 
-    private Map<String, String> fetchReplacementIRIs() {
-        Map<String, String> mappedIRIs = new HashMap<>();
+    /**
+     * Creates an entity for every concept. The first batch is sent on its own, and if the registry creates its
+     * entities at the URLs of their client-supplied ids, the creates of the remaining batches are retried after a
+     * timeout or a dropped connection.
+     */
+    private void fetchReplacementIRIs() {
+        metrics.startPhase();
+        AtomicInteger counter = new AtomicInteger();
+        AtomicInteger skipped = new AtomicInteger();
 
-        StmtIterator statementIterator = listConcepts();
+        Iterator<List<ConceptDescription>> batches =
+                Batches.of(pendingConcepts(mappedIRIs::containsKey, skipped), batchSize).iterator();
+        BiConsumer<Integer, List<Map.Entry<String, String>>> onCreated = (batchCounter, mappings) -> {
+            for (Map.Entry<String, String> mapping : mappings) {
+                mappedIRIs.put(mapping.getKey(), mapping.getValue());
+                if (nonNull(snapshot)) {
+                    snapshot.record(new SnapshotEntry(mapping.getKey(), mapping.getValue(), null, null));
+                }
+                metrics.entityCreated();
+                System.out.println(String.format(CREATED_ENTITY_OUTPUT_TEMPLATE, counter.incrementAndGet(),
+                        mapping.getValue()));
+                printProgress(CREATED_PROGRESS_LABEL, counter.get(), skipped.get());
+            }
+        };
+        if (batches.hasNext()) {
+            onCreated.accept(1, createFirstEntities(batches.next()));
+        }
 
-        while (statementIterator.hasNext()) {
-            Statement statement = statementIterator.nextStatement();
-            String currentIRI = statement.getSubject().getURI();
-            if (!mappedIRIs.containsKey(currentIRI)) {
-                String replacementIRI = createEntity(UUID.randomUUID().toString(), statement.getModel());
-                mappedIRIs.put(currentIRI, replacementIRI);
+        Iterable<List<ConceptDescription>> remainingBatches = () -> batches;
+        if (async) {
+            uploader.executeAsync(remainingBatches, this::createEntitiesAsync, onCreated);
+        } else {
+            uploader.execute(remainingBatches, this::createEntities, onCreated);
+        }
+        if (skipped.get() > 0) {
+            System.out.println(String.format(SKIPPED_CREATED_OUTPUT_TEMPLATE, skipped.get()));
+        }
+    }
+
+    private void printProgress(String label, int count, int skipped) {
+        String progress = metrics.progress(label, count, conceptSource.size() - skipped);
+        if (nonNull(progress)) {
+            System.out.println(progress + String.format(THROUGHPUT_OUTPUT_TEMPLATE, apiIntegrator.getRequestRate(),
+                    apiIntegrator.getConcurrencyLimit()));
+        }
+    }
+
+    private Iterable<ConceptDescription> pendingConcepts(Predicate<String> isDone, AtomicInteger skipped) {
+        return () -> StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(timedConcepts(), Spliterator.ORDERED), false)
+                .filter(concept -> {
+                    if (isDone.test(concept.getConceptIRI())) {
+                        skipped.incrementAndGet();
+                        return false;
+                    }
+                    return true;
+                })
+                .iterator();
+    }
+
+    /**
+     * Iterates the concept source, recording the time taken to produce each description as {@link Phase#EXTRACT}.
+     */
+    private Iterator<ConceptDescription> timedConcepts() {
+        Iterator<ConceptDescription> concepts = conceptSource.iterator();
+        return new Iterator<ConceptDescription>() {
+            private long extractNanos;
+
+            @Override
+            public boolean hasNext() {
+                long start = System.nanoTime();
+                boolean hasNext = concepts.hasNext();
+                extractNanos += System.nanoTime() - start;
+                return hasNext;
             }
+
+            @Override
+            public ConceptDescription next() {
+                long start = System.nanoTime();
+                ConceptDescription concept = concepts.next();
+                if (nonNull(droppedReferences)) {
+                    concept = new ConceptDescription(concept.getConceptIRI(),
+                            droppedReferences.withoutDanglingReferences(concept.getModel()));
+                }
+                metrics.record(Phase.EXTRACT, extractNanos + System.nanoTime() - start);
+                extractNanos = 0;
+                return concept;
+            }
+        };
+    }
+
+    private List<Map.Entry<String, String>> createFirstEntities(List<ConceptDescription> concepts) {
+        List<EntityDto> entityDtos = new ArrayList<>();
+        for (ConceptDescription concept : concepts) {
+            entityDtos.add(toEntityDto(UUID.randomUUID().toString(), concept.getModel()));
         }
-        return mappedIRIs;
+        List<Map.Entry<String, String>> mappings = sendCreateRequests(concepts, entityDtos);
+        boolean clientIdsHonoured = true;
+        for (int i = 0; i < mappings.size(); i++) {
+            clientIdsHonoured &= mappings.get(i).getValue().equals(apiIntegrator.entityUrl(entityDtos.get(i).getId()));
+        }
+        apiIntegrator.setClientIdsHonoured(clientIdsHonoured);
+        return mappings;
     }
 
-    private StmtIterator listConcepts() {
-        SimpleSelector simpleSelector = new SimpleSelector(
-                null,
-                RDF.type,
-                (RDFNode) ResourceFactory.createResource(CONCEPT_IRI));
+    private List<Map.Entry<String, String>> createEntities(List<ConceptDescription> concepts) {
+        List<EntityDto> entityDtos = new ArrayList<>();
+        for (ConceptDescription concept : concepts) {
+            entityDtos.add(toEntityDto(UUID.randomUUID().toString(), concept.getModel()));
+        }
+        return sendCreateRequests(concepts, entityDtos);
+    }
 
-        return inputModel.listStatements(simpleSelector);
+    /**
+     * Serializes the concepts on the calling thread and creates their entities without waiting for the registry.
+     */
+    private CompletionStage<List<Map.Entry<String, String>>> createEntitiesAsync(List<ConceptDescription> concepts) {
+        List<EntityDto> entityDtos = new ArrayList<>();
+        for (ConceptDescription concept : concepts) {
+            entityDtos.add(toEntityDto(UUID.randomUUID().toString(), concept.getModel()));
+        }
+        CompletionStage<List<String>> responseUrls = (entityDtos.size() == 1)
+                ? apiIntegrator.createEntityAsync(entityDtos.get(0).getId(), entityDtos.get(0).getBody())
+                        .thenApply(Collections::singletonList)
+                : apiIntegrator.createEntitiesAsync(entityDtos);
+        return responseUrls.thenApply(urls -> toMappings(concepts, entityDtos, urls));
     }
 
-    private String createEntity(String id, Model model) {
-        String outputData = modelToString(model);
-        String responseUrl;
+    private List<Map.Entry<String, String>> createRemappedEntities(List<ConceptDescription> concepts,
+                                                                   IriMapping predictedIRIs) {
+        List<EntityDto> entityDtos = new ArrayList<>();
+        for (ConceptDescription concept : concepts) {
+            entityDtos.add(toEntityDto(PredictedIriMapping.idFor(concept.getConceptIRI()),
+                    remapIRIs(concept.getModel(), predictedIRIs)));
+        }
+        return sendCreateRequests(concepts, entityDtos);
+    }
 
-        ApiIntegrator apiIntegrator = new ApiIntegrator(baseUrl, apiKey);
-        responseUrl = apiIntegrator.createEntity(id, outputData);
+    /**
+     * Serializes the concepts like {@link #createRemappedEntities}, and creates their entities without waiting for
+     * the registry.
+     */
+    private CompletionStage<List<Map.Entry<String, String>>> createRemappedEntitiesAsync(
+            List<ConceptDescription> concepts, IriMapping predictedIRIs) {
+        List<EntityDto> entityDtos = new ArrayList<>();
+        for (ConceptDescription concept : concepts) {
+            entityDtos.add(toEntityDto(PredictedIriMapping.idFor(concept.getConceptIRI()),
+                    remapIRIs(concept.getModel(), predictedIRIs)));
+        }
+        CompletionStage<List<String>> responseUrls = (entityDtos.size() == 1)
+                ? apiIntegrator.createEntityAsync(entityDtos.get(0).getId(), entityDtos.get(0).getBody())
+                        .thenApply(Collections::singletonList)
+                : apiIntegrator.createEntitiesAsync(entityDtos);
+        return responseUrls.thenApply(urls -> toMappings(concepts, entityDtos, urls));
+    }
 
-        if (isNull(responseUrl)) {
-            throw new RuntimeException(String.format(LOCATION_RESPONSE_MISSING_ERROR_TEMPLATE, outputData, baseUrl));
+    private List<Map.Entry<String, String>> sendCreateRequests(List<ConceptDescription> concepts,
+                                                               List<EntityDto> entityDtos) {
+        List<String> responseUrls = (entityDtos.size() == 1)
+                ? Collections.singletonList(apiIntegrator.createEntity(entityDtos.get(0).getId(),
+                        entityDtos.get(0).getBody()))
+                : apiIntegrator.createEntities(entityDtos);
+        return toMappings(concepts, entityDtos, responseUrls);
+    }
+
+    private List<Map.Entry<String, String>> toMappings(List<ConceptDescription> concepts, List<EntityDto> entityDtos,
+                                                       List<String> responseUrls) {
+        List<Map.Entry<String, String>> mappings = new ArrayList<>();
+        for (int i = 0; i < concepts.size(); i++) {
+            String responseUrl = responseUrls.get(i);
+            if (isNull(responseUrl)) {
+                throw new RuntimeException(String.format(LOCATION_RESPONSE_MISSING_ERROR_TEMPLATE,
+                        entityDtos.get(i).getBody(), baseUrl));
+            }
+            mappings.add(new SimpleImmutableEntry<>(concepts.get(i).getConceptIRI(), responseUrl));
         }
+        return mappings;
+    }
 
-        return responseUrl;
+    private EntityDto toEntityDto(String id, Model model) {
+        EntityDto entityDto = new EntityDto();
+        entityDto.setId(id);
+        entityDto.setBody(metrics.time(Phase.SERIALIZE, () -> modelToString(model)));
+        return entityDto;
     }
 
-    private String modelToString(Model model) {
-        StringWriter stringWriter = new StringWriter();
-        RDFDataMgr.write(stringWriter, model, Lang.JSONLD);
-        return stringWriter.toString();
+    static String modelToString(Model model) {
+        return EntityPayloadWriter.write(model);
     }
 
-    private String updateEntity(String id, Model model) {
-        String outputData = modelToString(model);
+    /**
+     * Updates the entities of the concepts, leaving out those that the snapshot shows to be unchanged since the last
+     * load.
+     *
+     * @return The IRIs of the concepts whose entities were updated
+     */
+    private List<String> updateEntities(List<ConceptDescription> concepts) {
+        List<String> updatedIRIs = new ArrayList<>();
+        List<String> contentHashes = new ArrayList<>();
+        List<EntityDto> entityDtos = new ArrayList<>();
+        for (ConceptDescription concept : concepts) {
+            Model singleDescription = remapIRIs(concept.getModel(), mappedIRIs);
+            String replacementIRI = mappedIRIs.get(concept.getConceptIRI());
+            if (nonNull(snapshot)) {
+                String contentHash = CanonicalHash.of(singleDescription);
+                SnapshotEntry previous = snapshot.getPrevious(concept.getConceptIRI());
+                if (nonNull(previous) && replacementIRI.equals(previous.getLocation())
+                        && contentHash.equals(previous.getContentHash())) {
+                    snapshot.record(previous);
+                    unchanged.incrementAndGet();
+                    continue;
+                }
+                contentHashes.add(contentHash);
+            }
+            String id = replacementIRI.substring(replacementIRI.lastIndexOf(URL_PATH_SEPARATOR) + 1);
+            updatedIRIs.add(concept.getConceptIRI());
+            entityDtos.add(toEntityDto(id, singleDescription));
+        }
+
+        if (entityDtos.isEmpty()) {
+            return updatedIRIs;
+        }
+        if (isNull(snapshot)) {
+            if (entityDtos.size() == 1) {
+                apiIntegrator.updateEntity(entityDtos.get(0).getId(), entityDtos.get(0).getBody());
+            } else {
+                apiIntegrator.updateEntities(entityDtos);
+            }
+            return updatedIRIs;
+        }
+
+        List<Integer> unconditional = new ArrayList<>();
+        String[] etags = new String[entityDtos.size()];
+        for (int i = 0; i < entityDtos.size(); i++) {
+            SnapshotEntry previous = snapshot.getPrevious(updatedIRIs.get(i));
+            if (entityDtos.size() == 1 || nonNull(previous) && nonNull(previous.getEtag())) {
+                String ifMatch = nonNull(previous) ? previous.getEtag() : null;
+                etags[i] = apiIntegrator.updateEntity(entityDtos.get(i).getId(), entityDtos.get(i).getBody(),
+                        ifMatch);
+            } else {
+                unconditional.add(i);
+            }
+        }
+        if (!unconditional.isEmpty()) {
+            apiIntegrator.updateEntities(unconditional.stream().map(entityDtos::get).collect(Collectors.toList()));
+            unconditional.forEach(i -> etags[i] = String.format(ETAG_TEMPLATE, entityDtos.get(i).getEtagValue()));
+        }
+        for (int i = 0; i < entityDtos.size(); i++) {
+            snapshot.record(new SnapshotEntry(updatedIRIs.get(i), mappedIRIs.get(updatedIRIs.get(i)),
+                    contentHashes.get(i), etags[i]));
+        }
+        return updatedIRIs;
+    }
 
-        ApiIntegrator apiIntegrator = new ApiIntegrator(baseUrl, apiKey);
-        apiIntegrator.updateEntity(id, outputData);
-        return baseUrl.toString();
+    /**
+     * Updates the entities of the concepts without waiting for the registry. Only used without a snapshot, whose
+     * conditional updates are sent by {@link #updateEntities(List)}.
+     *
+     * @return The stage that completes with the IRIs of the concepts whose entities were updated
+     */
+    private CompletionStage<List<String>> updateEntitiesAsync(List<ConceptDescription> concepts) {
+        List<String> updatedIRIs = new ArrayList<>();
+        List<EntityDto> entityDtos = new ArrayList<>();
+        for (ConceptDescription concept : concepts) {
+            String replacementIRI = mappedIRIs.get(concept.getConceptIRI());
+            String id = replacementIRI.substring(replacementIRI.lastIndexOf(URL_PATH_SEPARATOR) + 1);
+            updatedIRIs.add(concept.getConceptIRI());
+            entityDtos.add(toEntityDto(id, remapIRIs(concept.getModel(), mappedIRIs)));
+        }
+        if (entityDtos.isEmpty()) {
+            return CompletableFuture.completedFuture(updatedIRIs);
+        }
+        CompletionStage<?> updated = (entityDtos.size() == 1)
+                ? apiIntegrator.updateEntityAsync(entityDtos.get(0).getId(), entityDtos.get(0).getBody(), null)
+                : apiIntegrator.updateEntitiesAsync(entityDtos);
+        return updated.thenApply(done -> updatedIRIs);
     }
 
-    private void loadData(String filepath, Lang lang) {
+    static void loadData(Model model, String filepath, Lang lang) {
         try (InputStream inputStream = new FileInputStream(new File(filepath))) {
-            RDFDataMgr.read(inputModel, inputStream, lang);
+            RDFDataMgr.read(model, inputStream, lang);
         } catch (IOException e) {
             throw new RuntimeException(String.format(FILE_NOT_FOUND_TEMPLATE, filepath));
         }
     }
 
-    private Resource remapSingleIRI(Resource resource, Map<String, String> replacementIRIs) {
-        if (replacementIRIs.containsKey(resource.getURI())) {
-            return ResourceFactory.createResource(replacementIRIs.get(resource.getURI()));
+    private static Resource remapSingleIRI(Resource resource, IriMapping replacementIRIs) {
+        String replacementIRI = resource.isURIResource() ? replacementIRIs.get(resource.getURI()) : null;
+        if (nonNull(replacementIRI)) {
+            return ResourceFactory.createResource(replacementIRI);
         } else {
             throw new RuntimeException(String.format(RESOURCE_NOT_PERSISTED_TETMPLATE, resource.getURI()));
         }
     }
 
-    private Model remapIRIs(Map<String, String> replacementIRIs) {
+    /**
+     * Rewrites the subjects and the objects that are concepts of the input to their registry IRIs, looking each IRI
+     * up once, and the subject once for consecutive statements about it.
+     */
+    static Model remapIRIs(Model description, IriMapping replacementIRIs) {
         Model outputModel = ModelFactory.createDefaultModel();
-        StmtIterator concepts = listConcepts();
-        while (concepts.hasNext()) {
-            Statement statement = concepts.nextStatement();
+        outputModel.setNsPrefixes(description.getNsPrefixMap());
+        StmtIterator statements = description.listStatements();
+        Resource sourceSubject = null;
+        Resource subject = null;
+        while (statements.hasNext()) {
+            Statement statement = statements.nextStatement();
 
-            Resource subject = statement.getSubject();
+            if (!statement.getSubject().equals(sourceSubject)) {
+                sourceSubject = statement.getSubject();
+                subject = remapSingleIRI(sourceSubject, replacementIRIs);
+            }
             Property property = statement.getPredicate();
             RDFNode object = statement.getObject();
 
             if (object.isURIResource() && !property.equals(RDF.type)) {
-                object = remapSingleIRI(statement.getObject().asResource(), replacementIRIs);
+                String replacementIRI = replacementIRIs.get(object.asResource().getURI());
+                if (nonNull(replacementIRI)) {
+                    object = ResourceFactory.createResource(replacementIRI);
+                }
             }
             outputModel.add(outputModel.createStatement(subject, property, object));
         }
@@ -129,8 +437,19 @@ public class EntityDataManager {
     }
 
     public EntityDataManager(String filepath, Lang lang, String baseUrl, String apiKey) {
+        this(filepath, lang, baseUrl, apiKey, new LoaderOptions());
+    }
+
+    public EntityDataManager(String filepath, Lang lang, String baseUrl, String apiKey, LoaderOptions options) {
+        this(Collections.singletonList(new InputFile(filepath, lang)), baseUrl, apiKey, options);
+    }
+
+    /**
+     * Loads the concepts of all the input files together, so that the entities of one file may refer to those of
+     * another.
+     */
+    public EntityDataManager(List<InputFile> inputFiles, String baseUrl, String apiKey, LoaderOptions options) {
         this.apiKey = apiKey;
-        this.inputModel = ModelFactory.createDefaultModel();
 
         try {
             this.baseUrl = new URL(baseUrl);
@@ -138,26 +457,399 @@ public class EntityDataManager {
             throw new RuntimeException(String.format(MALFORMED_URL_TEMPLATE, baseUrl));
         }
 
-        loadData(filepath, lang);
-        Map<String, String> mappedIRIs = fetchReplacementIRIs();
-        Model model = remapIRIs(mappedIRIs);
-        writeAllDataFromModel(model);
+        this.metrics = new LoadMetrics();
+        try (MappingJournal mappingJournal = openJournal(options);
+             ApiIntegrator sharedApiIntegrator = openApiIntegrator(options);
+             ConceptSource concepts = metrics.time(Phase.PARSE, () -> readConcepts(inputFiles, options));
+             ConcurrentUploader concurrentUploader = new ConcurrentUploader(options.getConcurrency())) {
+            this.journal = mappingJournal;
+            this.mappedIRIs = nonNull(mappingJournal) ? mappingJournal
+                    : new CompactIriMapping(options.isOffHeapMapping());
+            if (nonNull(options.getSnapshotPath())) {
+                if (options.isSinglePass()) {
+                    throw new RuntimeException(SNAPSHOT_SINGLE_PASS_ERROR);
+                }
+                this.snapshot = Snapshot.read(options.getSnapshotPath());
+                this.mappedIRIs = mappedIRIs.withFallback(snapshot::getPreviousLocation);
+            }
+            this.conceptSource = concepts;
+            this.uploader = concurrentUploader;
+            this.apiIntegrator = sharedApiIntegrator;
+            this.batchSize = options.getBatchSize();
+            this.async = options.isAsync();
+            if (nonNull(options.getShapesPath())) {
+                validateConcepts(options);
+            }
+            if (nonNull(options.getReferencePolicy())) {
+                checkReferences(options.getReferencePolicy());
+            }
+            this.allConcepts = conceptSource;
+            if (nonNull(options.getShard())) {
+                selectShard(options);
+            }
+            if (nonNull(options.getSpoolPath())) {
+                writeSpool(options);
+            } else if (options.isSinglePass()) {
+                writeEntitiesInSinglePass();
+            } else if (nonNull(snapshot)) {
+                writeChangedEntities();
+            } else {
+                fetchReplacementIRIs();
+                writeAllDataFromModel();
+            }
+        } catch (RuntimeException e) {
+            if (nonNull(mappingExchange)) {
+                mappingExchange.fail();
+            }
+            throw e;
+        } finally {
+            System.out.println(metrics.summary());
+            if (nonNull(options.getMetricsPath())) {
+                metrics.writeSummary(options.getMetricsPath());
+            }
+        }
     }
 
-    private void writeAllDataFromModel(Model model) {
-        ResIterator subjects = model.listSubjectsWithProperty(RDF.type, ResourceFactory.createResource("http://unit.no/entitydata#Concept"));
-        int counter = 0;
+    /**
+     * Creates every entity with its references already rewritten to the registry IRIs predicted from the
+     * client-supplied ids, so that each entity is sent once. The first batch is sent on its own to check the
+     * prediction against the locations returned by the registry; if they differ, the load falls back to creating
+     * the remaining entities and then updating all of them. If a later batch is created elsewhere than predicted, the
+     * remaining batches are still created, and then every entity is updated with the locations the registry returned.
+     */
+    private void writeEntitiesInSinglePass() {
+        Set<String> conceptIRIs = new HashSet<>();
+        for (ConceptDescription concept : allConcepts) {
+            conceptIRIs.add(concept.getConceptIRI());
+        }
+        IriMapping predictedIRIs = new PredictedIriMapping(mappedIRIs, conceptIRIs, apiIntegrator::entityUrl);
+        metrics.startPhase();
+        AtomicInteger counter = new AtomicInteger();
+        AtomicInteger skipped = new AtomicInteger();
+        Iterator<List<ConceptDescription>> batches =
+                Batches.of(pendingConcepts(mappedIRIs::containsKey, skipped), batchSize).iterator();
 
-        while (subjects.hasNext()) {
-            counter++;
-            Resource subject = subjects.nextResource();
-            Property property = ResourceFactory.createProperty(null);
-            RDFNode object = ResourceFactory.createResource();
-            SimpleSelector subjectQuery = new SimpleSelector(subject,  null, (RDFNode) null);
-            Model singleDescription = model.query(subjectQuery);
-            String id = subject.getURI().substring(subject.getURI().lastIndexOf(URL_PATH_SEPARATOR));
-            String updatedUrl = updateEntity(id, singleDescription);
-            System.out.println(String.format(UPDATED_ENTITY_OUTPUT_TEMPLATE, counter, updatedUrl));
+        if (batches.hasNext()) {
+            List<Map.Entry<String, String>> firstMappings = createRemappedEntities(batches.next(), predictedIRIs);
+            for (Map.Entry<String, String> mapping : firstMappings) {
+                if (!mapping.getValue().equals(predictedIRIs.get(mapping.getKey()))) {
+                    System.out.println(String.format(PREDICTION_MISMATCH_OUTPUT_TEMPLATE,
+                            predictedIRIs.get(mapping.getKey()), mapping.getValue()));
+                    firstMappings.forEach(created -> mappedIRIs.put(created.getKey(), created.getValue()));
+                    fetchReplacementIRIs();
+                    writeAllDataFromModel();
+                    return;
+                }
+            }
+            apiIntegrator.setClientIdsHonoured(true);
+            recordSinglePass(firstMappings, counter, skipped);
+        }
+
+        AtomicBoolean mispredicted = new AtomicBoolean();
+        BiConsumer<Integer, List<Map.Entry<String, String>>> onCreated = (batchCounter, mappings) -> {
+            if (!mispredicted.get()) {
+                for (Map.Entry<String, String> mapping : mappings) {
+                    if (!mapping.getValue().equals(predictedIRIs.get(mapping.getKey()))) {
+                        System.out.println(String.format(LATE_PREDICTION_MISMATCH_OUTPUT_TEMPLATE,
+                                predictedIRIs.get(mapping.getKey()), mapping.getValue()));
+                        apiIntegrator.setClientIdsHonoured(false);
+                        mispredicted.set(true);
+                        break;
+                    }
+                }
+            }
+            // Once a prediction has failed, the entities created from then on may refer to it and need an update
+            if (mispredicted.get()) {
+                recordCreated(mappings, counter, skipped);
+            } else {
+                recordSinglePass(mappings, counter, skipped);
+            }
+        };
+        Iterable<List<ConceptDescription>> remainingBatches = () -> batches;
+        if (async) {
+            uploader.executeAsync(remainingBatches, batch -> createRemappedEntitiesAsync(batch, predictedIRIs),
+                    onCreated);
+        } else {
+            uploader.execute(remainingBatches, batch -> createRemappedEntities(batch, predictedIRIs), onCreated);
+        }
+        if (skipped.get() > 0) {
+            System.out.println(String.format(SKIPPED_CREATED_OUTPUT_TEMPLATE, skipped.get()));
+        }
+        if (mispredicted.get()) {
+            // The entities created before the failed prediction may also refer to it, so none of them is skipped
+            writeAllDataFromModel(conceptIRI -> false);
+        } else if (nonNull(journal)) {
+            writeAllDataFromModel();
+        }
+    }
+
+    /**
+     * Writes the payload of every entity to a spool instead of sending it, with the references already rewritten to
+     * the registry IRIs predicted from the client-supplied ids, so that a replay sends each payload once as it is.
+     */
+    private void writeSpool(LoaderOptions options) {
+        Set<String> conceptIRIs = new HashSet<>();
+        for (ConceptDescription concept : allConcepts) {
+            conceptIRIs.add(concept.getConceptIRI());
+        }
+        String entityUrlPrefix = apiIntegrator.entityUrl("");
+        IriMapping predictedIRIs = new PredictedIriMapping(mappedIRIs, conceptIRIs, id -> entityUrlPrefix + id);
+        metrics.startPhase();
+        AtomicInteger skipped = new AtomicInteger();
+        try (SpoolWriter spool = new SpoolWriter(options.getSpoolPath(), entityUrlPrefix, options.isCompressSpool())) {
+            for (ConceptDescription concept : pendingConcepts(iri -> false, skipped)) {
+                spool.write(toEntityDto(PredictedIriMapping.idFor(concept.getConceptIRI()),
+                        remapIRIs(concept.getModel(), predictedIRIs)));
+                String progress = metrics.progress(SPOOLED_PROGRESS_LABEL, spool.getCount(),
+                        conceptSource.size() - skipped.get());
+                if (nonNull(progress)) {
+                    System.out.println(progress);
+                }
+            }
+            spool.commit();
+            System.out.println(String.format(SPOOLED_OUTPUT_TEMPLATE, spool.getCount(), options.getSpoolPath()));
+        }
+    }
+
+    /**
+     * Creates the entities of new concepts and updates those that changed since the load that wrote the snapshot,
+     * and reports the concepts that are no longer in the input. The snapshot is written even if the load fails, so
+     * that the entities sent before the failure are not sent again.
+     */
+    private void writeChangedEntities() {
+        Set<String> conceptIRIs = new HashSet<>();
+        for (ConceptDescription concept : conceptSource) {
+            conceptIRIs.add(concept.getConceptIRI());
+        }
+        List<SnapshotEntry> removed = snapshot.getRemoved(conceptIRIs);
+        for (SnapshotEntry entry : removed) {
+            System.out.println(String.format(REMOVED_ENTITY_OUTPUT_TEMPLATE, entry.getSourceIRI(),
+                    entry.getLocation()));
+        }
+        if (!removed.isEmpty()) {
+            System.out.println(String.format(REMOVED_OUTPUT_TEMPLATE, removed.size()));
+        }
+        try {
+            fetchReplacementIRIs();
+            writeAllDataFromModel();
+        } finally {
+            snapshot.write(conceptIRIs);
+        }
+    }
+
+    private void recordSinglePass(List<Map.Entry<String, String>> mappings, AtomicInteger counter,
+                                  AtomicInteger skipped) {
+        recordCreated(mappings, counter, skipped);
+        if (nonNull(journal)) {
+            mappings.forEach(mapping -> journal.recordUpdated(mapping.getKey()));
+        }
+    }
+
+    private void recordCreated(List<Map.Entry<String, String>> mappings, AtomicInteger counter,
+                               AtomicInteger skipped) {
+        for (Map.Entry<String, String> mapping : mappings) {
+            metrics.entityCreated();
+            mappedIRIs.put(mapping.getKey(), mapping.getValue());
+            System.out.println(String.format(CREATED_ENTITY_OUTPUT_TEMPLATE, counter.incrementAndGet(),
+                    mapping.getValue()));
+            printProgress(CREATED_PROGRESS_LABEL, counter.get(), skipped.get());
+        }
+    }
+
+    /**
+     * Validates every concept against the shapes before any entity is sent, and either stops the load or leaves out
+     * the concepts that do not conform.
+     */
+    private void validateConcepts(LoaderOptions options) {
+        ValidationSummary summary = new ConceptValidator(options.getShapesPath())
+                .validateAll(conceptSource, Runtime.getRuntime().availableProcessors(), metrics);
+        System.out.println(summary.report());
+        Set<String> invalidConceptIRIs = summary.getInvalidConceptIRIs();
+        if (invalidConceptIRIs.isEmpty()) {
+            return;
+        }
+        if (!options.isValidOnly()) {
+            throw new RuntimeException(String.format(INVALID_CONCEPTS_TEMPLATE, invalidConceptIRIs.size()));
+        }
+        System.out.println(String.format(SKIPPED_INVALID_OUTPUT_TEMPLATE, invalidConceptIRIs.size()));
+        this.conceptSource = new ExcludingConceptSource(conceptSource, invalidConceptIRIs);
+    }
+
+    /**
+     * Reports the references of the input before any entity is sent, and applies the policy if some are dangling.
+     */
+    private void checkReferences(ReferencePolicy policy) {
+        ReferenceIndex referenceIndex = new ReferenceIndex(conceptSource);
+        System.out.println(referenceIndex.report());
+        if (referenceIndex.getDanglingReferenceCount() == 0) {
+            return;
+        }
+        if (policy == ReferencePolicy.FAIL) {
+            throw new RuntimeException(String.format(DANGLING_REFERENCES_TEMPLATE,
+                    referenceIndex.getDanglingReferenceCount()));
+        }
+        if (policy == ReferencePolicy.DROP) {
+            this.droppedReferences = referenceIndex;
+        }
+    }
+
+    /**
+     * Restricts the load to the concepts of one shard. References to the concepts of the other shards are rewritten
+     * from the mappings the shards exchange before the update phase; a single-pass load predicts them instead.
+     */
+    private void selectShard(LoaderOptions options) {
+        if (isNull(options.getShardDirectory())) {
+            throw new RuntimeException(SHARD_DIRECTORY_MISSING_ERROR);
+        }
+        this.mappingExchange = new MappingExchange(options.getShard(), options.getShardDirectory(),
+                options.getShardTimeoutSeconds());
+        this.conceptSource = new ShardConceptSource(conceptSource, options.getShard());
+        System.out.println(String.format(SHARD_OUTPUT_TEMPLATE, options.getShard(), conceptSource.size()));
+    }
+
+    /**
+     * Publishes the locations of the entities of this shard, and waits for those of the other shards.
+     */
+    private void exchangeMappings() {
+        mappingExchange.publish(() -> StreamSupport.stream(conceptSource.spliterator(), false)
+                .map(ConceptDescription::getConceptIRI).iterator(), mappedIRIs);
+        this.mappedIRIs = mappedIRIs.withFallback(mappingExchange.awaitOtherShards()::get);
+    }
+
+    private MappingJournal openJournal(LoaderOptions options) {
+        String journalPath = options.getJournalPath();
+        if (isNull(journalPath)) {
+            return null;
+        }
+        if (options.isResume() && !new File(journalPath).exists()) {
+            throw new RuntimeException(String.format(JOURNAL_NOT_FOUND_TEMPLATE, journalPath));
+        }
+        return new MappingJournal(journalPath, options.isOffHeapMapping());
+    }
+
+    /**
+     * The client for the registry, which starts creating its connections while the input is parsed if the load is
+     * certain to send requests and there is a spare core to do it on. A prepare run sends none, and a snapshot load
+     * only sends the changed entities, so their client is left to be created by the first request, if any.
+     */
+    private ApiIntegrator openApiIntegrator(LoaderOptions options) {
+        ApiIntegrator apiIntegrator = new ApiIntegrator(baseUrl, apiKey, options, metrics);
+        if (isNull(options.getSpoolPath()) && isNull(options.getSnapshotPath())
+                && Runtime.getRuntime().availableProcessors() > 1) {
+            apiIntegrator.createClientInBackground();
+        }
+        return apiIntegrator;
+    }
+
+    private ConceptSource readConcepts(List<InputFile> inputFiles, LoaderOptions options) {
+        if (options.isStreaming()) {
+            return new StreamingConceptSource(inputFiles, StreamingConceptSource.DEFAULT_RUN_SIZE);
+        }
+        this.inputModel = ModelFactory.createDefaultModel();
+        if (inputFiles.size() == 1) {
+            readInputFile(inputModel, inputFiles.get(0), options, options.getParseThreads());
+        } else {
+            readInputFiles(inputFiles, options);
+        }
+        ConceptIndex conceptIndex = new ConceptIndex(inputModel);
+        this.inputModel = null;
+        return conceptIndex;
+    }
+
+    /**
+     * Parses the files on a work-stealing pool with a thread per core, starting with the largest files so that a
+     * large file parsed last does not leave the other threads idle. Each file is parsed into a graph of its own, and
+     * the graphs are added to the input model on the calling thread as they complete.
+     */
+    private void readInputFiles(List<InputFile> inputFiles, LoaderOptions options) {
+        List<InputFile> largestFirst = new ArrayList<>(inputFiles);
+        largestFirst.sort(Comparator.comparingLong(InputFile::length).reversed());
+        int threads = Math.min(largestFirst.size(), Runtime.getRuntime().availableProcessors());
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            CompletionService<Model> parsedFiles = new ExecutorCompletionService<>(pool);
+            for (InputFile inputFile : largestFirst) {
+                parsedFiles.submit(() -> {
+                    Model model = ModelFactory.createDefaultModel();
+                    readInputFile(model, inputFile, options, 1);
+                    return model;
+                });
+            }
+            for (int i = 0; i < largestFirst.size(); i++) {
+                Model model = parsedFiles.take().get();
+                inputModel.setNsPrefixes(model.getNsPrefixMap());
+                inputModel.add(model);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        System.out.println(String.format(INPUT_FILES_OUTPUT_TEMPLATE, inputFiles.size(), threads));
+    }
+
+    private void readInputFile(Model model, InputFile inputFile, LoaderOptions options, int parseThreads) {
+        String filepath = inputFile.getPath();
+        Lang lang = inputFile.getLang();
+        InputCache inputCache = options.isInputCache()
+                ? new InputCache(options.getCacheDirectory(), filepath, lang) : null;
+        if (nonNull(inputCache) && inputCache.read(model)) {
+            System.out.println(String.format(CACHE_READ_OUTPUT_TEMPLATE, inputCache.getCachePath()));
+            return;
+        }
+        if (parseThreads > 1) {
+            ParallelRdfReader.read(model, filepath, lang, parseThreads);
+        } else {
+            loadData(model, filepath, lang);
+        }
+        if (nonNull(inputCache) && inputCache.write(model)) {
+            System.out.println(String.format(CACHE_WRITTEN_OUTPUT_TEMPLATE, inputCache.getCachePath()));
+        }
+    }
+
+    private void writeAllDataFromModel() {
+        writeAllDataFromModel(conceptIRI -> nonNull(journal) && journal.isUpdated(conceptIRI));
+    }
+
+    /**
+     * @param isUpdated Whether the entity of a concept is already up to date, so that it is not updated again
+     */
+    private void writeAllDataFromModel(Predicate<String> isUpdated) {
+        if (nonNull(mappingExchange) && !mappingExchange.isPublished()) {
+            exchangeMappings();
+        }
+        metrics.startPhase();
+        AtomicInteger counter = new AtomicInteger();
+        AtomicInteger skipped = new AtomicInteger();
+
+        Iterable<List<ConceptDescription>> batches = Batches.of(pendingConcepts(isUpdated, skipped), batchSize);
+        BiConsumer<Integer, List<String>> onUpdated = (batchCounter, conceptIRIs) -> {
+            for (String conceptIRI : conceptIRIs) {
+                if (nonNull(journal)) {
+                    journal.recordUpdated(conceptIRI);
+                }
+                metrics.entityUpdated();
+                System.out.println(String.format(UPDATED_ENTITY_OUTPUT_TEMPLATE, counter.incrementAndGet(),
+                        mappedIRIs.get(conceptIRI)));
+                printProgress(UPDATED_PROGRESS_LABEL, counter.get(), skipped.get());
+            }
+        };
+        if (async && isNull(snapshot)) {
+            uploader.executeAsync(batches, this::updateEntitiesAsync, onUpdated);
+        } else {
+            uploader.execute(batches, this::updateEntities, onUpdated);
+        }
+        if (skipped.get() > 0) {
+            System.out.println(String.format(SKIPPED_UPDATED_OUTPUT_TEMPLATE, skipped.get()));
+        }
+        if (unchanged.get() > 0) {
+            System.out.println(String.format(UNCHANGED_OUTPUT_TEMPLATE, unchanged.get()));
         }
     }
 }
@@ -0,0 +1,210 @@
+package no.greenall.entitydataloader.entity;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.rdf.model.Literal;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.vocabulary.RDF;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Writes the description of an entity as compact JSON-LD without going through the expansion and compaction of a
+ * general JSON-LD processor.
+ *
+ * <p>Each subject becomes a node object whose keys are the predicates of its statements, compacted with the prefixes
+ * of the model. The {@code @context} for a set of prefixes is built once and reused for every entity with the same
+ * prefixes, as are the compacted forms of predicates and types. Object IRIs are always written in full, so that
+ * rewritten references to the registry are sent as they are.
+ */
+public final class EntityPayloadWriter {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final Map<Map<String, String>, PayloadContext> CONTEXTS = new ConcurrentHashMap<>();
+    private static final int MAX_CACHED_CONTEXTS = 64;
+    private static final int MAX_CACHED_TERMS = 10_000;
+    private static final String CONTEXT = "@context";
+    private static final String GRAPH = "@graph";
+    private static final String ID = "@id";
+    private static final String TYPE = "@type";
+    private static final String VALUE = "@value";
+    private static final String LANGUAGE = "@language";
+    private static final String BLANK_NODE_PREFIX = "_:";
+    private static final String PREFIX_SEPARATOR = ":";
+    private static final String WRITE_ERROR = "Could not write the entity payload";
+
+    private EntityPayloadWriter() {
+    }
+
+    public static String write(Model description) {
+        StringWriter stringWriter = new StringWriter();
+        write(description, stringWriter);
+        return stringWriter.toString();
+    }
+
+    /**
+     * Writes the description to the writer, which is flushed but not closed.
+     */
+    public static void write(Model description, Writer writer) {
+        PayloadContext context = contextFor(description.getNsPrefixMap());
+        Map<Resource, Map<String, List<RDFNode>>> subjects = groupBySubject(description, context);
+
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(writer)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartObject();
+            generator.writeFieldName(CONTEXT);
+            generator.writeRawValue(context.json);
+            if (subjects.size() == 1) {
+                Map.Entry<Resource, Map<String, List<RDFNode>>> subject = subjects.entrySet().iterator().next();
+                writeNodeFields(generator, subject.getKey(), subject.getValue(), context);
+            } else {
+                generator.writeArrayFieldStart(GRAPH);
+                for (Map.Entry<Resource, Map<String, List<RDFNode>>> subject : subjects.entrySet()) {
+                    generator.writeStartObject();
+                    writeNodeFields(generator, subject.getKey(), subject.getValue(), context);
+                    generator.writeEndObject();
+                }
+                generator.writeEndArray();
+            }
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(WRITE_ERROR, e);
+        }
+    }
+
+    private static Map<Resource, Map<String, List<RDFNode>>> groupBySubject(Model description,
+                                                                           PayloadContext context) {
+        Map<Resource, Map<String, List<RDFNode>>> subjects = new LinkedHashMap<>();
+        StmtIterator statements = description.listStatements();
+        while (statements.hasNext()) {
+            Statement statement = statements.nextStatement();
+            String key = RDF.type.equals(statement.getPredicate()) && statement.getObject().isURIResource()
+                    ? TYPE
+                    : context.compact(statement.getPredicate().getURI());
+            subjects.computeIfAbsent(statement.getSubject(), subject -> new TreeMap<>())
+                    .computeIfAbsent(key, predicate -> new ArrayList<>())
+                    .add(statement.getObject());
+        }
+        return subjects;
+    }
+
+    private static void writeNodeFields(JsonGenerator generator, Resource subject,
+                                        Map<String, List<RDFNode>> properties, PayloadContext context)
+            throws IOException {
+        generator.writeStringField(ID, nodeId(subject));
+        for (Map.Entry<String, List<RDFNode>> property : properties.entrySet()) {
+            List<RDFNode> values = property.getValue();
+            generator.writeFieldName(property.getKey());
+            boolean isType = TYPE.equals(property.getKey());
+            if (values.size() > 1) {
+                generator.writeStartArray();
+            }
+            for (RDFNode value : values) {
+                if (isType) {
+                    generator.writeString(context.compact(value.asResource().getURI()));
+                } else {
+                    writeValue(generator, value, context);
+                }
+            }
+            if (values.size() > 1) {
+                generator.writeEndArray();
+            }
+        }
+    }
+
+    private static void writeValue(JsonGenerator generator, RDFNode value, PayloadContext context)
+            throws IOException {
+        generator.writeStartObject();
+        if (value.isLiteral()) {
+            Literal literal = value.asLiteral();
+            generator.writeStringField(VALUE, literal.getLexicalForm());
+            String language = literal.getLanguage();
+            if (!language.isEmpty()) {
+                generator.writeStringField(LANGUAGE, language);
+            } else if (!XSDDatatype.XSDstring.getURI().equals(literal.getDatatypeURI())) {
+                generator.writeStringField(TYPE, context.compact(literal.getDatatypeURI()));
+            }
+        } else {
+            generator.writeStringField(ID, nodeId(value.asResource()));
+        }
+        generator.writeEndObject();
+    }
+
+    private static String nodeId(Resource resource) {
+        return resource.isAnon() ? BLANK_NODE_PREFIX + resource.getId().getLabelString() : resource.getURI();
+    }
+
+    private static PayloadContext contextFor(Map<String, String> prefixes) {
+        PayloadContext context = CONTEXTS.get(prefixes);
+        if (isNull(context)) {
+            context = new PayloadContext(prefixes);
+            if (CONTEXTS.size() < MAX_CACHED_CONTEXTS) {
+                CONTEXTS.put(prefixes, context);
+            }
+        }
+        return context;
+    }
+
+    /**
+     * The {@code @context} for one set of prefixes, with the terms compacted under it so far.
+     */
+    private static final class PayloadContext {
+        private final List<Map.Entry<String, String>> prefixes = new ArrayList<>();
+        private final Map<String, String> compactedTerms = new ConcurrentHashMap<>();
+        private final String json;
+
+        private PayloadContext(Map<String, String> prefixMap) {
+            StringWriter contextWriter = new StringWriter();
+            try (JsonGenerator generator = JSON_FACTORY.createGenerator(contextWriter)) {
+                generator.writeStartObject();
+                for (Map.Entry<String, String> prefix : new TreeMap<>(prefixMap).entrySet()) {
+                    if (!prefix.getKey().isEmpty() && !prefix.getKey().startsWith("@")) {
+                        generator.writeStringField(prefix.getKey(), prefix.getValue());
+                        prefixes.add(prefix);
+                    }
+                }
+                generator.writeEndObject();
+            } catch (IOException e) {
+                throw new UncheckedIOException(WRITE_ERROR, e);
+            }
+            this.json = contextWriter.toString();
+            prefixes.sort(Comparator.comparing((Map.Entry<String, String> prefix) -> prefix.getValue().length())
+                    .reversed());
+        }
+
+        private String compact(String iri) {
+            String compacted = compactedTerms.get(iri);
+            if (isNull(compacted)) {
+                compacted = iri;
+                for (Map.Entry<String, String> prefix : prefixes) {
+                    String localName = iri.substring(Math.min(prefix.getValue().length(), iri.length()));
+                    if (iri.startsWith(prefix.getValue()) && !localName.isEmpty() && !localName.startsWith("//")) {
+                        compacted = prefix.getKey() + PREFIX_SEPARATOR + localName;
+                        break;
+                    }
+                }
+                if (compactedTerms.size() < MAX_CACHED_TERMS) {
+                    compactedTerms.put(iri, compacted);
+                }
+            }
+            return compacted;
+        }
+    }
+}
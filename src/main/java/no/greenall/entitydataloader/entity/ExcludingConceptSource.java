@@ -0,0 +1,35 @@
+package no.greenall.entitydataloader.entity;
+
+import java.util.Iterator;
+import java.util.Set;
+import java.util.stream.StreamSupport;
+
+/**
+ * The concepts of a source except those with the given IRIs.
+ */
+public class ExcludingConceptSource implements ConceptSource {
+    private final ConceptSource source;
+    private final Set<String> excludedIRIs;
+
+    public ExcludingConceptSource(ConceptSource source, Set<String> excludedIRIs) {
+        this.source = source;
+        this.excludedIRIs = excludedIRIs;
+    }
+
+    @Override
+    public int size() {
+        return source.size() - excludedIRIs.size();
+    }
+
+    @Override
+    public Iterator<ConceptDescription> iterator() {
+        return StreamSupport.stream(source.spliterator(), false)
+                .filter(concept -> !excludedIRIs.contains(concept.getConceptIRI()))
+                .iterator();
+    }
+
+    @Override
+    public void close() {
+        source.close();
+    }
+}
@@ -0,0 +1,187 @@
+package no.greenall.entitydataloader.entity;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.RDFParser;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.UUID;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Cache of parsed input files, holding the graph of an input in RDF Thrift so that later loads of the same file read
+ * the graph through a memory mapping instead of parsing the text again.
+ *
+ * <p>The cache file of an input is named after the path and serialization of the input, and starts with the size,
+ * modification time and SHA-256 hash of the input it was written from. It is used if the input has the same size and
+ * either the same modification time or, for an input that was touched or copied, the same hash; otherwise the input
+ * is parsed again and the cache file replaced. A cache file is written to a temporary file and then moved into place,
+ * so that a failed or concurrent load does not leave a partial cache file behind.
+ */
+public class InputCache {
+    private static final long MAGIC = 0x45444c4341434845L;
+    private static final int VERSION = 1;
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final int HASH_BYTES = 32;
+    private static final int MODIFIED_OFFSET = Long.BYTES + Integer.BYTES + Long.BYTES;
+    private static final int HEADER_BYTES = MODIFIED_OFFSET + Long.BYTES + HASH_BYTES;
+    private static final int BUFFER_BYTES = 1 << 16;
+    private static final long UNKNOWN = -1;
+    private static final String DEFAULT_DIRECTORY = "entitydataloader-cache";
+    private static final String CACHE_FILE_TEMPLATE = "%s-%s.rt";
+    private static final String KEY_TEMPLATE = "%s %s";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final String CACHE_WRITE_ERROR_TEMPLATE = "Could not write the input cache %s (%s), the next load "
+            + "parses the input again";
+    private static final String CACHE_READ_ERROR_TEMPLATE = "Could not read the input cache %s (%s), parsing the input";
+
+    private final Path inputPath;
+    private final Path cachePath;
+    private long inputSize = UNKNOWN;
+    private long inputModified = UNKNOWN;
+
+    /**
+     * @param cacheDirectory The directory of the cache files, or null for a directory in the temporary directory
+     * @param filepath       The input file
+     * @param lang           The serialization the input is parsed as
+     */
+    public InputCache(String cacheDirectory, String filepath, Lang lang) {
+        this.inputPath = Paths.get(filepath).toAbsolutePath().normalize();
+        Path directory = isNull(cacheDirectory)
+                ? Paths.get(System.getProperty("java.io.tmpdir"), DEFAULT_DIRECTORY)
+                : Paths.get(cacheDirectory);
+        String key = String.format(KEY_TEMPLATE, lang.getName(), inputPath);
+        this.cachePath = directory.resolve(String.format(CACHE_FILE_TEMPLATE, inputPath.getFileName(),
+                UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    public Path getCachePath() {
+        return cachePath;
+    }
+
+    /**
+     * Reads the cached graph of the input into the model.
+     *
+     * @return Whether the cache held the graph of the input as it is now; if not, the model is left empty
+     */
+    public boolean read(Model model) {
+        try {
+            inputSize = Files.size(inputPath);
+            inputModified = Files.getLastModifiedTime(inputPath).toMillis();
+        } catch (IOException e) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(cachePath, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                return false;
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (header.getLong() != MAGIC || header.getInt() != VERSION || header.getLong() != inputSize) {
+                return false;
+            }
+            long modified = header.getLong();
+            byte[] hash = new byte[HASH_BYTES];
+            header.get(hash);
+            if (modified != inputModified) {
+                if (!Arrays.equals(hash, hash(inputPath))) {
+                    return false;
+                }
+                refreshModified();
+            }
+            InputStream input = new MappedInputStream(channel, HEADER_BYTES, channel.size());
+            RDFParser.source(input).lang(Lang.RDFTHRIFT).parse(model);
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        } catch (IOException | RuntimeException e) {
+            System.out.println(String.format(CACHE_READ_ERROR_TEMPLATE, cachePath, e.getMessage()));
+            model.removeAll();
+            return false;
+        }
+    }
+
+    /**
+     * Writes the graph of the input to the cache, unless the input changed since it was read with
+     * {@link #read(Model)}. A cache that cannot be written does not fail the load.
+     *
+     * @return Whether the cache file was written
+     */
+    public boolean write(Model model) {
+        try {
+            if (inputSize == UNKNOWN) {
+                return false;
+            }
+            byte[] hash = hash(inputPath);
+            if (Files.size(inputPath) != inputSize
+                    || Files.getLastModifiedTime(inputPath).toMillis() != inputModified) {
+                return false;
+            }
+            Files.createDirectories(cachePath.getParent());
+            Path temporary = Files.createTempFile(cachePath.getParent(), cachePath.getFileName().toString(),
+                    TEMPORARY_SUFFIX);
+            try {
+                try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(temporary), BUFFER_BYTES)) {
+                    DataOutputStream header = new DataOutputStream(output);
+                    header.writeLong(MAGIC);
+                    header.writeInt(VERSION);
+                    header.writeLong(inputSize);
+                    header.writeLong(inputModified);
+                    header.write(hash);
+                    RDFDataMgr.write(output, model, RDFFormat.RDF_THRIFT);
+                }
+                Files.move(temporary, cachePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+            return true;
+        } catch (IOException | RuntimeException e) {
+            System.out.println(String.format(CACHE_WRITE_ERROR_TEMPLATE, cachePath, e.getMessage()));
+            return false;
+        }
+    }
+
+    /**
+     * Records the current modification time of an input whose content is unchanged, so that the next load does not
+     * hash the input again.
+     */
+    private void refreshModified() throws IOException {
+        try (FileChannel channel = FileChannel.open(cachePath, StandardOpenOption.WRITE)) {
+            ByteBuffer modified = ByteBuffer.allocate(Long.BYTES).putLong(0, inputModified);
+            channel.write(modified, MODIFIED_OFFSET);
+        }
+    }
+
+    private static byte[] hash(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MessageDigest digest = MessageDigest.getInstance(HASH_ALGORITHM);
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+            while (channel.read(buffer) > 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
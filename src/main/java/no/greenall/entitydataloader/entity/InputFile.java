@@ -0,0 +1,35 @@
+package no.greenall.entitydataloader.entity;
+
+import org.apache.jena.riot.Lang;
+
+import java.io.File;
+
+/**
+ * A file of the input and the serialization it is parsed as.
+ */
+public class InputFile {
+    private final String path;
+    private final Lang lang;
+
+    public InputFile(String path, Lang lang) {
+        this.path = path;
+        this.lang = lang;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public Lang getLang() {
+        return lang;
+    }
+
+    public long length() {
+        return new File(path).length();
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+}
@@ -0,0 +1,266 @@
+package no.greenall.entitydataloader.entity;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Compact store of IRIs, numbered from 0 in the order they are added.
+ *
+ * <p>An IRI is stored as the id of its namespace, the part up to the last {@code /} or {@code #}, which is kept once
+ * however many IRIs share it, and the UTF-8 bytes of its local name in a single buffer, on the heap or off it. Local
+ * names that are UUIDs in canonical form, like the ids of registry entities, are packed into 16 bytes. Interned IRIs
+ * are also entered in an open-addressing hash table of ids, so that they can be looked up; appended IRIs are not.
+ *
+ * <p>The dictionary is not thread-safe.
+ */
+public class IriDictionary {
+    public static final int NOT_FOUND = -1;
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int INITIAL_BUFFER_BYTES = 1 << 16;
+    private static final int MAX_BUFFER_BYTES = Integer.MAX_VALUE - 8;
+    private static final int PACKED_UUID = -1;
+    private static final int PACKED_UUID_BYTES = 16;
+    private static final int UUID_LENGTH = 36;
+    private static final int EMPTY_SLOT = 0;
+    private static final String DICTIONARY_FULL_ERROR = "The local names of the IRIs exceed the 2 GB a dictionary "
+            + "can hold";
+
+    private final boolean offHeap;
+    private final List<String> namespaces = new ArrayList<>();
+    private final Map<String, Integer> namespaceIds = new HashMap<>();
+    private ByteBuffer localNames;
+    private int[] namespaceOf = new int[INITIAL_CAPACITY];
+    private int[] offsets = new int[INITIAL_CAPACITY];
+    private int[] lengths = new int[INITIAL_CAPACITY];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private int size;
+    private int[] slots = new int[2 * INITIAL_CAPACITY];
+    private int indexed;
+
+    /**
+     * @param offHeap Whether the local names are kept in direct memory rather than on the heap
+     */
+    public IriDictionary(boolean offHeap) {
+        this.offHeap = offHeap;
+        this.localNames = allocate(INITIAL_BUFFER_BYTES);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The id of the interned IRI, or {@link #NOT_FOUND} if it was not interned
+     */
+    public int find(String iri) {
+        int split = splitOf(iri);
+        Integer namespaceId = namespaceIds.get(iri.substring(0, split));
+        if (isNull(namespaceId)) {
+            return NOT_FOUND;
+        }
+        String localName = iri.substring(split);
+        byte[] bytes = encode(localName);
+        int slot = findSlot(namespaceId, bytes, lengthOf(localName, bytes), hashOf(namespaceId, bytes));
+        return slot < 0 ? NOT_FOUND : slots[slot] - 1;
+    }
+
+    /**
+     * Adds the IRI unless it was interned before.
+     *
+     * @return The id of the IRI
+     */
+    public int intern(String iri) {
+        int split = splitOf(iri);
+        int namespaceId = namespaceIdOf(iri.substring(0, split));
+        String localName = iri.substring(split);
+        byte[] bytes = encode(localName);
+        int length = lengthOf(localName, bytes);
+        int hash = hashOf(namespaceId, bytes);
+        int slot = findSlot(namespaceId, bytes, length, hash);
+        if (slot >= 0) {
+            return slots[slot] - 1;
+        }
+        int id = add(namespaceId, bytes, length, hash);
+        slots[-slot - 1] = id + 1;
+        if (++indexed * 2 > slots.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    /**
+     * Adds the IRI without entering it in the hash table, for IRIs that are only looked up by id.
+     *
+     * @return The id of the IRI
+     */
+    public int append(String iri) {
+        int split = splitOf(iri);
+        int namespaceId = namespaceIdOf(iri.substring(0, split));
+        String localName = iri.substring(split);
+        byte[] bytes = encode(localName);
+        return add(namespaceId, bytes, lengthOf(localName, bytes), 0);
+    }
+
+    public String get(int id) {
+        String namespace = namespaces.get(namespaceOf[id]);
+        if (lengths[id] == PACKED_UUID) {
+            return namespace + new UUID(localNames.getLong(offsets[id]),
+                    localNames.getLong(offsets[id] + Long.BYTES));
+        }
+        byte[] bytes = new byte[lengths[id]];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = localNames.get(offsets[id] + i);
+        }
+        return namespace + new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return The bytes held by the dictionary, counting the arrays and the buffer of local names at their capacity
+     */
+    public long getFootprintBytes() {
+        long arrays = (long) Integer.BYTES * (namespaceOf.length + offsets.length + lengths.length + hashes.length
+                + slots.length);
+        long namespaceBytes = namespaces.stream().mapToLong(namespace -> 2L * namespace.length()).sum();
+        return arrays + localNames.capacity() + namespaceBytes;
+    }
+
+    private int add(int namespaceId, byte[] bytes, int length, int hash) {
+        if (size == namespaceOf.length) {
+            int capacity = size * 2;
+            namespaceOf = Arrays.copyOf(namespaceOf, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            hashes = Arrays.copyOf(hashes, capacity);
+        }
+        int offset = localNames.position();
+        ensureRemaining(bytes.length);
+        localNames.put(bytes);
+        namespaceOf[size] = namespaceId;
+        offsets[size] = offset;
+        lengths[size] = length;
+        hashes[size] = hash;
+        return size++;
+    }
+
+    /**
+     * @return The slot holding the IRI, or {@code -(slot + 1)} for the empty slot where it belongs
+     */
+    private int findSlot(int namespaceId, byte[] bytes, int length, int hash) {
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int entry = slots[slot];
+            if (entry == EMPTY_SLOT) {
+                return -slot - 1;
+            }
+            int id = entry - 1;
+            if (hashes[id] == hash && namespaceOf[id] == namespaceId && lengths[id] == length
+                    && localNameEquals(id, bytes)) {
+                return slot;
+            }
+        }
+    }
+
+    private boolean localNameEquals(int id, byte[] bytes) {
+        int offset = offsets[id];
+        for (int i = 0; i < bytes.length; i++) {
+            if (localNames.get(offset + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rehash() {
+        int[] rehashed = new int[slots.length * 2];
+        int mask = rehashed.length - 1;
+        for (int entry : slots) {
+            if (entry != EMPTY_SLOT) {
+                int slot = hashes[entry - 1] & mask;
+                while (rehashed[slot] != EMPTY_SLOT) {
+                    slot = (slot + 1) & mask;
+                }
+                rehashed[slot] = entry;
+            }
+        }
+        slots = rehashed;
+    }
+
+    private void ensureRemaining(int bytes) {
+        if (localNames.remaining() >= bytes) {
+            return;
+        }
+        long required = (long) localNames.position() + bytes;
+        if (required > MAX_BUFFER_BYTES) {
+            throw new RuntimeException(DICTIONARY_FULL_ERROR);
+        }
+        ByteBuffer grown = allocate((int) Math.min(MAX_BUFFER_BYTES, Math.max(required, 2L * localNames.capacity())));
+        localNames.flip();
+        grown.put(localNames);
+        localNames = grown;
+    }
+
+    private ByteBuffer allocate(int capacity) {
+        return offHeap ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    private int namespaceIdOf(String namespace) {
+        return namespaceIds.computeIfAbsent(namespace, added -> {
+            namespaces.add(added);
+            return namespaces.size() - 1;
+        });
+    }
+
+    private static int splitOf(String iri) {
+        return Math.max(iri.lastIndexOf('/'), iri.lastIndexOf('#')) + 1;
+    }
+
+    private static byte[] encode(String localName) {
+        return isCanonicalUuid(localName) ? packUuid(localName) : localName.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return The length of the encoded local name, or {@link #PACKED_UUID} for a packed UUID
+     */
+    private static int lengthOf(String localName, byte[] bytes) {
+        return isCanonicalUuid(localName) ? PACKED_UUID : bytes.length;
+    }
+
+    private static int hashOf(int namespaceId, byte[] bytes) {
+        int hash = 31 * namespaceId + Arrays.hashCode(bytes);
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        return hash;
+    }
+
+    private static boolean isCanonicalUuid(String localName) {
+        if (localName.length() != UUID_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < UUID_LENGTH; i++) {
+            char current = localName.charAt(i);
+            boolean isDash = i == 8 || i == 13 || i == 18 || i == 23;
+            if (isDash ? current != '-' : !(current >= '0' && current <= '9' || current >= 'a' && current <= 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] packUuid(String localName) {
+        UUID uuid = UUID.fromString(localName);
+        return ByteBuffer.allocate(PACKED_UUID_BYTES)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+}
@@ -0,0 +1,43 @@
+package no.greenall.entitydataloader.entity;
+
+import java.util.function.Function;
+
+import static java.util.Objects.nonNull;
+
+/**
+ * Mapping from the IRIs of concepts in the input data to the IRIs of the entities created for them in the registry.
+ */
+public interface IriMapping {
+
+    /**
+     * @return The registry IRI of the concept, or null if no entity has been created for it
+     */
+    String get(String sourceIRI);
+
+    void put(String sourceIRI, String replacementIRI);
+
+    default boolean containsKey(String sourceIRI) {
+        return nonNull(get(sourceIRI));
+    }
+
+    /**
+     * A view that looks IRIs up in this mapping and then in the fallback, and records new IRIs in this mapping.
+     *
+     * @param fallback Looks up the registry IRI of a concept, or returns null if it has none
+     */
+    default IriMapping withFallback(Function<String, String> fallback) {
+        IriMapping primary = this;
+        return new IriMapping() {
+            @Override
+            public String get(String sourceIRI) {
+                String replacementIRI = primary.get(sourceIRI);
+                return nonNull(replacementIRI) ? replacementIRI : fallback.apply(sourceIRI);
+            }
+
+            @Override
+            public void put(String sourceIRI, String replacementIRI) {
+                primary.put(sourceIRI, replacementIRI);
+            }
+        };
+    }
+}
@@ -0,0 +1,63 @@
+package no.greenall.entitydataloader.entity;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a region of a file through memory mappings of at most a gigabyte each, so that regions larger than a single
+ * mapping can be read as one stream.
+ */
+final class MappedInputStream extends InputStream {
+    private static final long MAX_WINDOW_BYTES = 1L << 30;
+
+    private final FileChannel channel;
+    private final long end;
+    private long windowEnd;
+    private ByteBuffer buffer;
+
+    MappedInputStream(FileChannel channel, long start, long end) throws IOException {
+        this.channel = channel;
+        this.end = end;
+        this.windowEnd = start;
+        this.buffer = nextWindow();
+    }
+
+    private ByteBuffer nextWindow() throws IOException {
+        long bytes = Math.min(end - windowEnd, MAX_WINDOW_BYTES);
+        ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, windowEnd, bytes);
+        windowEnd += bytes;
+        return window;
+    }
+
+    private boolean hasRemaining() throws IOException {
+        if (!buffer.hasRemaining() && windowEnd < end) {
+            buffer = nextWindow();
+        }
+        return buffer.hasRemaining();
+    }
+
+    @Override
+    public int read() throws IOException {
+        return hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!hasRemaining()) {
+            return -1;
+        }
+        int count = Math.min(length, buffer.remaining());
+        buffer.get(bytes, offset, count);
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, buffer.remaining() + end - windowEnd);
+    }
+}
@@ -0,0 +1,312 @@
+package no.greenall.entitydataloader.entity;
+
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.GraphUtil;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.riot.RiotException;
+import org.apache.jena.riot.lang.LabelToNode;
+import org.apache.jena.riot.system.MapWithScope;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.apache.jena.riot.system.StreamRDFWrapper;
+import org.apache.jena.sparql.graph.GraphFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+
+/**
+ * Reads N-Triples and Turtle files on several threads. The file is split into byte ranges that start on a statement
+ * boundary, each range is memory-mapped and parsed into a partial graph on a fork-join pool, and the partial graphs
+ * are merged into the model once all ranges are parsed.
+ *
+ * <p>N-Triples ranges are split at line ends. Turtle ranges are split before a line that starts a subject in the
+ * first column and follows a line ending with {@code .}, and every range after the first is parsed with the prefix
+ * and base declarations at the head of the file. A Turtle file that cannot be parsed this way, because it declares
+ * prefixes after its head or a range ends inside a multi-line statement or literal, is read on a single thread
+ * instead. Other serializations are always read on a single thread.
+ */
+public final class ParallelRdfReader {
+    private static final long MIN_RANGE_BYTES = 1L << 20;
+    private static final long MAX_RANGE_BYTES = 64L << 20;
+    private static final int RANGES_PER_THREAD = 4;
+    private static final int WINDOW_BYTES = 1 << 16;
+    private static final int MAX_HEADER_BYTES = 1 << 20;
+    private static final String FILE_NOT_FOUND_TEMPLATE = "The requested file %s was not found";
+    private static final String SINGLE_THREAD_FALLBACK_TEMPLATE = "Could not split %s into ranges (%s), parsing it on a "
+            + "single thread";
+    private static final String LATE_DECLARATION_ERROR = "prefix or base declared after the head of the file";
+    private static final Pattern DECLARATION = Pattern.compile("^@?(prefix|base)\\s.*", Pattern.CASE_INSENSITIVE);
+    private static final String COMMENT = "#";
+
+    private ParallelRdfReader() {
+    }
+
+    /**
+     * Reads the file into the model, parsing ranges of the file on up to the given number of threads.
+     */
+    public static void read(Model model, String filepath, Lang lang, int threads) {
+        File file = new File(filepath);
+        long rangeBytes = Math.min(MAX_RANGE_BYTES,
+                Math.max(MIN_RANGE_BYTES, file.length() / ((long) threads * RANGES_PER_THREAD)));
+        read(model, filepath, lang, threads, rangeBytes);
+    }
+
+    static void read(Model model, String filepath, Lang lang, int threads, long rangeBytes) {
+        boolean isTurtle = Lang.TURTLE.equals(lang);
+        if (threads <= 1 || !(isTurtle || Lang.NTRIPLES.equals(lang))) {
+            readSingleThreaded(model, filepath, lang);
+            return;
+        }
+
+        List<Graph> graphs;
+        try (FileChannel channel = FileChannel.open(Paths.get(filepath), StandardOpenOption.READ)) {
+            Header header = isTurtle ? readHeader(channel) : new Header(new byte[0], 0);
+            List<long[]> ranges = split(channel, rangeBytes, isTurtle);
+            if (ranges.size() <= 1 || ranges.stream().anyMatch(range -> range[1] - range[0] > Integer.MAX_VALUE)) {
+                readSingleThreaded(model, filepath, lang);
+                return;
+            }
+            graphs = parseRanges(channel, ranges, header, lang, threads);
+        } catch (IOException e) {
+            throw new RuntimeException(String.format(FILE_NOT_FOUND_TEMPLATE, filepath));
+        } catch (RiotException e) {
+            if (!isTurtle) {
+                throw e;
+            }
+            System.out.println(String.format(SINGLE_THREAD_FALLBACK_TEMPLATE, filepath, e.getMessage()));
+            readSingleThreaded(model, filepath, lang);
+            return;
+        }
+
+        model.setNsPrefixes(graphs.get(0).getPrefixMapping().getNsPrefixMap());
+        for (Graph graph : graphs) {
+            GraphUtil.addInto(model.getGraph(), graph);
+        }
+    }
+
+    private static void readSingleThreaded(Model model, String filepath, Lang lang) {
+        try (InputStream inputStream = new FileInputStream(new File(filepath))) {
+            RDFDataMgr.read(model, inputStream, lang);
+        } catch (IOException e) {
+            throw new RuntimeException(String.format(FILE_NOT_FOUND_TEMPLATE, filepath));
+        }
+    }
+
+    private static List<Graph> parseRanges(FileChannel channel, List<long[]> ranges, Header header, Lang lang,
+                                           int threads) throws IOException {
+        String blankNodeSeed = UUID.randomUUID().toString();
+        List<Callable<Graph>> tasks = new ArrayList<>();
+        for (long[] range : ranges) {
+            tasks.add(() -> parseRange(channel, range[0], range[1], header, lang, blankNodeSeed));
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<Graph> graphs = new ArrayList<>();
+            for (Future<Graph> result : pool.invokeAll(tasks)) {
+                graphs.add(result.get());
+            }
+            return graphs;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static Graph parseRange(FileChannel channel, long start, long end, Header header, Lang lang,
+                                    String blankNodeSeed) throws IOException {
+        Graph graph = GraphFactory.createDefaultGraph();
+        InputStream input = new MappedInputStream(channel, start, end);
+        if (start > 0 && header.bytes.length > 0) {
+            input = new SequenceInputStream(new ByteArrayInputStream(header.bytes), input);
+        }
+        DeclarationCountingSink sink = new DeclarationCountingSink(graph);
+        RDFParser.source(input).lang(lang).labelToNode(sharedLabels(blankNodeSeed)).parse(sink);
+        if (sink.declarations != header.declarations) {
+            throw new RiotException(LATE_DECLARATION_ERROR);
+        }
+        return graph;
+    }
+
+    /**
+     * Maps a blank node label to the same blank node in every range of the file, while anonymous blank nodes are
+     * always new.
+     */
+    private static LabelToNode sharedLabels(String blankNodeSeed) {
+        Map<String, Node> labels = new HashMap<>();
+        MapWithScope.ScopePolicy<String, Node, Node> documentScope = new MapWithScope.ScopePolicy<
+                String, Node, Node>() {
+            @Override
+            public Map<String, Node> getScope(Node scope) {
+                return labels;
+            }
+
+            @Override
+            public void clear() {
+                labels.clear();
+            }
+        };
+        MapWithScope.Allocator<String, Node, Node> allocator = new MapWithScope.Allocator<String, Node, Node>() {
+            @Override
+            public Node alloc(Node scope, String label) {
+                return NodeFactory.createBlankNode(blankNodeSeed + label);
+            }
+
+            @Override
+            public Node create() {
+                return NodeFactory.createBlankNode();
+            }
+
+            @Override
+            public void reset() {
+                // NO-OP
+            }
+        };
+        return new LabelToNode(documentScope, allocator);
+    }
+
+    private static List<long[]> split(FileChannel channel, long rangeBytes, boolean isTurtle) throws IOException {
+        long size = channel.size();
+        List<long[]> ranges = new ArrayList<>();
+        long start = 0;
+        while (start < size) {
+            long end = start + rangeBytes >= size ? size : nextBoundary(channel, start + rangeBytes, isTurtle);
+            ranges.add(new long[]{start, end});
+            start = end;
+        }
+        return ranges;
+    }
+
+    /**
+     * Finds the first statement boundary at or after the offset, or the end of the file if there is none.
+     */
+    private static long nextBoundary(FileChannel channel, long offset, boolean isTurtle) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(WINDOW_BYTES);
+        long position = offset;
+        boolean atLineStart = false;
+        boolean previousLineEndsStatement = false;
+        byte firstByte = '#';
+        byte lastByte = 0;
+        while (channel.read(window, position) > 0) {
+            window.flip();
+            while (window.hasRemaining()) {
+                byte current = window.get();
+                if (atLineStart) {
+                    if (!isTurtle || previousLineEndsStatement && startsSubject(current)) {
+                        return position;
+                    }
+                    atLineStart = false;
+                    firstByte = current;
+                    lastByte = 0;
+                }
+                if (current == '\n') {
+                    previousLineEndsStatement = lastByte == '.' && firstByte != '#';
+                    atLineStart = true;
+                } else if (!Character.isWhitespace(current)) {
+                    lastByte = current;
+                }
+                position++;
+            }
+            window.clear();
+        }
+        return channel.size();
+    }
+
+    private static boolean startsSubject(byte current) {
+        return current == '<' || current == '_' || current == '[' || current == '(' || current == ':'
+                || Character.isLetter(current) || (current & 0x80) != 0;
+    }
+
+    /**
+     * Reads the blank lines, comments and prefix and base declarations at the head of a Turtle file.
+     */
+    private static Header readHeader(FileChannel channel) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate((int) Math.min(MAX_HEADER_BYTES, channel.size()));
+        channel.read(head, 0);
+        head.flip();
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int declarations = 0;
+        while (head.hasRemaining()) {
+            byte current = head.get();
+            line.write(current);
+            if (current == '\n' || !head.hasRemaining()) {
+                String text = new String(line.toByteArray(), StandardCharsets.UTF_8).trim();
+                boolean isDeclaration = DECLARATION.matcher(text).matches();
+                if (!isDeclaration && !text.isEmpty() && !text.startsWith(COMMENT)) {
+                    break;
+                }
+                if (isDeclaration) {
+                    declarations++;
+                }
+                line.writeTo(header);
+                line.reset();
+            }
+        }
+        return new Header(header.toByteArray(), declarations);
+    }
+
+    private static final class Header {
+        private final byte[] bytes;
+        private final int declarations;
+
+        private Header(byte[] bytes, int declarations) {
+            this.bytes = bytes;
+            this.declarations = declarations;
+        }
+    }
+
+    private static final class DeclarationCountingSink extends StreamRDFWrapper {
+        private int declarations;
+
+        private DeclarationCountingSink(Graph graph) {
+            super(StreamRDFLib.graph(graph));
+        }
+
+        @Override
+        public void prefix(String prefix, String iri) {
+            declarations++;
+            super.prefix(prefix, iri);
+        }
+
+        @Override
+        public void base(String base) {
+            declarations++;
+            super.base(base);
+        }
+    }
+}
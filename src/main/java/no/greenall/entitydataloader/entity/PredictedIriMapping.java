@@ -0,0 +1,48 @@
+package no.greenall.entitydataloader.entity;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+
+import static java.util.Objects.nonNull;
+
+/**
+ * Mapping that derives the registry IRI of a concept before the concept is uploaded, from a client-supplied id that
+ * is a name-based UUID of the concept IRI. IRIs already recorded in the underlying mapping take precedence.
+ */
+public class PredictedIriMapping implements IriMapping {
+
+    private final IriMapping recordedIRIs;
+    private final Set<String> conceptIRIs;
+    private final Function<String, String> entityUrl;
+
+    /**
+     * @param recordedIRIs The IRIs the registry has already returned
+     * @param conceptIRIs  The IRIs of every concept in the input
+     * @param entityUrl    Maps a client-supplied id to the URL of the entity in the registry
+     */
+    public PredictedIriMapping(IriMapping recordedIRIs, Set<String> conceptIRIs, Function<String, String> entityUrl) {
+        this.recordedIRIs = recordedIRIs;
+        this.conceptIRIs = conceptIRIs;
+        this.entityUrl = entityUrl;
+    }
+
+    public static String idFor(String conceptIRI) {
+        return UUID.nameUUIDFromBytes(conceptIRI.getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    @Override
+    public String get(String sourceIRI) {
+        String recorded = recordedIRIs.get(sourceIRI);
+        if (nonNull(recorded)) {
+            return recorded;
+        }
+        return conceptIRIs.contains(sourceIRI) ? entityUrl.apply(idFor(sourceIRI)) : null;
+    }
+
+    @Override
+    public void put(String sourceIRI, String replacementIRI) {
+        recordedIRIs.put(sourceIRI, replacementIRI);
+    }
+}
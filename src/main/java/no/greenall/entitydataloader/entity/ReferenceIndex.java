@@ -0,0 +1,145 @@
+package no.greenall.entitydataloader.entity;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.vocabulary.RDF;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Index of the concepts of a load and of the IRIs they refer to, built in one pass over the concept descriptions
+ * before any entity is sent.
+ *
+ * <p>A referenced IRI that is not a concept of the input is dangling if it is in the namespace of a concept of the
+ * input, that is, if it only differs from a concept IRI after the last {@code /} or {@code #}, and external
+ * otherwise. The objects of {@code rdf:type} statements are not references. For each referenced IRI the index keeps
+ * the number of references and the subject and predicate of the first few, so that the index stays small however
+ * often an IRI is referenced.
+ */
+public class ReferenceIndex {
+    private static final int MAX_CONTEXTS = 10;
+    private static final String DANGLING_REFERENCE_TEMPLATE = "Dangling reference to %s from %s";
+    private static final String MORE_REFERENCES_TEMPLATE = "... and %d more references to %s";
+    private static final String EXTERNAL_IRI_TEMPLATE = "External IRI %s referenced %d times";
+    private static final String SUMMARY_TEMPLATE = "%d concepts, %d dangling references to %d IRIs not in the input, "
+            + "%d external IRIs";
+    private static final String CONTEXT_TEMPLATE = "%s %s";
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final Set<String> conceptIRIs = new HashSet<>();
+    private final Set<String> conceptNamespaces = new HashSet<>();
+    private final Map<String, References> referencedIRIs = new TreeMap<>();
+
+    public ReferenceIndex(Iterable<ConceptDescription> concepts) {
+        for (ConceptDescription concept : concepts) {
+            conceptIRIs.add(concept.getConceptIRI());
+            conceptNamespaces.add(namespaceOf(concept.getConceptIRI()));
+            StmtIterator statements = concept.getModel().listStatements();
+            while (statements.hasNext()) {
+                Statement statement = statements.nextStatement();
+                RDFNode object = statement.getObject();
+                if (object.isURIResource() && !RDF.type.equals(statement.getPredicate())) {
+                    referencedIRIs.computeIfAbsent(object.asResource().getURI(), iri -> new References())
+                            .add(concept.getConceptIRI(), statement.getPredicate().getURI());
+                }
+            }
+        }
+        referencedIRIs.keySet().removeAll(conceptIRIs);
+    }
+
+    private static String namespaceOf(String iri) {
+        return iri.substring(0, Math.max(iri.lastIndexOf('/'), iri.lastIndexOf('#')) + 1);
+    }
+
+    public boolean isDangling(String iri) {
+        return referencedIRIs.containsKey(iri) && conceptNamespaces.contains(namespaceOf(iri));
+    }
+
+    /**
+     * @return The referenced IRIs that are in the namespace of the input concepts without being concepts of the input
+     */
+    public Set<String> getDanglingIRIs() {
+        Set<String> danglingIRIs = new HashSet<>();
+        for (String iri : referencedIRIs.keySet()) {
+            if (isDangling(iri)) {
+                danglingIRIs.add(iri);
+            }
+        }
+        return Collections.unmodifiableSet(danglingIRIs);
+    }
+
+    /**
+     * @return The referenced IRIs outside the namespace of the input concepts
+     */
+    public Set<String> getExternalIRIs() {
+        Set<String> externalIRIs = new HashSet<>(referencedIRIs.keySet());
+        externalIRIs.removeAll(getDanglingIRIs());
+        return Collections.unmodifiableSet(externalIRIs);
+    }
+
+    public int getDanglingReferenceCount() {
+        return getDanglingIRIs().stream().mapToInt(iri -> referencedIRIs.get(iri).count).sum();
+    }
+
+    /**
+     * A copy of the description without the statements that refer to dangling IRIs.
+     */
+    public Model withoutDanglingReferences(Model description) {
+        Model outputModel = ModelFactory.createDefaultModel();
+        outputModel.setNsPrefixes(description.getNsPrefixMap());
+        StmtIterator statements = description.listStatements();
+        while (statements.hasNext()) {
+            Statement statement = statements.nextStatement();
+            if (!statement.getObject().isURIResource() || !isDangling(statement.getObject().asResource().getURI())) {
+                outputModel.add(statement);
+            }
+        }
+        return outputModel;
+    }
+
+    /**
+     * Lists every dangling reference with the concept and predicate it comes from, and every external IRI with the
+     * number of references to it.
+     */
+    public String report() {
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, References> referencedIRI : referencedIRIs.entrySet()) {
+            References references = referencedIRI.getValue();
+            if (isDangling(referencedIRI.getKey())) {
+                for (String context : references.contexts) {
+                    lines.add(String.format(DANGLING_REFERENCE_TEMPLATE, referencedIRI.getKey(), context));
+                }
+                if (references.count > references.contexts.size()) {
+                    lines.add(String.format(MORE_REFERENCES_TEMPLATE, references.count - references.contexts.size(),
+                            referencedIRI.getKey()));
+                }
+            } else {
+                lines.add(String.format(EXTERNAL_IRI_TEMPLATE, referencedIRI.getKey(), references.count));
+            }
+        }
+        lines.add(String.format(SUMMARY_TEMPLATE, conceptIRIs.size(), getDanglingReferenceCount(),
+                getDanglingIRIs().size(), getExternalIRIs().size()));
+        return String.join(LINE_SEPARATOR, lines);
+    }
+
+    private static class References {
+        private final List<String> contexts = new ArrayList<>();
+        private int count;
+
+        private void add(String subjectIRI, String predicateIRI) {
+            count++;
+            if (contexts.size() < MAX_CONTEXTS) {
+                contexts.add(String.format(CONTEXT_TEMPLATE, subjectIRI, predicateIRI));
+            }
+        }
+    }
+}
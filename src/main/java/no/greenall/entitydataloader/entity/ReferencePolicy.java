@@ -0,0 +1,33 @@
+package no.greenall.entitydataloader.entity;
+
+import java.util.Arrays;
+
+/**
+ * What a load does with references from a concept to an IRI in the namespace of the input concepts that is not a
+ * concept of the input.
+ */
+public enum ReferencePolicy {
+    /**
+     * Stop the load before any entity is created.
+     */
+    FAIL("fail"),
+    /**
+     * Leave the statements holding the references out of the entities.
+     */
+    DROP("drop"),
+    /**
+     * Send the references with the IRI of the input, as if they were external IRIs.
+     */
+    KEEP("keep");
+
+    private final String label;
+
+    ReferencePolicy(String label) {
+        this.label = label;
+    }
+
+    public static ReferencePolicy getByName(String providedLabel) {
+        return Arrays.stream(values()).filter(policy -> policy.label.equals(providedLabel))
+                .findFirst().orElse(null);
+    }
+}
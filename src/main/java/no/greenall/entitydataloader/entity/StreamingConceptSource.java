@@ -0,0 +1,385 @@
+package no.greenall.entitydataloader.entity;
+
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.ResIterator;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.riot.out.NodeFmtLib;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.jena.shared.PrefixMapping;
+import org.apache.jena.vocabulary.RDF;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Concept source that keeps the heap roughly constant regardless of the size of the input.
+ *
+ * <p>The input is parsed once through a {@link org.apache.jena.riot.system.StreamRDF} sink that writes the triples as
+ * N-Triples to sorted runs on disk, at most {@code runSize} triples at a time. Each iteration merges the runs and
+ * emits the triples of one subject at a time, so the input does not have to be ordered by subject.
+ *
+ * <p>At most {@code maxFanIn} runs are read at once. If the input spills more runs than that, they are merged in
+ * passes of {@code maxFanIn} runs at a time into fewer, longer runs before the first iteration, so that a huge input
+ * does not run out of file handles. The readers of an iteration are closed when it ends, fails or the source is
+ * closed, and closing the source deletes the runs.
+ */
+public class StreamingConceptSource implements ConceptSource {
+    public static final int DEFAULT_RUN_SIZE = 100_000;
+    public static final int DEFAULT_MAX_FAN_IN = 64;
+
+    private static final String FILE_NOT_FOUND_TEMPLATE = "The requested file %s was not found";
+    private static final String SPILL_DIRECTORY_PREFIX = "entitydataloader-spill";
+    private static final String RUN_FILE_PREFIX = "run-";
+    private static final String RUN_FILE_SUFFIX = ".nt";
+    private static final String SPILL_ERROR = "Could not spill triples to disk";
+    private static final String READ_SPILL_ERROR = "Could not read spilled triples";
+    private static final String TRIPLE_TERMINATOR = " .";
+    private static final char SUBJECT_SEPARATOR = ' ';
+    private static final char LINE_SEPARATOR = '\n';
+
+    private final Path spillDirectory;
+    private final List<Path> runs = new ArrayList<>();
+    private final Set<RunMerge> openMerges = ConcurrentHashMap.newKeySet();
+    private final PrefixMapping prefixMapping = PrefixMapping.Factory.create();
+    private final int runSize;
+    private final int maxFanIn;
+    private int conceptCount;
+
+    public StreamingConceptSource(String filepath, Lang lang) {
+        this(filepath, lang, DEFAULT_RUN_SIZE);
+    }
+
+    public StreamingConceptSource(String filepath, Lang lang, int runSize) {
+        this(Collections.singletonList(new InputFile(filepath, lang)), runSize);
+    }
+
+    /**
+     * Groups the triples of all the files by subject, so that a concept may be described across several files.
+     */
+    public StreamingConceptSource(List<InputFile> inputFiles, int runSize) {
+        this(inputFiles, runSize, DEFAULT_MAX_FAN_IN);
+    }
+
+    public StreamingConceptSource(List<InputFile> inputFiles, int runSize, int maxFanIn) {
+        this.runSize = runSize;
+        this.maxFanIn = Math.max(2, maxFanIn);
+        try {
+            this.spillDirectory = Files.createTempDirectory(SPILL_DIRECTORY_PREFIX);
+        } catch (IOException e) {
+            throw new UncheckedIOException(SPILL_ERROR, e);
+        }
+
+        try {
+            SpillingSink sink = new SpillingSink();
+            for (InputFile inputFile : inputFiles) {
+                try (InputStream inputStream = new FileInputStream(new File(inputFile.getPath()))) {
+                    RDFParser.source(inputStream).lang(inputFile.getLang()).parse(sink);
+                } catch (IOException e) {
+                    throw new RuntimeException(String.format(FILE_NOT_FOUND_TEMPLATE, inputFile.getPath()));
+                }
+            }
+            mergeRuns();
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Merges the runs in passes of at most {@code maxFanIn} runs until no more than that are left.
+     */
+    private void mergeRuns() {
+        while (runs.size() > maxFanIn) {
+            List<Path> mergedRuns = new ArrayList<>();
+            for (int start = 0; start < runs.size(); start += maxFanIn) {
+                List<Path> group = runs.subList(start, Math.min(start + maxFanIn, runs.size()));
+                mergedRuns.add(group.size() == 1 ? group.get(0) : mergeGroup(group));
+            }
+            runs.clear();
+            runs.addAll(mergedRuns);
+        }
+    }
+
+    private Path mergeGroup(List<Path> group) {
+        try {
+            Path mergedRun = Files.createTempFile(spillDirectory, RUN_FILE_PREFIX, RUN_FILE_SUFFIX);
+            try (RunMerge merge = new RunMerge(group);
+                 BufferedWriter writer = Files.newBufferedWriter(mergedRun, StandardCharsets.UTF_8)) {
+                while (!merge.isEmpty()) {
+                    writer.write(merge.poll());
+                    writer.write(LINE_SEPARATOR);
+                }
+            }
+            for (Path run : group) {
+                Files.delete(run);
+            }
+            return mergedRun;
+        } catch (IOException e) {
+            throw new UncheckedIOException(SPILL_ERROR, e);
+        }
+    }
+
+    private static int compareSubjects(String firstLine, String secondLine) {
+        int firstEnd = firstLine.indexOf(SUBJECT_SEPARATOR);
+        int secondEnd = secondLine.indexOf(SUBJECT_SEPARATOR);
+        int length = Math.min(firstEnd, secondEnd);
+        for (int i = 0; i < length; i++) {
+            int difference = firstLine.charAt(i) - secondLine.charAt(i);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return firstEnd - secondEnd;
+    }
+
+    /**
+     * The number of concept type statements in the input, which may count a concept twice if the input repeats them.
+     */
+    @Override
+    public int size() {
+        return conceptCount;
+    }
+
+    @Override
+    public Iterator<ConceptDescription> iterator() {
+        return new MergingIterator();
+    }
+
+    /**
+     * The directory holding the runs, which is deleted when the source is closed.
+     */
+    Path getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    @Override
+    public void close() {
+        for (RunMerge merge : openMerges) {
+            merge.close();
+        }
+        try (Stream<Path> files = Files.list(spillDirectory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(spillDirectory);
+        } catch (IOException e) {
+            spillDirectory.toFile().deleteOnExit();
+        }
+    }
+
+    private class SpillingSink extends StreamRDFBase {
+        private final List<String> buffer = new ArrayList<>();
+
+        @Override
+        public void triple(Triple triple) {
+            if (triple.getSubject().isURI() && triple.getPredicate().equals(RDF.type.asNode())
+                    && triple.getObject().equals(ConceptIndex.CONCEPT.asNode())) {
+                conceptCount++;
+            }
+            buffer.add(NodeFmtLib.str(triple) + TRIPLE_TERMINATOR);
+            if (buffer.size() >= runSize) {
+                writeRun();
+            }
+        }
+
+        @Override
+        public void prefix(String prefix, String iri) {
+            prefixMapping.setNsPrefix(prefix, iri);
+        }
+
+        @Override
+        public void finish() {
+            if (!buffer.isEmpty()) {
+                writeRun();
+            }
+        }
+
+        private void writeRun() {
+            buffer.sort(StreamingConceptSource::compareSubjects);
+            try {
+                Path run = Files.createTempFile(spillDirectory, RUN_FILE_PREFIX, RUN_FILE_SUFFIX);
+                try (BufferedWriter writer = Files.newBufferedWriter(run, StandardCharsets.UTF_8)) {
+                    for (String line : buffer) {
+                        writer.write(line);
+                        writer.write(LINE_SEPARATOR);
+                    }
+                }
+                runs.add(run);
+            } catch (IOException e) {
+                throw new UncheckedIOException(SPILL_ERROR, e);
+            }
+            buffer.clear();
+        }
+    }
+
+    private static class RunCursor {
+        private final BufferedReader reader;
+        private String line;
+
+        private RunCursor(BufferedReader reader) throws IOException {
+            this.reader = reader;
+            this.line = reader.readLine();
+        }
+
+        private void advance() throws IOException {
+            line = reader.readLine();
+            if (isNull(line)) {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * The lines of a number of runs in subject order, read with one open reader per run that is not exhausted.
+     */
+    private static class RunMerge implements Closeable {
+        private final List<RunCursor> openCursors = new ArrayList<>();
+        private final PriorityQueue<RunCursor> cursors =
+                new PriorityQueue<>(Comparator.comparing((RunCursor cursor) -> cursor.line,
+                        StreamingConceptSource::compareSubjects));
+
+        private RunMerge(List<Path> runs) throws IOException {
+            try {
+                for (Path run : runs) {
+                    RunCursor cursor = new RunCursor(Files.newBufferedReader(run, StandardCharsets.UTF_8));
+                    openCursors.add(cursor);
+                    if (nonNull(cursor.line)) {
+                        cursors.add(cursor);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                close();
+                throw e;
+            }
+        }
+
+        private boolean isEmpty() {
+            return cursors.isEmpty();
+        }
+
+        private String peek() {
+            return cursors.peek().line;
+        }
+
+        private String poll() throws IOException {
+            RunCursor cursor = cursors.poll();
+            String line = cursor.line;
+            cursor.advance();
+            if (nonNull(cursor.line)) {
+                cursors.add(cursor);
+            }
+            return line;
+        }
+
+        @Override
+        public void close() {
+            cursors.clear();
+            for (RunCursor cursor : openCursors) {
+                try {
+                    cursor.reader.close();
+                } catch (IOException e) {
+                    // the run is deleted with the spill directory
+                }
+            }
+        }
+    }
+
+    private class MergingIterator implements Iterator<ConceptDescription> {
+        private final RunMerge merge;
+        private ConceptDescription next;
+
+        private MergingIterator() {
+            try {
+                this.merge = new RunMerge(runs);
+            } catch (IOException e) {
+                throw new UncheckedIOException(READ_SPILL_ERROR, e);
+            }
+            openMerges.add(merge);
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                while (isNull(next) && !merge.isEmpty()) {
+                    next = readConcept(readSubjectGroup());
+                }
+            } catch (RuntimeException e) {
+                close();
+                throw e;
+            }
+            if (isNull(next)) {
+                close();
+            }
+            return nonNull(next);
+        }
+
+        @Override
+        public ConceptDescription next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            ConceptDescription concept = next;
+            next = null;
+            return concept;
+        }
+
+        private void close() {
+            merge.close();
+            openMerges.remove(merge);
+        }
+
+        private String readSubjectGroup() {
+            StringBuilder group = new StringBuilder();
+            String firstLine = merge.peek();
+            try {
+                while (!merge.isEmpty() && compareSubjects(merge.peek(), firstLine) == 0) {
+                    group.append(merge.poll()).append(LINE_SEPARATOR);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(READ_SPILL_ERROR, e);
+            }
+            return group.toString();
+        }
+
+        private ConceptDescription readConcept(String group) {
+            Model description = ModelFactory.createDefaultModel();
+            description.setNsPrefixes(prefixMapping);
+            RDFParser.fromString(group).lang(Lang.NTRIPLES).parse(description);
+
+            ResIterator subjects = description.listSubjectsWithProperty(RDF.type, ConceptIndex.CONCEPT);
+            if (subjects.hasNext()) {
+                Resource subject = subjects.nextResource();
+                if (subject.isURIResource()) {
+                    return new ConceptDescription(subject.getURI(), description);
+                }
+            }
+            return null;
+        }
+    }
+}
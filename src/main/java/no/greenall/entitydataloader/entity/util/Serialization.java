@@ -10,7 +10,8 @@ public enum Serialization {
     TURTLE("turtle", Collections.singletonList("ttl"), Lang.TURTLE),
     NTRIPLES("ntriples", Collections.singletonList("nt"), Lang.NTRIPLES),
     RDFXML("rdfxml", Arrays.asList("xml", "rdf", "rdfxml"), Lang.RDFXML),
-    JSONLD("jsonld", Arrays.asList("json", "jsonld"), Lang.JSONLD);
+    JSONLD("jsonld", Arrays.asList("json", "jsonld"), Lang.JSONLD),
+    RDFTHRIFT("rdfthrift", Arrays.asList("trdf", "rt"), Lang.RDFTHRIFT);
 
     private final Lang lang;
     private String label;
@@ -31,7 +32,7 @@ public enum Serialization {
                 .findFirst().map(Serialization::getLang).orElse(null);
       }
 
-    public Lang getByExtension(String extensionFromFilename) {
+    public static Lang getByExtension(String extensionFromFilename) {
         return Arrays.stream(values()).filter(value -> value.extension.contains(extensionFromFilename.toLowerCase()))
                 .findFirst().map(Serialization::getLang).orElse(null);
     }
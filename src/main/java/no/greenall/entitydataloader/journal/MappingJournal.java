@@ -0,0 +1,402 @@
+package no.greenall.entitydataloader.journal;
+
+import no.greenall.entitydataloader.entity.CompactIriMapping;
+import no.greenall.entitydataloader.entity.IriDictionary;
+import no.greenall.entitydataloader.entity.IriMapping;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Append-only on-disk record of the entities created and updated during a load, so that a load that did not complete
+ * can be resumed without creating duplicate entities.
+ *
+ * <p>Each line is either {@code C<tab>source IRI<tab>location} for a created entity or {@code U<tab>source IRI} for an
+ * updated one. Every appended line is written through to the file at once, so that it is kept if the loader is
+ * killed, and the file is forced to disk every {@value #SYNC_INTERVAL} records and when the journal is closed.
+ *
+ * <p>When an existing journal is opened it is compacted to a single {@code C} or {@code D} (created and updated) line
+ * per entity, and an index of IRI hashes to line offsets, sorted by hash, is written to a file next to it. The
+ * compacted journal and the index are memory-mapped, so resuming does not read the whole journal into the heap. The
+ * entities recorded since the journal was opened are looked up in a {@link CompactIriMapping}, so that keeping a
+ * journal costs no more memory per entity than a load without one.
+ */
+public class MappingJournal implements IriMapping, Closeable {
+    public static final int SYNC_INTERVAL = 1000;
+
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final String COMPACTING_SUFFIX = ".compacting";
+    private static final long INDEX_MAGIC = 0x45444c4a4f55524eL;
+    private static final int INDEX_HEADER_LONGS = 3;
+    private static final int INDEX_RECORD_LONGS = 2;
+    private static final char CREATED = 'C';
+    private static final char UPDATED = 'U';
+    private static final char DONE = 'D';
+    private static final char FIELD_SEPARATOR = '\t';
+    private static final byte LINE_SEPARATOR = '\n';
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final String JOURNAL_ERROR_TEMPLATE = "Could not access the journal %s";
+    private static final String JOURNAL_TOO_LARGE_TEMPLATE = "The journal %s is too large to be memory mapped";
+
+    private final Path journalPath;
+    private final Path indexPath;
+    private final CompactIriMapping appendedLocations;
+    private final IriDictionary appendedUpdates;
+    private MappedByteBuffer compactedJournal;
+    private LongBuffer index;
+    private int indexedEntries;
+    private FileOutputStream outputStream;
+    private Writer writer;
+    private int unsyncedRecords;
+
+    public MappingJournal(String journalPath) {
+        this(journalPath, false);
+    }
+
+    /**
+     * @param offHeap Whether the IRIs recorded since the journal was opened are kept in direct memory rather than on
+     *                the heap
+     */
+    public MappingJournal(String journalPath, boolean offHeap) {
+        this.appendedLocations = new CompactIriMapping(offHeap);
+        this.appendedUpdates = new IriDictionary(offHeap);
+        this.journalPath = Paths.get(journalPath);
+        this.indexPath = Paths.get(journalPath + INDEX_SUFFIX);
+
+        try {
+            if (Files.exists(this.journalPath)) {
+                compact();
+                mapCompactedJournal();
+            }
+            this.outputStream = new FileOutputStream(this.journalPath.toFile(), true);
+            this.writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format(JOURNAL_ERROR_TEMPLATE, journalPath), e);
+        }
+    }
+
+    @Override
+    public String get(String sourceIRI) {
+        String location = appendedLocations.get(sourceIRI);
+        if (nonNull(location)) {
+            return location;
+        }
+        JournalEntry entry = findCompacted(sourceIRI);
+        return isNull(entry) ? null : entry.location;
+    }
+
+    @Override
+    public synchronized void put(String sourceIRI, String replacementIRI) {
+        append(CREATED + String.valueOf(FIELD_SEPARATOR) + sourceIRI + FIELD_SEPARATOR + replacementIRI);
+        appendedLocations.put(sourceIRI, replacementIRI);
+    }
+
+    public boolean isUpdated(String sourceIRI) {
+        synchronized (this) {
+            if (appendedUpdates.find(sourceIRI) != IriDictionary.NOT_FOUND) {
+                return true;
+            }
+        }
+        JournalEntry entry = findCompacted(sourceIRI);
+        return nonNull(entry) && entry.updated;
+    }
+
+    public synchronized void recordUpdated(String sourceIRI) {
+        append(UPDATED + String.valueOf(FIELD_SEPARATOR) + sourceIRI);
+        appendedUpdates.intern(sourceIRI);
+    }
+
+    private void append(String line) {
+        try {
+            writer.write(line);
+            writer.write(LINE_SEPARATOR);
+            writer.flush();
+            if (++unsyncedRecords >= SYNC_INTERVAL) {
+                sync();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format(JOURNAL_ERROR_TEMPLATE, journalPath), e);
+        }
+    }
+
+    private void sync() throws IOException {
+        writer.flush();
+        outputStream.getChannel().force(false);
+        unsyncedRecords = 0;
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            sync();
+            writer.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format(JOURNAL_ERROR_TEMPLATE, journalPath), e);
+        }
+    }
+
+    private JournalEntry findCompacted(String sourceIRI) {
+        if (isNull(index)) {
+            return null;
+        }
+        long hash = hash(sourceIRI);
+        int low = 0;
+        int high = indexedEntries - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (indexHash(middle) < hash) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        for (int position = low; position < indexedEntries && indexHash(position) == hash; position++) {
+            JournalEntry entry = JournalEntry.parse(readLine(compactedJournal, indexOffset(position)));
+            if (nonNull(entry) && sourceIRI.equals(entry.sourceIRI)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private long indexHash(int position) {
+        return index.get(INDEX_HEADER_LONGS + position * INDEX_RECORD_LONGS);
+    }
+
+    private int indexOffset(int position) {
+        return (int) index.get(INDEX_HEADER_LONGS + position * INDEX_RECORD_LONGS + 1);
+    }
+
+    private static String readLine(MappedByteBuffer buffer, int offset) {
+        int end = offset;
+        while (buffer.get(end) != LINE_SEPARATOR) {
+            end++;
+        }
+        byte[] line = new byte[end - offset];
+        for (int i = 0; i < line.length; i++) {
+            line[i] = buffer.get(offset + i);
+        }
+        return new String(line, StandardCharsets.UTF_8);
+    }
+
+    private static long hash(String value) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * Rewrites the journal to one line per entity, folding the lines appended since the last compaction into the
+     * compacted part, and writes a new index. Lines without a line separator, left by a load that was killed while
+     * writing, are dropped.
+     */
+    private void compact() throws IOException {
+        long compactedLength = readCompactedLength();
+        Map<String, JournalEntry> appendedEntries = readAppendedEntries(compactedLength);
+        if (appendedEntries.isEmpty() && compactedLength == Files.size(journalPath)) {
+            return;
+        }
+
+        Path compactingPath = Paths.get(journalPath + COMPACTING_SUFFIX);
+        List<IndexRecord> indexRecords = new ArrayList<>();
+        try (CountingOutputStream compacted = new CountingOutputStream(Files.newOutputStream(compactingPath))) {
+            if (compactedLength > 0) {
+                MappedByteBuffer previous = map(journalPath, compactedLength);
+                int offset = 0;
+                while (offset < compactedLength) {
+                    String line = readLine(previous, offset);
+                    offset += line.getBytes(StandardCharsets.UTF_8).length + 1;
+                    JournalEntry entry = JournalEntry.parse(line);
+                    if (nonNull(entry)) {
+                        JournalEntry appended = appendedEntries.remove(entry.sourceIRI);
+                        writeEntry(compacted, entry.merge(appended), indexRecords);
+                    }
+                }
+            }
+            for (JournalEntry entry : appendedEntries.values()) {
+                if (nonNull(entry.location)) {
+                    writeEntry(compacted, entry, indexRecords);
+                }
+            }
+        }
+
+        Files.deleteIfExists(indexPath);
+        Files.move(compactingPath, journalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        writeIndex(indexRecords, Files.size(journalPath));
+    }
+
+    private void writeEntry(CountingOutputStream compacted, JournalEntry entry, List<IndexRecord> indexRecords)
+            throws IOException {
+        indexRecords.add(new IndexRecord(hash(entry.sourceIRI), compacted.getCount()));
+        compacted.write(entry.toCompactedLine().getBytes(StandardCharsets.UTF_8));
+        compacted.write(LINE_SEPARATOR);
+    }
+
+    private void writeIndex(List<IndexRecord> indexRecords, long compactedLength) throws IOException {
+        indexRecords.sort(Comparator.comparingLong(record -> record.hash));
+        try (DataOutputStream indexStream = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(indexPath)))) {
+            indexStream.writeLong(INDEX_MAGIC);
+            indexStream.writeLong(compactedLength);
+            indexStream.writeLong(indexRecords.size());
+            for (IndexRecord indexRecord : indexRecords) {
+                indexStream.writeLong(indexRecord.hash);
+                indexStream.writeLong(indexRecord.offset);
+            }
+        }
+    }
+
+    private long readCompactedLength() throws IOException {
+        if (!Files.exists(indexPath) || Files.size(indexPath) < INDEX_HEADER_LONGS * Long.BYTES) {
+            return 0;
+        }
+        LongBuffer header = map(indexPath, INDEX_HEADER_LONGS * Long.BYTES).asLongBuffer();
+        boolean valid = header.get(0) == INDEX_MAGIC && header.get(1) <= Files.size(journalPath);
+        return valid ? header.get(1) : 0;
+    }
+
+    private Map<String, JournalEntry> readAppendedEntries(long compactedLength) throws IOException {
+        Map<String, JournalEntry> entries = new LinkedHashMap<>();
+        try (InputStream inputStream = new BufferedInputStream(Files.newInputStream(journalPath))) {
+            long skipped = 0;
+            while (skipped < compactedLength) {
+                skipped += inputStream.skip(compactedLength - skipped);
+            }
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int next;
+            while ((next = inputStream.read()) != -1) {
+                if (next == LINE_SEPARATOR) {
+                    JournalEntry entry = JournalEntry.parse(new String(line.toByteArray(), StandardCharsets.UTF_8));
+                    if (nonNull(entry)) {
+                        entries.merge(entry.sourceIRI, entry, JournalEntry::merge);
+                    }
+                    line.reset();
+                } else {
+                    line.write(next);
+                }
+            }
+        }
+        return entries;
+    }
+
+    private void mapCompactedJournal() throws IOException {
+        long compactedLength = Files.size(journalPath);
+        if (compactedLength == 0) {
+            return;
+        }
+        this.compactedJournal = map(journalPath, compactedLength);
+        this.index = map(indexPath, Files.size(indexPath)).asLongBuffer();
+        this.indexedEntries = (int) index.get(2);
+    }
+
+    private MappedByteBuffer map(Path path, long length) throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalStateException(String.format(JOURNAL_TOO_LARGE_TEMPLATE, path));
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        }
+    }
+
+    private static class JournalEntry {
+        private final String sourceIRI;
+        private final String location;
+        private final boolean updated;
+
+        private JournalEntry(String sourceIRI, String location, boolean updated) {
+            this.sourceIRI = sourceIRI;
+            this.location = location;
+            this.updated = updated;
+        }
+
+        private static JournalEntry parse(String line) {
+            String[] fields = line.split(String.valueOf(FIELD_SEPARATOR));
+            if (fields.length == 3 && (fields[0].charAt(0) == CREATED || fields[0].charAt(0) == DONE)) {
+                return new JournalEntry(fields[1], fields[2], fields[0].charAt(0) == DONE);
+            } else if (fields.length == 2 && fields[0].charAt(0) == UPDATED) {
+                return new JournalEntry(fields[1], null, true);
+            }
+            return null;
+        }
+
+        private JournalEntry merge(JournalEntry later) {
+            if (isNull(later)) {
+                return this;
+            }
+            return new JournalEntry(sourceIRI, nonNull(later.location) ? later.location : location,
+                    updated || later.updated);
+        }
+
+        private String toCompactedLine() {
+            return (updated ? DONE : CREATED) + String.valueOf(FIELD_SEPARATOR) + sourceIRI + FIELD_SEPARATOR
+                    + location;
+        }
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        private CountingOutputStream(OutputStream outputStream) {
+            super(new BufferedOutputStream(outputStream));
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        private long getCount() {
+            return count;
+        }
+    }
+
+    private static class IndexRecord {
+        private final long hash;
+        private final long offset;
+
+        private IndexRecord(long hash, long offset) {
+            this.hash = hash;
+            this.offset = offset;
+        }
+    }
+}
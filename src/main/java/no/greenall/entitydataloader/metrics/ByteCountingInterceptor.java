@@ -0,0 +1,69 @@
+package no.greenall.entitydataloader.metrics;
+
+import no.greenall.entitydataloader.upload.Compression;
+import no.greenall.entitydataloader.upload.CompressionInterceptor;
+
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Counts the bytes of every request entity written by the client as serialized, and as sent if the entity is not
+ * compressed. It runs after the {@link CompressionInterceptor}, which counts the bytes sent of compressed entities.
+ */
+@Priority(Priorities.USER)
+public class ByteCountingInterceptor implements WriterInterceptor {
+
+    private final LoadMetrics metrics;
+
+    public ByteCountingInterceptor(LoadMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException, WebApplicationException {
+        Compression compression = Compression.getByName(
+                (String) context.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        boolean compressed = !(isNull(compression) || compression == Compression.NONE);
+        OutputStream outputStream = context.getOutputStream();
+        context.setOutputStream(new FilterOutputStream(outputStream) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                count(1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                count(len);
+            }
+
+            private void count(long bytes) {
+                metrics.rawBytesSent(bytes);
+                if (!compressed) {
+                    metrics.bytesSent(bytes);
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                // the connection is closed by the client
+                flush();
+            }
+        });
+        try {
+            context.proceed();
+        } finally {
+            context.setOutputStream(outputStream);
+        }
+    }
+}
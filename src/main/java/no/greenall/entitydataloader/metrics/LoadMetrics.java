@@ -0,0 +1,187 @@
+package no.greenall.entitydataloader.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Counters and latency histograms of a single load, shared by every worker and cheap enough to always be on.
+ */
+public class LoadMetrics {
+    public static final long DEFAULT_PROGRESS_INTERVAL_MILLIS = 10_000;
+
+    private static final String PROGRESS_TEMPLATE = "%s %d of %s entities, %.1f entities/s, ETA %s";
+    private static final String SUMMARY_TEMPLATE = "Created %d and updated %d entities in %.1f s with %d requests, "
+            + "%d retries and %d bytes sent (%d bytes before compression)";
+    private static final String UNKNOWN = "?";
+    private static final String DURATION_TEMPLATE = "%d:%02d:%02d";
+    private static final String METRICS_FILE_ERROR_TEMPLATE = "Could not write the metrics to %s";
+    private static final double MICROS_PER_MILLI = 1000.0;
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    private static final String[] PERCENTILE_FIELDS = {"p50Millis", "p90Millis", "p99Millis", "p999Millis"};
+
+    private final Map<Phase, LatencyHistogram> histograms = new EnumMap<>(Phase.class);
+    private final LongAdder created = new LongAdder();
+    private final LongAdder updated = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder rawBytesSent = new LongAdder();
+    private final AtomicLong lastProgress = new AtomicLong();
+    private final long progressIntervalNanos;
+    private final long start = System.nanoTime();
+    private volatile long phaseStart = start;
+
+    public LoadMetrics() {
+        this(DEFAULT_PROGRESS_INTERVAL_MILLIS);
+    }
+
+    public LoadMetrics(long progressIntervalMillis) {
+        for (Phase phase : Phase.values()) {
+            histograms.put(phase, new LatencyHistogram());
+        }
+        this.progressIntervalNanos = TimeUnit.MILLISECONDS.toNanos(progressIntervalMillis);
+        this.lastProgress.set(start);
+    }
+
+    public <T> T time(Phase phase, Supplier<T> task) {
+        long taskStart = System.nanoTime();
+        try {
+            return task.get();
+        } finally {
+            record(phase, System.nanoTime() - taskStart);
+        }
+    }
+
+    public void record(Phase phase, long nanos) {
+        histograms.get(phase).record(nanos);
+    }
+
+    public LatencyHistogram getHistogram(Phase phase) {
+        return histograms.get(phase);
+    }
+
+    public void entityCreated() {
+        created.increment();
+    }
+
+    public void entityUpdated() {
+        updated.increment();
+    }
+
+    public void retried() {
+        retries.increment();
+    }
+
+    public void bytesSent(long bytes) {
+        bytesSent.add(bytes);
+    }
+
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    /**
+     * Counts bytes of request entities as serialized, before any compression.
+     */
+    public void rawBytesSent(long bytes) {
+        rawBytesSent.add(bytes);
+    }
+
+    public long getRawBytesSent() {
+        return rawBytesSent.sum();
+    }
+
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    /**
+     * Marks the start of an upload phase, from which the rate and ETA of the progress line are measured.
+     */
+    public void startPhase() {
+        phaseStart = System.nanoTime();
+    }
+
+    /**
+     * A progress line for the current upload phase, at most once per progress interval.
+     *
+     * @param label The verb of the phase, such as "Created"
+     * @param done  The entities completed in this phase
+     * @param total The entities of the phase, or a negative number if it is not known
+     * @return The line, or null if the previous line was printed less than an interval ago
+     */
+    public String progress(String label, long done, long total) {
+        long now = System.nanoTime();
+        long last = lastProgress.get();
+        if (now - last < progressIntervalNanos || !lastProgress.compareAndSet(last, now)) {
+            return null;
+        }
+        double seconds = (now - phaseStart) / (double) TimeUnit.SECONDS.toNanos(1);
+        double rate = seconds > 0 ? done / seconds : 0;
+        String eta = total >= done && rate > 0 ? formatDuration((long) ((total - done) / rate)) : UNKNOWN;
+        return String.format(Locale.ROOT, PROGRESS_TEMPLATE, label, done, total < 0 ? UNKNOWN : String.valueOf(total),
+                rate, eta);
+    }
+
+    private static String formatDuration(long seconds) {
+        return String.format(DURATION_TEMPLATE, seconds / 3600, seconds / 60 % 60, seconds % 60);
+    }
+
+    public String summary() {
+        return String.format(Locale.ROOT, SUMMARY_TEMPLATE, created.sum(), updated.sum(), elapsedMillis() / 1000.0,
+                requestCount(), retries.sum(), bytesSent.sum(), rawBytesSent.sum());
+    }
+
+    private long requestCount() {
+        return histograms.get(Phase.POST).getCount() + histograms.get(Phase.PUT).getCount();
+    }
+
+    private long elapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    public ObjectNode toJson() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        ObjectNode summary = objectMapper.createObjectNode();
+        summary.put("durationMillis", elapsedMillis());
+        summary.put("entitiesCreated", created.sum());
+        summary.put("entitiesUpdated", updated.sum());
+        summary.put("requests", requestCount());
+        summary.put("retries", retries.sum());
+        summary.put("bytesSent", bytesSent.sum());
+        summary.put("rawBytesSent", rawBytesSent.sum());
+
+        ObjectNode phases = summary.putObject("phases");
+        for (Map.Entry<Phase, LatencyHistogram> entry : histograms.entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            ObjectNode phase = phases.putObject(entry.getKey().name().toLowerCase(Locale.ROOT));
+            phase.put("count", histogram.getCount());
+            phase.put("totalMillis", histogram.getTotalMicros() / MICROS_PER_MILLI);
+            phase.put("meanMillis", histogram.getMeanMicros() / MICROS_PER_MILLI);
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                phase.put(PERCENTILE_FIELDS[i], histogram.getPercentileMicros(PERCENTILES[i]) / MICROS_PER_MILLI);
+            }
+            phase.put("maxMillis", histogram.getMaxMicros() / MICROS_PER_MILLI);
+        }
+        return summary;
+    }
+
+    public void writeSummary(String metricsPath) {
+        try {
+            new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(new File(metricsPath), toJson());
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format(METRICS_FILE_ERROR_TEMPLATE, metricsPath), e);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package no.greenall.entitydataloader.metrics;
+
+/**
+ * The stages of a load that are timed separately.
+ */
+public enum Phase {
+    /**
+     * Reading the input file, once per load.
+     */
+    PARSE,
+    /**
+     * Producing the description of a single concept from the parsed input.
+     */
+    EXTRACT,
+    /**
+     * Validating the description of a single concept against the SHACL shapes.
+     */
+    VALIDATE,
+    /**
+     * Writing the description of a single entity as JSON-LD.
+     */
+    SERIALIZE,
+    /**
+     * A single create request to the registry, bulk or not, retries counted separately.
+     */
+    POST,
+    /**
+     * A single update request to the registry, bulk or not, retries counted separately.
+     */
+    PUT
+}
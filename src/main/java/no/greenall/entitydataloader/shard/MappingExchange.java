@@ -0,0 +1,184 @@
+package no.greenall.entitydataloader.shard;
+
+import no.greenall.entitydataloader.entity.CompactIriMapping;
+import no.greenall.entitydataloader.entity.IriMapping;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Exchanges the registry locations of the entities created by each shard of a load through files in a directory
+ * shared by the shards, so that every shard can rewrite references to concepts created by the others.
+ *
+ * <p>When a shard has created its entities, it publishes the source IRI and location of each of them as a
+ * tab-separated file named after the shard, written under a temporary name and then moved into place, so that the
+ * other shards never read a partial file. It then waits for the files of the other shards and reads them. A shard
+ * that fails writes a marker instead, so that the others stop waiting for it. The directory must be empty when a load
+ * starts.
+ */
+public class MappingExchange {
+    private static final String MAPPINGS_FILE_TEMPLATE = "shard-%d-of-%d.tsv";
+    private static final String FAILED_FILE_TEMPLATE = "shard-%d-of-%d.failed";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final String FIELD_SEPARATOR = "\t";
+    private static final int FIELDS = 2;
+    private static final long POLL_INTERVAL_MILLIS = 200;
+    private static final String EXCHANGE_ERROR_TEMPLATE = "Could not access the shard directory %s";
+    private static final String STALE_MAPPINGS_TEMPLATE = "The shard directory %s holds the mappings of an earlier "
+            + "load of shard %s";
+    private static final String SHARD_FAILED_TEMPLATE = "Shard %d/%d failed, its entities cannot be referenced";
+    private static final String SHARD_TIMEOUT_TEMPLATE = "Gave up waiting for the mappings of shards %s after %d "
+            + "seconds";
+    private static final String WAITING_OUTPUT_TEMPLATE = "Shard %s published %d mappings, waiting for the other "
+            + "shards";
+    private static final String MERGED_OUTPUT_TEMPLATE = "Read %d mappings published by the other shards";
+
+    private final Shard shard;
+    private final Path directory;
+    private final long timeoutMillis;
+    private boolean published;
+
+    public MappingExchange(Shard shard, String directory, long timeoutSeconds) {
+        this.shard = shard;
+        this.directory = Paths.get(directory);
+        this.timeoutMillis = TimeUnit.SECONDS.toMillis(timeoutSeconds);
+        try {
+            Files.createDirectories(this.directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format(EXCHANGE_ERROR_TEMPLATE, directory), e);
+        }
+        if (Files.exists(mappingsPath(shard.getIndex())) || Files.exists(failedPath(shard.getIndex()))) {
+            throw new RuntimeException(String.format(STALE_MAPPINGS_TEMPLATE, directory, shard));
+        }
+    }
+
+    public boolean isPublished() {
+        return published;
+    }
+
+    /**
+     * Publishes the locations of the entities of this shard.
+     *
+     * @param conceptIRIs The IRIs of the concepts of this shard
+     * @param mapping     The registry locations of the concepts
+     */
+    public void publish(Iterable<String> conceptIRIs, IriMapping mapping) {
+        Path mappingsPath = mappingsPath(shard.getIndex());
+        Path temporaryPath = Paths.get(mappingsPath + TEMPORARY_SUFFIX);
+        int count = 0;
+        try (BufferedWriter writer = Files.newBufferedWriter(temporaryPath, StandardCharsets.UTF_8)) {
+            for (String conceptIRI : conceptIRIs) {
+                String location = mapping.get(conceptIRI);
+                if (nonNull(location)) {
+                    writer.write(String.join(FIELD_SEPARATOR, conceptIRI, location));
+                    writer.newLine();
+                    count++;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format(EXCHANGE_ERROR_TEMPLATE, directory), e);
+        }
+        try {
+            Files.move(temporaryPath, mappingsPath, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format(EXCHANGE_ERROR_TEMPLATE, directory), e);
+        }
+        this.published = true;
+        System.out.println(String.format(WAITING_OUTPUT_TEMPLATE, shard, count));
+    }
+
+    /**
+     * Tells the other shards that this shard will not publish its mappings.
+     */
+    public void fail() {
+        if (published) {
+            return;
+        }
+        try {
+            Files.write(failedPath(shard.getIndex()), new byte[0]);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format(EXCHANGE_ERROR_TEMPLATE, directory), e);
+        }
+    }
+
+    /**
+     * Waits until every other shard has published its mappings.
+     *
+     * @return The locations of the entities created by the other shards
+     */
+    public IriMapping awaitOtherShards() {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        List<Integer> pending = new ArrayList<>();
+        for (int index = 1; index <= shard.getCount(); index++) {
+            if (index != shard.getIndex()) {
+                pending.add(index);
+            }
+        }
+        IriMapping mapping = new CompactIriMapping();
+        int merged = 0;
+        while (!pending.isEmpty()) {
+            for (Integer index : new ArrayList<>(pending)) {
+                if (Files.exists(failedPath(index))) {
+                    throw new RuntimeException(String.format(SHARD_FAILED_TEMPLATE, index, shard.getCount()));
+                }
+                if (Files.exists(mappingsPath(index))) {
+                    merged += read(mappingsPath(index), mapping);
+                    pending.remove(index);
+                }
+            }
+            if (pending.isEmpty()) {
+                break;
+            }
+            if (System.currentTimeMillis() > deadline) {
+                throw new RuntimeException(String.format(SHARD_TIMEOUT_TEMPLATE, pending,
+                        TimeUnit.MILLISECONDS.toSeconds(timeoutMillis)));
+            }
+            try {
+                Thread.sleep(POLL_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+        System.out.println(String.format(MERGED_OUTPUT_TEMPLATE, merged));
+        return mapping;
+    }
+
+    private int read(Path mappingsPath, IriMapping mapping) {
+        int read = 0;
+        try (BufferedReader reader = Files.newBufferedReader(mappingsPath, StandardCharsets.UTF_8)) {
+            String line;
+            while (nonNull(line = reader.readLine())) {
+                String[] fields = line.split(FIELD_SEPARATOR, -1);
+                if (fields.length == FIELDS && isNull(mapping.get(fields[0]))) {
+                    mapping.put(fields[0], fields[1]);
+                    read++;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format(EXCHANGE_ERROR_TEMPLATE, directory), e);
+        }
+        return read;
+    }
+
+    private Path mappingsPath(int index) {
+        return directory.resolve(String.format(MAPPINGS_FILE_TEMPLATE, index, shard.getCount()));
+    }
+
+    private Path failedPath(int index) {
+        return directory.resolve(String.format(FAILED_FILE_TEMPLATE, index, shard.getCount()));
+    }
+}
@@ -0,0 +1,68 @@
+package no.greenall.entitydataloader.shard;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * One of n disjoint slices of the concepts of a load, written {@code i/n} with i from 1 to n.
+ *
+ * <p>A concept belongs to the slice given by a name-based UUID of its IRI, so that every process reading the same
+ * input assigns it to the same slice, whatever the order of the input or the JVM it runs on.
+ */
+public final class Shard {
+    private static final Pattern SHARD = Pattern.compile("(\\d+)/(\\d+)");
+    private static final String SHARD_UNRECOGNIZED_TEMPLATE = "The shard %s was not recognized, use i/n with i from 1 "
+            + "to n";
+    private static final String SHARD_TEMPLATE = "%d/%d";
+
+    private final int index;
+    private final int count;
+
+    public Shard(int index, int count) {
+        if (count < 1 || index < 1 || index > count) {
+            throw new RuntimeException(String.format(SHARD_UNRECOGNIZED_TEMPLATE,
+                    String.format(SHARD_TEMPLATE, index, count)));
+        }
+        this.index = index;
+        this.count = count;
+    }
+
+    public static Shard parse(String shard) {
+        Matcher matcher = SHARD.matcher(shard.trim());
+        if (!matcher.matches()) {
+            throw new RuntimeException(String.format(SHARD_UNRECOGNIZED_TEMPLATE, shard));
+        }
+        try {
+            return new Shard(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+        } catch (NumberFormatException e) {
+            throw new RuntimeException(String.format(SHARD_UNRECOGNIZED_TEMPLATE, shard));
+        }
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public boolean contains(String conceptIRI) {
+        return sliceOf(conceptIRI, count) == index;
+    }
+
+    /**
+     * @return The slice, from 1 to the number of slices, that the concept belongs to
+     */
+    static int sliceOf(String conceptIRI, int count) {
+        UUID uuid = UUID.nameUUIDFromBytes(conceptIRI.getBytes(StandardCharsets.UTF_8));
+        return (int) Math.floorMod(uuid.getMostSignificantBits() ^ uuid.getLeastSignificantBits(), (long) count) + 1;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(SHARD_TEMPLATE, index, count);
+    }
+}
@@ -0,0 +1,44 @@
+package no.greenall.entitydataloader.shard;
+
+import no.greenall.entitydataloader.entity.ConceptDescription;
+import no.greenall.entitydataloader.entity.ConceptSource;
+
+import java.util.Iterator;
+import java.util.stream.StreamSupport;
+
+/**
+ * The concepts of a source that belong to a shard. The size is counted once, on the first call, by iterating the
+ * source.
+ */
+public class ShardConceptSource implements ConceptSource {
+    private final ConceptSource source;
+    private final Shard shard;
+    private int size = -1;
+
+    public ShardConceptSource(ConceptSource source, Shard shard) {
+        this.source = source;
+        this.shard = shard;
+    }
+
+    @Override
+    public synchronized int size() {
+        if (size < 0) {
+            size = (int) StreamSupport.stream(source.spliterator(), false)
+                    .filter(concept -> shard.contains(concept.getConceptIRI()))
+                    .count();
+        }
+        return size;
+    }
+
+    @Override
+    public Iterator<ConceptDescription> iterator() {
+        return StreamSupport.stream(source.spliterator(), false)
+                .filter(concept -> shard.contains(concept.getConceptIRI()))
+                .iterator();
+    }
+
+    @Override
+    public void close() {
+        source.close();
+    }
+}
@@ -0,0 +1,181 @@
+package no.greenall.entitydataloader.spool;
+
+import no.greenall.entitydataloader.EntityDto;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads the payloads of a spool written by {@link SpoolWriter}. The spool is memory-mapped in windows of up to a
+ * gigabyte, so it is read without copying it into the heap first, and each iteration reads it again from the start.
+ * The inflaters of iterations that were left before their end are released when the reader is closed.
+ */
+public class SpoolReader implements Iterable<EntityDto>, Closeable {
+    private static final long MAX_WINDOW_BYTES = 1L << 30;
+    private static final int PREFIX_OFFSET = SpoolWriter.COUNT_OFFSET + Long.BYTES;
+    private static final String SPOOL_ERROR_TEMPLATE = "Could not read the spool %s";
+    private static final String NOT_A_SPOOL_TEMPLATE = "The file %s is not a spool, or was written by another version";
+    private static final String INCOMPLETE_SPOOL_TEMPLATE = "The spool %s holds %d payloads instead of %d";
+
+    private final String spoolPath;
+    private final FileChannel channel;
+    private final long size;
+    private final boolean compressed;
+    private final long count;
+    private final String entityUrlPrefix;
+    private final long payloadsOffset;
+    private final List<Inflater> inflaters = Collections.synchronizedList(new ArrayList<>());
+
+    public SpoolReader(String spoolPath) {
+        this.spoolPath = spoolPath;
+        try {
+            this.channel = FileChannel.open(Paths.get(spoolPath), StandardOpenOption.READ);
+            this.size = channel.size();
+            if (size < PREFIX_OFFSET + Short.BYTES) {
+                throw new IllegalStateException(String.format(NOT_A_SPOOL_TEMPLATE, spoolPath));
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, PREFIX_OFFSET + Short.BYTES);
+            if (header.getLong() != SpoolWriter.MAGIC || header.getInt() != SpoolWriter.VERSION) {
+                throw new IllegalStateException(String.format(NOT_A_SPOOL_TEMPLATE, spoolPath));
+            }
+            this.compressed = header.get() == SpoolWriter.COMPRESSED;
+            this.count = header.getLong();
+            int prefixBytes = Short.BYTES + Short.toUnsignedInt(header.getShort());
+            byte[] prefix = new byte[prefixBytes];
+            channel.map(FileChannel.MapMode.READ_ONLY, PREFIX_OFFSET, prefixBytes).get(prefix);
+            this.entityUrlPrefix = new DataInputStream(new ByteArrayInputStream(prefix)).readUTF();
+            this.payloadsOffset = PREFIX_OFFSET + prefixBytes;
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format(SPOOL_ERROR_TEMPLATE, spoolPath), e);
+        }
+    }
+
+    /**
+     * @return The number of payloads in the spool
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return The prefix of the registry IRIs that the payloads refer to each other with
+     */
+    public String getEntityUrlPrefix() {
+        return entityUrlPrefix;
+    }
+
+    @Override
+    public Iterator<EntityDto> iterator() {
+        Inflater iterationInflater = new Inflater();
+        inflaters.add(iterationInflater);
+        return new Iterator<EntityDto>() {
+            private final Inflater inflater = iterationInflater;
+            private long position = payloadsOffset;
+            private long read;
+            private long windowStart;
+            private MappedByteBuffer window;
+
+            @Override
+            public boolean hasNext() {
+                if (position < size) {
+                    return true;
+                }
+                inflater.end();
+                inflaters.remove(inflater);
+                if (read != count) {
+                    throw new IllegalStateException(String.format(INCOMPLETE_SPOOL_TEMPLATE, spoolPath, read, count));
+                }
+                return false;
+            }
+
+            @Override
+            public EntityDto next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    mapWindow(SpoolWriter.RECORD_HEADER_BYTES);
+                    int storedLength = window.getInt((int) (position - windowStart));
+                    int rawLength = window.getInt((int) (position - windowStart) + Integer.BYTES);
+                    mapWindow(SpoolWriter.RECORD_HEADER_BYTES + storedLength);
+                    byte[] stored = new byte[storedLength];
+                    window.position((int) (position - windowStart) + SpoolWriter.RECORD_HEADER_BYTES);
+                    window.get(stored);
+                    position += SpoolWriter.RECORD_HEADER_BYTES + storedLength;
+                    read++;
+                    return toEntityDto(compressed ? inflate(stored, rawLength) : stored);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(String.format(SPOOL_ERROR_TEMPLATE, spoolPath), e);
+                } catch (DataFormatException e) {
+                    throw new IllegalStateException(String.format(NOT_A_SPOOL_TEMPLATE, spoolPath), e);
+                }
+            }
+
+            /**
+             * Maps a new window from the current position if the given number of bytes from it is not in the window.
+             */
+            private void mapWindow(long bytes) throws IOException {
+                if (position + bytes > size) {
+                    throw new IllegalStateException(String.format(NOT_A_SPOOL_TEMPLATE, spoolPath));
+                }
+                if (window == null || position + bytes > windowStart + window.capacity()) {
+                    windowStart = position;
+                    window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                            Math.min(size - position, Math.max(bytes, MAX_WINDOW_BYTES)));
+                }
+            }
+
+            private byte[] inflate(byte[] stored, int rawLength) throws DataFormatException {
+                byte[] raw = new byte[rawLength];
+                inflater.reset();
+                inflater.setInput(stored);
+                int inflated = 0;
+                while (inflated < rawLength && !inflater.finished()) {
+                    int bytes = inflater.inflate(raw, inflated, rawLength - inflated);
+                    if (bytes == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        throw new DataFormatException();
+                    }
+                    inflated += bytes;
+                }
+                return raw;
+            }
+        };
+    }
+
+    private static EntityDto toEntityDto(byte[] payload) throws IOException {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(payload));
+        EntityDto entityDto = new EntityDto();
+        entityDto.setId(input.readUTF());
+        int bodyOffset = payload.length - input.available();
+        entityDto.setBody(new String(payload, bodyOffset, payload.length - bodyOffset, StandardCharsets.UTF_8));
+        return entityDto;
+    }
+
+    @Override
+    public void close() {
+        synchronized (inflaters) {
+            inflaters.forEach(Inflater::end);
+            inflaters.clear();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format(SPOOL_ERROR_TEMPLATE, spoolPath), e);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package no.greenall.entitydataloader.spool;
+
+import no.greenall.entitydataloader.ApiIntegrator;
+import no.greenall.entitydataloader.EntityDto;
+import no.greenall.entitydataloader.LoaderOptions;
+import no.greenall.entitydataloader.metrics.LoadMetrics;
+import no.greenall.entitydataloader.upload.Batches;
+import no.greenall.entitydataloader.upload.ConcurrentUploader;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import static java.util.Objects.nonNull;
+
+/**
+ * Sends the payloads of a spool written by a prepare run to the registry, without parsing or serializing RDF. If the
+ * spool was prepared for another registry, the references between the payloads are rewritten to the entity URLs of
+ * this one on the way out.
+ *
+ * <p>The payloads refer to each other by the IRIs predicted from their client-supplied ids, so the first batch is sent
+ * on its own to check that the registry creates the entities at those IRIs, and the replay stops if it does not.
+ * Once it has, the creates are retried after a timeout or a dropped connection like the updates.
+ */
+public class SpoolReplayer {
+    private static final String MALFORMED_URL_TEMPLATE = "The URL %s is malformed";
+    private static final String CREATED_ENTITY_OUTPUT_TEMPLATE = "Created %d entity at URL: %s";
+    private static final String UPDATED_ENTITY_OUTPUT_TEMPLATE = "Updated %d entity at URL: %s";
+    private static final String THROUGHPUT_OUTPUT_TEMPLATE = ", sending %.1f requests/s with at most %d requests in flight";
+    private static final String CREATED_PROGRESS_LABEL = "Created";
+    private static final String UPDATED_PROGRESS_LABEL = "Updated";
+    private static final String REPLAY_OUTPUT_TEMPLATE = "Replaying %d entity payloads from the spool %s";
+    private static final String PREDICTION_MISMATCH_ERROR_TEMPLATE = "The registry created %2$s rather than %1$s, "
+            + "the spool can only be replayed to a registry that honours client-supplied ids";
+
+    private final ApiIntegrator apiIntegrator;
+    private final LoadMetrics metrics;
+    private final String entityUrlPrefix;
+    private final boolean update;
+    private final AtomicInteger counter = new AtomicInteger();
+    private long total;
+
+    public SpoolReplayer(String spoolPath, String baseUrl, String apiKey, LoaderOptions options) {
+        URL apiUrl;
+        try {
+            apiUrl = new URL(baseUrl);
+        } catch (MalformedURLException e) {
+            throw new RuntimeException(String.format(MALFORMED_URL_TEMPLATE, baseUrl));
+        }
+        this.update = options.isReplayUpdates();
+        this.metrics = new LoadMetrics();
+        try (SpoolReader spool = new SpoolReader(spoolPath);
+             ConcurrentUploader uploader = new ConcurrentUploader(options.getConcurrency());
+             ApiIntegrator sharedApiIntegrator = new ApiIntegrator(apiUrl, apiKey, options, metrics)) {
+            this.apiIntegrator = sharedApiIntegrator;
+            this.entityUrlPrefix = apiIntegrator.entityUrl("");
+            this.total = spool.getCount();
+            System.out.println(String.format(REPLAY_OUTPUT_TEMPLATE, total, spoolPath));
+            replay(spool, uploader, options);
+        } finally {
+            System.out.println(metrics.summary());
+            if (nonNull(options.getMetricsPath())) {
+                metrics.writeSummary(options.getMetricsPath());
+            }
+        }
+    }
+
+    private void replay(SpoolReader spool, ConcurrentUploader uploader, LoaderOptions options) {
+        metrics.startPhase();
+        Iterable<EntityDto> payloads = rewritten(spool, spool.getEntityUrlPrefix());
+        Iterator<List<EntityDto>> batches = Batches.of(payloads, options.getBatchSize()).iterator();
+        BiConsumer<Integer, List<String>> onSent = (batchCounter, locations) -> record(locations);
+        if (batches.hasNext()) {
+            record(update ? updateEntities(batches.next()) : createEntities(batches.next()));
+            apiIntegrator.setClientIdsHonoured(true);
+        }
+
+        Iterable<List<EntityDto>> remainingBatches = () -> batches;
+        if (options.isAsync()) {
+            uploader.executeAsync(remainingBatches, update ? this::updateEntitiesAsync : this::createEntitiesAsync,
+                    onSent);
+        } else {
+            uploader.execute(remainingBatches, update ? this::updateEntities : this::createEntities, onSent);
+        }
+    }
+
+    /**
+     * Rewrites the references of the payloads from the registry the spool was prepared for to this one.
+     */
+    private Iterable<EntityDto> rewritten(Iterable<EntityDto> payloads, String spoolUrlPrefix) {
+        if (spoolUrlPrefix.equals(entityUrlPrefix)) {
+            return payloads;
+        }
+        return () -> new Iterator<EntityDto>() {
+            private final Iterator<EntityDto> iterator = payloads.iterator();
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public EntityDto next() {
+                EntityDto entityDto = iterator.next();
+                entityDto.setBody(entityDto.getBody().replace(spoolUrlPrefix, entityUrlPrefix));
+                return entityDto;
+            }
+        };
+    }
+
+    private List<String> createEntities(List<EntityDto> entityDtos) {
+        List<String> locations = (entityDtos.size() == 1)
+                ? Collections.singletonList(apiIntegrator.createEntity(entityDtos.get(0).getId(),
+                        entityDtos.get(0).getBody()))
+                : apiIntegrator.createEntities(entityDtos);
+        return checkLocations(entityDtos, locations);
+    }
+
+    private CompletionStage<List<String>> createEntitiesAsync(List<EntityDto> entityDtos) {
+        CompletionStage<List<String>> locations = (entityDtos.size() == 1)
+                ? apiIntegrator.createEntityAsync(entityDtos.get(0).getId(), entityDtos.get(0).getBody())
+                        .thenApply(Collections::singletonList)
+                : apiIntegrator.createEntitiesAsync(entityDtos);
+        return locations.thenApply(created -> checkLocations(entityDtos, created));
+    }
+
+    private List<String> updateEntities(List<EntityDto> entityDtos) {
+        if (entityDtos.size() == 1) {
+            apiIntegrator.updateEntity(entityDtos.get(0).getId(), entityDtos.get(0).getBody());
+        } else {
+            apiIntegrator.updateEntities(entityDtos);
+        }
+        return predictedLocations(entityDtos);
+    }
+
+    private CompletionStage<List<String>> updateEntitiesAsync(List<EntityDto> entityDtos) {
+        CompletionStage<?> updated = (entityDtos.size() == 1)
+                ? apiIntegrator.updateEntityAsync(entityDtos.get(0).getId(), entityDtos.get(0).getBody(), null)
+                : apiIntegrator.updateEntitiesAsync(entityDtos);
+        return updated.thenApply(done -> predictedLocations(entityDtos));
+    }
+
+    private List<String> checkLocations(List<EntityDto> entityDtos, List<String> locations) {
+        List<String> predictedLocations = predictedLocations(entityDtos);
+        for (int i = 0; i < entityDtos.size(); i++) {
+            if (!predictedLocations.get(i).equals(locations.get(i))) {
+                throw new RuntimeException(String.format(PREDICTION_MISMATCH_ERROR_TEMPLATE,
+                        predictedLocations.get(i), locations.get(i)));
+            }
+        }
+        return locations;
+    }
+
+    private List<String> predictedLocations(List<EntityDto> entityDtos) {
+        List<String> locations = new ArrayList<>();
+        for (EntityDto entityDto : entityDtos) {
+            locations.add(entityUrlPrefix + entityDto.getId());
+        }
+        return locations;
+    }
+
+    private void record(List<String> locations) {
+        for (String location : locations) {
+            String template = update ? UPDATED_ENTITY_OUTPUT_TEMPLATE : CREATED_ENTITY_OUTPUT_TEMPLATE;
+            if (update) {
+                metrics.entityUpdated();
+            } else {
+                metrics.entityCreated();
+            }
+            System.out.println(String.format(template, counter.incrementAndGet(), location));
+            String progress = metrics.progress(update ? UPDATED_PROGRESS_LABEL : CREATED_PROGRESS_LABEL,
+                    counter.get(), total);
+            if (nonNull(progress)) {
+                System.out.println(progress + String.format(THROUGHPUT_OUTPUT_TEMPLATE,
+                        apiIntegrator.getRequestRate(), apiIntegrator.getConcurrencyLimit()));
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package no.greenall.entitydataloader.spool;
+
+import no.greenall.entitydataloader.EntityDto;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes the payloads of a load, ready to be sent, to a spool file that {@link SpoolReader} reads back.
+ *
+ * <p>The file starts with a header holding {@link #MAGIC}, the format version, the flags, the number of payloads and
+ * the entity URL prefix that the references between the payloads were rewritten to. Each payload follows as its
+ * stored length and its uncompressed length, both 4-byte integers, and the id of the entity in modified UTF-8 followed
+ * by the UTF-8 body, deflated on its own if the spool is compressed. Since each payload is length-prefixed and
+ * compressed on its own, the file can be memory-mapped and read a payload at a time.
+ *
+ * <p>The payloads are written to a temporary file next to the spool, which {@link #commit()} moves into place once
+ * every payload is written. A writer closed without being committed deletes the temporary file, so a run that fails
+ * partway never leaves a spool that looks complete.
+ */
+public class SpoolWriter implements Closeable {
+    static final long MAGIC = 0x45444c53504f4f4cL;
+    static final int VERSION = 1;
+    static final byte COMPRESSED = 1;
+    static final int COUNT_OFFSET = Long.BYTES + Integer.BYTES + Byte.BYTES;
+    static final int RECORD_HEADER_BYTES = 2 * Integer.BYTES;
+
+    private static final int BUFFER_BYTES = 1 << 16;
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final String SPOOL_ERROR_TEMPLATE = "Could not write the spool %s";
+
+    private final String spoolPath;
+    private final Path temporaryPath;
+    private final FileChannel channel;
+    private final DataOutputStream output;
+    private final boolean compressed;
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream storedPayload = new ByteArrayOutputStream();
+    private long count;
+    private boolean committed;
+
+    /**
+     * @param spoolPath       The file to write, replacing any file at the path once the spool is committed
+     * @param entityUrlPrefix The prefix of the registry IRIs that the payloads refer to each other with
+     * @param compressed      Whether each payload is deflated
+     */
+    public SpoolWriter(String spoolPath, String entityUrlPrefix, boolean compressed) {
+        this.spoolPath = spoolPath;
+        this.compressed = compressed;
+        this.temporaryPath = Paths.get(spoolPath + TEMPORARY_SUFFIX);
+        try {
+            this.channel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            this.output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel),
+                    BUFFER_BYTES));
+            output.writeLong(MAGIC);
+            output.writeInt(VERSION);
+            output.writeByte(compressed ? COMPRESSED : 0);
+            output.writeLong(0);
+            output.writeUTF(entityUrlPrefix);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format(SPOOL_ERROR_TEMPLATE, spoolPath), e);
+        }
+    }
+
+    public void write(EntityDto entityDto) {
+        try {
+            payload.reset();
+            DataOutputStream payloadOutput = new DataOutputStream(payload);
+            payloadOutput.writeUTF(entityDto.getId());
+            payloadOutput.write(entityDto.getBody().getBytes(StandardCharsets.UTF_8));
+
+            ByteArrayOutputStream stored = payload;
+            if (compressed) {
+                storedPayload.reset();
+                deflater.reset();
+                DeflaterOutputStream deflated = new DeflaterOutputStream(storedPayload, deflater, BUFFER_BYTES);
+                payload.writeTo(deflated);
+                deflated.finish();
+                stored = storedPayload;
+            }
+            output.writeInt(stored.size());
+            output.writeInt(payload.size());
+            stored.writeTo(output);
+            count++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format(SPOOL_ERROR_TEMPLATE, spoolPath), e);
+        }
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Writes the number of payloads into the header, forces the spool to disk and moves it into place.
+     */
+    public void commit() {
+        try {
+            output.flush();
+            ByteBuffer countBuffer = ByteBuffer.allocate(Long.BYTES).putLong(0, count);
+            channel.write(countBuffer, COUNT_OFFSET);
+            channel.force(true);
+            channel.close();
+            Files.move(temporaryPath, Paths.get(spoolPath), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format(SPOOL_ERROR_TEMPLATE, spoolPath), e);
+        }
+    }
+
+    /**
+     * Releases the writer, and deletes the temporary file unless the spool was committed.
+     */
+    @Override
+    public void close() {
+        deflater.end();
+        try {
+            channel.close();
+            if (!committed) {
+                Files.deleteIfExists(temporaryPath);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format(SPOOL_ERROR_TEMPLATE, spoolPath), e);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package no.greenall.entitydataloader.upload;
+
+/**
+ * Limits the number of requests in flight, adjusting the limit to what the registry can take.
+ *
+ * <p>The limit grows by one for every {@code limit} requests that complete quickly and successfully (additive
+ * increase), and is halved when a request is throttled with {@code 429} or {@code 503} or fails, or when the recent latency rises to
+ * {@code LATENCY_TOLERANCE} times the long-term latency (multiplicative decrease). Both latencies are exponentially
+ * weighted moving averages, the recent one reacting within a few requests and the long-term one within hundreds. After a decrease, the
+ * next {@code limit} completions cannot decrease it again, since they were sent before it took effect.
+ */
+public class AdaptiveConcurrencyLimiter {
+    private static final double LATENCY_TOLERANCE = 2.0;
+    private static final double DECREASE_FACTOR = 0.5;
+    private static final double RECENT_WEIGHT = 0.2;
+    private static final double LONG_TERM_WEIGHT = 0.01;
+    private static final String LIMIT_DECREASED_TEMPLATE = "Registry is overloaded, lowering the in-flight limit to %d";
+    private static final String INTERRUPTED_ERROR = "Interrupted while waiting for the concurrency limiter";
+
+    private final int maxLimit;
+    private int limit;
+    private int inFlight;
+    private int successes;
+    private int completionsSinceDecrease;
+    private double recentLatencyNanos;
+    private double longTermLatencyNanos;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int maxLimit) {
+        this.maxLimit = Math.max(1, maxLimit);
+        this.limit = Math.max(1, Math.min(initialLimit, this.maxLimit));
+        this.completionsSinceDecrease = limit;
+    }
+
+    /**
+     * Blocks until fewer than {@code limit} requests are in flight.
+     */
+    public synchronized void acquire() {
+        while (inFlight >= limit) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(INTERRUPTED_ERROR, e);
+            }
+        }
+        inFlight++;
+    }
+
+    /**
+     * Releases a request acquired with {@link #acquire()} and adjusts the limit by its outcome.
+     *
+     * @param latencyNanos The time the request took
+     * @param overloaded   Whether the registry throttled or failed the request
+     */
+    public synchronized void release(long latencyNanos, boolean overloaded) {
+        inFlight--;
+        completionsSinceDecrease++;
+        if (longTermLatencyNanos == 0) {
+            recentLatencyNanos = latencyNanos;
+            longTermLatencyNanos = latencyNanos;
+        }
+        recentLatencyNanos += RECENT_WEIGHT * (latencyNanos - recentLatencyNanos);
+        longTermLatencyNanos += LONG_TERM_WEIGHT * (latencyNanos - longTermLatencyNanos);
+        boolean slow = recentLatencyNanos > longTermLatencyNanos * LATENCY_TOLERANCE;
+
+        if (overloaded || slow) {
+            successes = 0;
+            if (completionsSinceDecrease >= limit && limit > 1) {
+                limit = Math.max(1, (int) (limit * DECREASE_FACTOR));
+                completionsSinceDecrease = 0;
+                System.out.println(String.format(LIMIT_DECREASED_TEMPLATE, limit));
+            }
+        } else if (++successes >= limit && limit < maxLimit) {
+            limit++;
+            successes = 0;
+        }
+        notifyAll();
+    }
+
+    public synchronized int getLimit() {
+        return limit;
+    }
+}
@@ -0,0 +1,40 @@
+package no.greenall.entitydataloader.upload;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Splits the items of an upload phase lazily into consecutive batches, so that a streaming source is never read
+ * further ahead than the batch being submitted.
+ */
+public final class Batches {
+
+    private Batches() {
+        // NO-OP
+    }
+
+    public static <T> Iterable<List<T>> of(Iterable<T> items, int batchSize) {
+        return () -> new Iterator<List<T>>() {
+            private final Iterator<T> iterator = items.iterator();
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public List<T> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                List<T> batch = new ArrayList<>(batchSize);
+                while (iterator.hasNext() && batch.size() < batchSize) {
+                    batch.add(iterator.next());
+                }
+                return batch;
+            }
+        };
+    }
+}
@@ -0,0 +1,86 @@
+package no.greenall.entitydataloader.upload;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pauses every worker of a load when too many of the recent requests to the registry have failed.
+ *
+ * <p>The outcomes of the last {@code windowSize} requests are kept in a ring. When the share of failures in a full
+ * window reaches the threshold the breaker opens, and {@link #awaitPermission()} blocks every caller until the pause
+ * has passed. The window is then cleared, so the breaker opens again only if the failures continue.
+ */
+public class CircuitBreaker {
+    public static final int DEFAULT_WINDOW_SIZE = 20;
+
+    private static final String CIRCUIT_OPENED_TEMPLATE = "%d of the last %d requests failed, pausing requests for %d seconds";
+    private static final String INTERRUPTED_ERROR = "Interrupted while waiting for the circuit breaker to close";
+
+    private final boolean[] failures;
+    private final int thresholdPercent;
+    private final long pauseMillis;
+    private int position;
+    private int recorded;
+    private int failureCount;
+    private long openUntil;
+
+    public CircuitBreaker(int windowSize, int thresholdPercent, long pauseMillis) {
+        this.failures = new boolean[windowSize];
+        this.thresholdPercent = thresholdPercent;
+        this.pauseMillis = pauseMillis;
+    }
+
+    /**
+     * Blocks while the breaker is open.
+     */
+    public void awaitPermission() {
+        long remaining;
+        while ((remaining = remainingPauseMillis()) > 0) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(INTERRUPTED_ERROR, e);
+            }
+        }
+    }
+
+    public boolean isOpen() {
+        return remainingPauseMillis() > 0;
+    }
+
+    public void recordSuccess() {
+        record(false);
+    }
+
+    public void recordFailure() {
+        record(true);
+    }
+
+    private synchronized long remainingPauseMillis() {
+        return openUntil - System.currentTimeMillis();
+    }
+
+    private synchronized void record(boolean failure) {
+        if (thresholdPercent <= 0 || failures.length == 0) {
+            return;
+        }
+        if (recorded == failures.length && failures[position]) {
+            failureCount--;
+        }
+        failures[position] = failure;
+        if (failure) {
+            failureCount++;
+        }
+        position = (position + 1) % failures.length;
+        recorded = Math.min(recorded + 1, failures.length);
+
+        if (recorded == failures.length && failureCount * 100 >= thresholdPercent * failures.length) {
+            System.out.println(String.format(CIRCUIT_OPENED_TEMPLATE, failureCount, failures.length,
+                    TimeUnit.MILLISECONDS.toSeconds(pauseMillis)));
+            openUntil = System.currentTimeMillis() + pauseMillis;
+            position = 0;
+            recorded = 0;
+            failureCount = 0;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package no.greenall.entitydataloader.upload;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The content coding of request entities sent to the registry.
+ */
+public enum Compression {
+    NONE("none"),
+    GZIP("gzip"),
+    DEFLATE("deflate");
+
+    private final String label;
+
+    Compression(String label) {
+        this.label = label;
+    }
+
+    /**
+     * @return The value of the {@code Content-Encoding} header of a request coded this way
+     */
+    public String getContentCoding() {
+        return label;
+    }
+
+    /**
+     * Wraps the output stream in a stream that compresses what is written to it, and writes the trailer of the
+     * compressed data when it is closed. Closing the stream releases the native memory of its deflater even if the
+     * trailer cannot be written.
+     */
+    public DeflaterOutputStream wrap(OutputStream outputStream) throws IOException {
+        switch (this) {
+            case GZIP:
+                return new GZIPOutputStream(outputStream) {
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        } finally {
+                            def.end();
+                        }
+                    }
+                };
+            case DEFLATE:
+                return new DeflaterOutputStream(outputStream) {
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        } finally {
+                            def.end();
+                        }
+                    }
+                };
+            default:
+                throw new IllegalStateException(label);
+        }
+    }
+
+    public static Compression getByName(String providedLabel) {
+        return Arrays.stream(values()).filter(compression -> compression.label.equalsIgnoreCase(providedLabel))
+                .findFirst().orElse(null);
+    }
+}
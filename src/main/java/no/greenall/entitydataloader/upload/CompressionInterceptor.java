@@ -0,0 +1,70 @@
+package no.greenall.entitydataloader.upload;
+
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.function.LongConsumer;
+import java.util.zip.DeflaterOutputStream;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Compresses every request entity with a gzip or deflate {@code Content-Encoding} header on its way from the
+ * serializer to the connection, so that the entity is never held uncompressed, and reports the number of compressed
+ * bytes sent. It runs ahead of the other writer interceptors, which see the entity as serialized.
+ */
+@Priority(Priorities.ENTITY_CODER)
+public class CompressionInterceptor implements WriterInterceptor {
+
+    private final LongConsumer compressedBytesSent;
+
+    public CompressionInterceptor(LongConsumer compressedBytesSent) {
+        this.compressedBytesSent = compressedBytesSent;
+    }
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException, WebApplicationException {
+        Compression compression = Compression.getByName(
+                (String) context.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        if (isNull(compression) || compression == Compression.NONE) {
+            context.proceed();
+            return;
+        }
+
+        OutputStream outputStream = context.getOutputStream();
+        try (DeflaterOutputStream compressed = compression.wrap(counting(outputStream))) {
+            context.setOutputStream(compressed);
+            context.proceed();
+        } finally {
+            context.setOutputStream(outputStream);
+        }
+    }
+
+    private OutputStream counting(OutputStream outputStream) {
+        return new FilterOutputStream(outputStream) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                compressedBytesSent.accept(1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                compressedBytesSent.accept(len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                // the connection is closed by the client
+                flush();
+            }
+        };
+    }
+}
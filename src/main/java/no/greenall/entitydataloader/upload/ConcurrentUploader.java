@@ -0,0 +1,211 @@
+package no.greenall.entitydataloader.upload;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import static java.util.Objects.nonNull;
+
+/**
+ * Runs the requests of an upload phase on a fixed number of worker threads.
+ *
+ * <p>At most {@code concurrency * QUEUE_FACTOR} requests are in flight or queued at any time; when the window is full
+ * the submitting thread waits for the oldest request to complete. Results, progress callbacks and failures are
+ * always reported in submission order, and {@link #execute} returns only when every request of the phase has
+ * completed, so consecutive calls act as a barrier between phases. Once a request has failed no further requests are
+ * submitted: those still queued are dropped and those already running are waited for before the failure is thrown.
+ *
+ * <p>{@link #executeAsync} keeps the same window and ordering for tasks that return a stage instead of blocking, so
+ * the requests in flight do not each hold a worker thread. If the phase is abandoned, because a stage fails, a
+ * callback throws or the submitting thread is interrupted, no further tasks are started and the stages still in
+ * flight are cancelled.
+ */
+public class ConcurrentUploader implements AutoCloseable {
+    private static final int QUEUE_FACTOR = 2;
+    private static final String INVALID_CONCURRENCY_TEMPLATE = "The concurrency must be at least 1, was %d";
+    private static final String INTERRUPTED_ERROR = "Interrupted while waiting for upload to complete";
+
+    private final ThreadPoolExecutor executorService;
+    private final int maxInFlight;
+
+    public ConcurrentUploader(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException(String.format(INVALID_CONCURRENCY_TEMPLATE, concurrency));
+        }
+        this.executorService = new ThreadPoolExecutor(concurrency, concurrency, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>());
+        this.maxInFlight = concurrency * QUEUE_FACTOR;
+    }
+
+    /**
+     * Applies the task to every item and waits for all of them to complete.
+     *
+     * @param items       The items to upload
+     * @param task        The request to perform for a single item
+     * @param onCompleted Called on the submitting thread with the 1-based position and result of each completed item
+     * @return The results in the order of the items
+     * @throws UploadFailedException if a task failed, once the tasks already running have completed
+     */
+    public <T, R> List<R> execute(Iterable<T> items, Function<T, R> task, BiConsumer<Integer, R> onCompleted) {
+        List<R> results = new ArrayList<>();
+        List<UploadFailure> failures = new ArrayList<>();
+        Deque<PendingUpload<T, R>> inFlight = new ArrayDeque<>();
+        AtomicBoolean failed = new AtomicBoolean();
+        int position = 0;
+
+        for (T item : items) {
+            if (inFlight.size() >= maxInFlight) {
+                complete(inFlight.poll(), results, failures, onCompleted);
+            }
+            if (failed.get()) {
+                break;
+            }
+            position++;
+            inFlight.add(new PendingUpload<>(position, item, executorService.submit(() -> apply(task, item, failed))));
+        }
+        if (failed.get()) {
+            dropQueued(inFlight);
+        }
+        while (!inFlight.isEmpty()) {
+            complete(inFlight.poll(), results, failures, onCompleted);
+        }
+
+        if (!failures.isEmpty()) {
+            throw new UploadFailedException(failures);
+        }
+        return results;
+    }
+
+    /**
+     * Applies the asynchronous task to every item and waits for all of them to complete, like {@link #execute}.
+     *
+     * @param items       The items to upload
+     * @param task        Starts the request for a single item, and returns the stage that completes with its result
+     * @param onCompleted Called on the submitting thread with the 1-based position and result of each completed item
+     * @return The results in the order of the items
+     * @throws UploadFailedException if a stage failed, once the stages still in flight have been cancelled
+     */
+    public <T, R> List<R> executeAsync(Iterable<T> items, Function<T, CompletionStage<R>> task,
+                                       BiConsumer<Integer, R> onCompleted) {
+        List<R> results = new ArrayList<>();
+        List<UploadFailure> failures = new ArrayList<>();
+        Deque<PendingUpload<T, R>> inFlight = new ArrayDeque<>();
+        AtomicBoolean failed = new AtomicBoolean();
+        int position = 0;
+
+        try {
+            for (T item : items) {
+                if (inFlight.size() >= maxInFlight) {
+                    complete(inFlight.poll(), results, failures, onCompleted);
+                }
+                if (failed.get()) {
+                    break;
+                }
+                position++;
+                inFlight.add(new PendingUpload<>(position, item, start(task, item, failed)));
+            }
+            while (!inFlight.isEmpty() && !failed.get()) {
+                complete(inFlight.poll(), results, failures, onCompleted);
+            }
+        } finally {
+            for (PendingUpload<T, R> pendingUpload : inFlight) {
+                pendingUpload.future.cancel(true);
+            }
+        }
+        // The stages that completed before they could be cancelled include the one that failed
+        for (PendingUpload<T, R> pendingUpload : inFlight) {
+            if (!pendingUpload.future.isCancelled()) {
+                complete(pendingUpload, results, failures, onCompleted);
+            }
+        }
+
+        if (!failures.isEmpty()) {
+            throw new UploadFailedException(failures);
+        }
+        return results;
+    }
+
+    private static <T, R> R apply(Function<T, R> task, T item, AtomicBoolean failed) {
+        try {
+            return task.apply(item);
+        } catch (RuntimeException e) {
+            failed.set(true);
+            throw e;
+        }
+    }
+
+    private <T, R> void dropQueued(Deque<PendingUpload<T, R>> inFlight) {
+        Iterator<PendingUpload<T, R>> pendingUploads = inFlight.iterator();
+        while (pendingUploads.hasNext()) {
+            Future<R> future = pendingUploads.next().future;
+            if (executorService.remove((Runnable) future)) {
+                future.cancel(false);
+                pendingUploads.remove();
+            }
+        }
+    }
+
+    private static <T, R> Future<R> start(Function<T, CompletionStage<R>> task, T item, AtomicBoolean failed) {
+        CompletableFuture<R> future;
+        try {
+            future = task.apply(item).toCompletableFuture();
+        } catch (RuntimeException e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+        future.whenComplete((result, error) -> {
+            if (nonNull(error)) {
+                failed.set(true);
+            }
+        });
+        return future;
+    }
+
+    private <T, R> void complete(PendingUpload<T, R> pendingUpload, List<R> results, List<UploadFailure> failures,
+                                 BiConsumer<Integer, R> onCompleted) {
+        try {
+            R result = pendingUpload.future.get();
+            results.add(result);
+            onCompleted.accept(pendingUpload.position, result);
+        } catch (ExecutionException e) {
+            results.add(null);
+            failures.add(new UploadFailure(pendingUpload.position, String.valueOf(pendingUpload.item), e.getCause()));
+        } catch (CancellationException e) {
+            results.add(null);
+            failures.add(new UploadFailure(pendingUpload.position, String.valueOf(pendingUpload.item), e));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(INTERRUPTED_ERROR, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        executorService.shutdownNow();
+    }
+
+    private static class PendingUpload<T, R> {
+        private final int position;
+        private final T item;
+        private final Future<R> future;
+
+        private PendingUpload(int position, T item, Future<R> future) {
+            this.position = position;
+            this.item = item;
+            this.future = future;
+        }
+    }
+}
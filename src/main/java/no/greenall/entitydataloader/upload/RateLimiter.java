@@ -0,0 +1,83 @@
+package no.greenall.entitydataloader.upload;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket shared by every worker of a load, holding at most one second worth of requests.
+ *
+ * <p>The limiter also measures the rate at which requests are actually sent, over windows of one second, whether
+ * or not a limit is set.
+ */
+public class RateLimiter {
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final String INTERRUPTED_ERROR = "Interrupted while waiting for the rate limiter";
+
+    private final double permitsPerSecond;
+    private final double capacity;
+    private double tokens;
+    private long lastRefill;
+    private long windowStart;
+    private int windowCount;
+    private double measuredRate;
+
+    /**
+     * @param permitsPerSecond The maximum number of requests per second, or 0 for no limit
+     */
+    public RateLimiter(double permitsPerSecond) {
+        this.permitsPerSecond = permitsPerSecond;
+        this.capacity = Math.max(1, permitsPerSecond);
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+        this.windowStart = lastRefill;
+    }
+
+    /**
+     * Blocks until a request may be sent.
+     */
+    public void acquire() {
+        long waitNanos;
+        while ((waitNanos = tryAcquire()) > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(INTERRUPTED_ERROR, e);
+            }
+        }
+    }
+
+    private synchronized long tryAcquire() {
+        long now = System.nanoTime();
+        if (permitsPerSecond > 0) {
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * permitsPerSecond / NANOS_PER_SECOND);
+            lastRefill = now;
+            if (tokens < 1) {
+                return (long) Math.ceil((1 - tokens) * NANOS_PER_SECOND / permitsPerSecond);
+            }
+            tokens--;
+        }
+        countRequest(now);
+        return 0;
+    }
+
+    private void countRequest(long now) {
+        long elapsed = now - windowStart;
+        if (elapsed >= NANOS_PER_SECOND) {
+            measuredRate = windowCount * (double) NANOS_PER_SECOND / elapsed;
+            windowStart = now;
+            windowCount = 0;
+        }
+        windowCount++;
+    }
+
+    /**
+     * The number of requests sent per second, as measured over the last completed window.
+     */
+    public synchronized double getCurrentRate() {
+        return measuredRate;
+    }
+
+    public double getPermitsPerSecond() {
+        return permitsPerSecond;
+    }
+}
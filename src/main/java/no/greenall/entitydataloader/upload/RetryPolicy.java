@@ -0,0 +1,80 @@
+package no.greenall.entitydataloader.upload;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Decides whether a failed request is sent again, and how long to wait before it is.
+ *
+ * <p>The delay before retry {@code n} is drawn uniformly from {@code [0, min(maxDelay, baseDelay * 2^n)]} ("full
+ * jitter"), so that workers that failed together do not retry together. A {@code Retry-After} given by the registry
+ * is used as a lower bound on the delay.
+ */
+public class RetryPolicy {
+    private static final List<Integer> RETRYABLE_STATUS_CODES = Arrays.asList(408, 429, 500, 502, 503, 504);
+    private static final int MAX_BACKOFF_EXPONENT = 30;
+
+    private final int maxRetries;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    public RetryPolicy(int maxRetries, long baseDelayMillis, long maxDelayMillis) {
+        this.maxRetries = maxRetries;
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * Whether a request that was answered with the status code may succeed if it is sent again.
+     */
+    public boolean isRetryable(int statusCode) {
+        return RETRYABLE_STATUS_CODES.contains(statusCode);
+    }
+
+    /**
+     * The delay before the given retry.
+     *
+     * @param retry      The 0-based number of the retry
+     * @param retryAfter The value of the {@code Retry-After} header of the failed response, or null
+     * @return The delay in milliseconds
+     */
+    public long delayMillis(int retry, String retryAfter) {
+        long ceiling = Math.min(maxDelayMillis, baseDelayMillis << Math.min(retry, MAX_BACKOFF_EXPONENT));
+        long delay = ceiling > 0 ? ThreadLocalRandom.current().nextLong(ceiling + 1) : 0;
+        return Math.max(delay, retryAfterMillis(retryAfter));
+    }
+
+    /**
+     * Parses a {@code Retry-After} header, given either as delay-seconds or as an HTTP-date.
+     *
+     * @return The delay in milliseconds, or 0 if the header is missing or malformed
+     */
+    static long retryAfterMillis(String retryAfter) {
+        if (isNull(retryAfter) || retryAfter.trim().isEmpty()) {
+            return 0;
+        }
+        String value = retryAfter.trim();
+        try {
+            return Math.max(0, Duration.ofSeconds(Long.parseLong(value)).toMillis());
+        } catch (NumberFormatException e) {
+            try {
+                Instant retryAt = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+                return Math.max(0, Duration.between(Instant.now(), retryAt).toMillis());
+            } catch (DateTimeParseException dateTimeParseException) {
+                return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package no.greenall.entitydataloader.upload;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Thrown when one or more requests of an upload phase failed. The failures are kept in submission order.
+ */
+public class UploadFailedException extends RuntimeException {
+    private static final String UPLOAD_FAILED_TEMPLATE = "%d upload(s) failed:%n%s";
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final List<UploadFailure> failures;
+
+    public UploadFailedException(List<UploadFailure> failures) {
+        super(String.format(UPLOAD_FAILED_TEMPLATE, failures.size(),
+                failures.stream().map(UploadFailure::toString).collect(Collectors.joining(LINE_SEPARATOR))),
+                failures.get(0).getCause());
+        this.failures = Collections.unmodifiableList(failures);
+    }
+
+    public List<UploadFailure> getFailures() {
+        return failures;
+    }
+}
@@ -0,0 +1,35 @@
+package no.greenall.entitydataloader.upload;
+
+/**
+ * A single failed request of an upload phase.
+ */
+public class UploadFailure {
+    private static final String FAILURE_TEMPLATE = "#%d %s: %s";
+
+    private final int position;
+    private final String item;
+    private final Throwable cause;
+
+    public UploadFailure(int position, String item, Throwable cause) {
+        this.position = position;
+        this.item = item;
+        this.cause = cause;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    public String getItem() {
+        return item;
+    }
+
+    public Throwable getCause() {
+        return cause;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(FAILURE_TEMPLATE, position, item, cause.getMessage());
+    }
+}
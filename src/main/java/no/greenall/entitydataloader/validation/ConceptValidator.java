@@ -0,0 +1,95 @@
+package no.greenall.entitydataloader.validation;
+
+import no.greenall.entitydataloader.entity.ConceptDescription;
+import no.greenall.entitydataloader.metrics.LoadMetrics;
+import no.greenall.entitydataloader.metrics.Phase;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RiotNotFoundException;
+import org.apache.jena.shacl.ShaclValidator;
+import org.apache.jena.shacl.Shapes;
+import org.apache.jena.shacl.ValidationReport;
+import org.apache.jena.shacl.validation.ReportEntry;
+import org.apache.jena.shacl.validation.Severity;
+import org.apache.jena.sparql.path.PathWriter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.StreamSupport;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Validates concept descriptions against SHACL shapes before they are sent, the way the registry validates each
+ * entity it receives. The shapes are parsed once and shared by the validating threads.
+ */
+public class ConceptValidator {
+    private static final String SHAPES_NOT_FOUND_TEMPLATE = "The shapes file %s was not found";
+    private static final String RESULT_TEMPLATE = "%s at %s: %s";
+    private static final String NO_PATH = "the focus node";
+
+    private final String shapesPath;
+    private final Shapes shapes;
+
+    public ConceptValidator(String shapesPath) {
+        this.shapesPath = shapesPath;
+        try {
+            Graph shapesGraph = RDFDataMgr.loadGraph(shapesPath);
+            this.shapes = Shapes.parse(shapesGraph);
+        } catch (RiotNotFoundException e) {
+            throw new RuntimeException(String.format(SHAPES_NOT_FOUND_TEMPLATE, shapesPath));
+        }
+    }
+
+    public ValidationReport validate(ConceptDescription concept) {
+        return ShaclValidator.get().validate(shapes, concept.getModel().getGraph());
+    }
+
+    /**
+     * Validates every concept on the given number of threads, recording the time taken for each concept as
+     * {@link Phase#VALIDATE}.
+     */
+    public ValidationSummary validateAll(Iterable<ConceptDescription> concepts, int threads, LoadMetrics metrics) {
+        AtomicInteger validated = new AtomicInteger();
+        Map<String, List<String>> results = new ConcurrentHashMap<>();
+        Set<String> invalidConceptIRIs = ConcurrentHashMap.newKeySet();
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.submit(() -> StreamSupport.stream(concepts.spliterator(), true).forEach(concept -> {
+                ValidationReport report = metrics.time(Phase.VALIDATE, () -> validate(concept));
+                validated.incrementAndGet();
+                if (!report.conforms()) {
+                    List<String> conceptResults = new ArrayList<>();
+                    for (ReportEntry entry : report.getEntries()) {
+                        conceptResults.add(describe(entry));
+                        if (Severity.Violation.equals(entry.severity())) {
+                            invalidConceptIRIs.add(concept.getConceptIRI());
+                        }
+                    }
+                    results.put(concept.getConceptIRI(), conceptResults);
+                }
+            })).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause()
+                    : new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        return new ValidationSummary(shapesPath, validated.get(), results, invalidConceptIRIs);
+    }
+
+    private static String describe(ReportEntry entry) {
+        String path = isNull(entry.resultPath()) ? NO_PATH : PathWriter.asString(entry.resultPath());
+        return String.format(RESULT_TEMPLATE, entry.severity().level().getLocalName(), path, entry.message());
+    }
+}
@@ -0,0 +1,59 @@
+package no.greenall.entitydataloader.validation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The results of validating the concepts of a load, listed per concept.
+ */
+public class ValidationSummary {
+    private static final String CONCEPT_TEMPLATE = "Concept %s:";
+    private static final String RESULT_TEMPLATE = "    %s";
+    private static final String SUMMARY_TEMPLATE = "%d of %d concepts do not conform to the shapes in %s";
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final String shapesPath;
+    private final int validated;
+    private final Map<String, List<String>> results;
+    private final Set<String> invalidConceptIRIs;
+
+    ValidationSummary(String shapesPath, int validated, Map<String, List<String>> results,
+                      Set<String> invalidConceptIRIs) {
+        this.shapesPath = shapesPath;
+        this.validated = validated;
+        this.results = new TreeMap<>(results);
+        this.invalidConceptIRIs = Collections.unmodifiableSet(new TreeSet<>(invalidConceptIRIs));
+    }
+
+    public int getValidated() {
+        return validated;
+    }
+
+    /**
+     * @return The IRIs of the concepts with at least one violation
+     */
+    public Set<String> getInvalidConceptIRIs() {
+        return invalidConceptIRIs;
+    }
+
+    /**
+     * Lists the violations, warnings and notes for each concept that has any, followed by the number of concepts
+     * that do not conform.
+     */
+    public String report() {
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, List<String>> conceptResults : results.entrySet()) {
+            lines.add(String.format(CONCEPT_TEMPLATE, conceptResults.getKey()));
+            for (String result : conceptResults.getValue()) {
+                lines.add(String.format(RESULT_TEMPLATE, result));
+            }
+        }
+        lines.add(String.format(SUMMARY_TEMPLATE, invalidConceptIRIs.size(), validated, shapesPath));
+        return String.join(LINE_SEPARATOR, lines);
+    }
+}
@@ -0,0 +1,468 @@
+package no.greenall.entitydataloader;
+
+import javax.ws.rs.ProcessingException;
+
+import no.greenall.entitydataloader.metrics.LoadMetrics;
+import no.greenall.entitydataloader.upload.Compression;
+import no.greenall.entitydataloader.upload.ConcurrentUploader;
+import no.greenall.entitydataloader.util.StubRegistry;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ApiIntegratorTest {
+
+    private static final String API_KEY = "123";
+    private static final String OTHER_API_KEY = "456";
+    private static final int REQUEST_TIMEOUT_MILLIS = 200;
+    private static final long HELD_REQUEST_MILLIS = 1000;
+    private static final String BODY = "{\"@id\":\"http://example.org/concept\"}";
+    private static final String PATH_SEPARATOR = "/";
+    private static final int REQUEST_COUNT = 50;
+    private static final int CONCURRENCY = 8;
+    private static final int MAX_CONNECTIONS = 2;
+    private static final int BATCH_SIZE = 10;
+    private static final int BULK_ITEM_FAILURE_INTERVAL = 3;
+    private static final int TRANSIENT_FAILURES = 2;
+    private static final int SERVICE_UNAVAILABLE = 503;
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final String RETRY_AFTER_SECONDS = "1";
+    private static final int MAX_REQUESTS_PER_SECOND = 25;
+    private static final int ASYNC_REQUEST_COUNT = 500;
+    private static final long CANCELLED_RETRY_WAIT_MILLIS = 1500;
+    private static final int COMPRESSION_THRESHOLD_BYTES = 100;
+    private static final int ENTITIES_PER_BULK_REQUEST = 3;
+
+    @Test
+    public void testSequentialRequestsReuseSingleConnection() throws IOException {
+        try (StubRegistry stubRegistry = new StubRegistry();
+             ApiIntegrator apiIntegrator = new ApiIntegrator(stubRegistry.getUrl(), API_KEY)) {
+            for (int i = 0; i < REQUEST_COUNT; i++) {
+                String location = apiIntegrator.createEntity(UUID.randomUUID().toString(), BODY);
+                apiIntegrator.updateEntity(location.substring(location.lastIndexOf(PATH_SEPARATOR) + 1), BODY);
+            }
+
+            assertThat(stubRegistry.getCreateCount(), is(equalTo(REQUEST_COUNT)));
+            assertThat(stubRegistry.getUpdateCount(), is(equalTo(REQUEST_COUNT)));
+            assertThat(stubRegistry.getConnectionCount(), is(equalTo(1)));
+        }
+    }
+
+    @Test
+    public void testClientCreatedInBackgroundServesRequests() throws IOException {
+        try (StubRegistry stubRegistry = new StubRegistry();
+             ApiIntegrator apiIntegrator = new ApiIntegrator(stubRegistry.getUrl(), API_KEY)) {
+            apiIntegrator.createClientInBackground();
+            for (int i = 0; i < REQUEST_COUNT; i++) {
+                apiIntegrator.createEntity(UUID.randomUUID().toString(), BODY);
+            }
+
+            assertThat(stubRegistry.getCreateCount(), is(equalTo(REQUEST_COUNT)));
+            assertThat(stubRegistry.getConnectionCount(), is(equalTo(1)));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUnusedClientIsNotCreatedAfterClose() throws IOException {
+        try (StubRegistry stubRegistry = new StubRegistry()) {
+            ApiIntegrator apiIntegrator = new ApiIntegrator(stubRegistry.getUrl(), API_KEY);
+            apiIntegrator.close();
+            apiIntegrator.createEntity(UUID.randomUUID().toString(), BODY);
+        }
+    }
+
+    @Test
+    public void testConcurrentRequestsAreLimitedToPooledConnections() throws IOException {
+        LoaderOptions options = new LoaderOptions();
+        options.setMaxConnectionsPerRoute(MAX_CONNECTIONS);
+        List<Integer> items = IntStream.range(0, REQUEST_COUNT).boxed().collect(Collectors.toList());
+
+        try (StubRegistry stubRegistry = new StubRegistry();
+             ApiIntegrator apiIntegrator = new ApiIntegrator(stubRegistry.getUrl(), API_KEY, options);
+             ConcurrentUploader uploader = new ConcurrentUploader(CONCURRENCY)) {
+            uploader.execute(items, item -> apiIntegrator.createEntity(UUID.randomUUID().toString(), BODY),
+                    (position, location) -> { });
+
+            assertThat(stubRegistry.getCreateCount(), is(equalTo(REQUEST_COUNT)));
+            assertTrue(stubRegistry.getConnectionCount() <= MAX_CONNECTIONS);
+        }
+    }
+
+    @Test
+    public void testBulkRequestsCreateAndUpdateAllEntities() throws IOException {
+        try (StubRegistry stubRegistry = new StubRegistry();
+             ApiIntegrator apiIntegrator = new ApiIntegrator(stubRegistry.getUrl(), API_KEY)) {
+            List<String> locations = apiIntegrator.createEntities(createEntityDtos());
+            apiIntegrator.updateEntities(updateEntityDtos(locations));
+
+            assertTrue(locations.stream().allMatch(Objects::nonNull));
+            assertThat(stubRegistry.getBulkRequestCount(), is(equalTo(2)));
+            assertThat(stubRegistry.getCreateCount(), is(equalTo(BATCH_SIZE)));
+            assertThat(stubRegistry.getUpdateCount(), is(equalTo(BATCH_SIZE)));
+        }
+    }
+
+    @Test
+    public void testLargeRequestsAreCompressed() throws IOException {
+        for (Compression compression : new Compression[]{Compression.GZIP, Compression.DEFLATE}) {
+            LoaderOptions options = new LoaderOptions();
+            options.setCompression(compression);
+            options.setCompressionThresholdBytes(COMPRESSION_THRESHOLD_BYTES);
+            LoadMetrics metrics = new LoadMetrics();
+
+            try (StubRegistry stubRegistry = new StubRegistry();
+                 ApiIntegrator apiIntegrator = new ApiIntegrator(stubRegistry.getUrl(), API_KEY, options, metrics)) {
+                String location = apiIntegrator.createEntity(UUID.randomUUID().toString(), BODY);
+                List<String> locations = apiIntegrator.createEntities(createEntityDtos());
+                apiIntegrator.updateEntities(updateEntityDtos(locations));
+
+                assertTrue(Objects.nonNull(location) && locations.stream().allMatch(Objects::nonNull));
+                assertThat(stubRegistry.getCompressedRequestCount(), is(equalTo(2)));
+                assertThat(stubRegistry.getCreateCount(), is(equalTo(BATCH_SIZE + 1)));
+                assertThat(stubRegistry.getUpdateCount(), is(equalTo(BATCH_SIZE)));
+                assertTrue(metrics.getBytesSent() < metrics.getRawBytesSent());
+            }
+        }
+    }
+
+    @Test
+    public void testBatchesAreSplitIntoBulkRequestsOfLimitedSize() throws IOException {
+        LoaderOptions options = new LoaderOptions();
+        options.setMaxBatchBytes(ENTITIES_PER_BULK_REQUEST * BODY.length());
+
+        try (StubRegistry stubRegistry = new StubRegistry();
+             ApiIntegrator apiIntegrator = new ApiIntegrator(stubRegistry.getUrl(), API_KEY, options)) {
+            List<String> locations = apiIntegrator.createEntities(createEntityDtos());
+            apiIntegrator.updateEntitiesAsync(updateEntityDtos(locations)).toCompletableFuture().join();
+
+            int bulkRequests = (BATCH_SIZE + ENTITIES_PER_BULK_REQUEST - 1) / ENTITIES_PER_BULK_REQUEST;
+            assertTrue(locations.stream().allMatch(Objects::nonNull));
+            assertThat(stubRegistry.getBulkRequestCount(), is(equalTo(2 * bulkRequests)));
+            assertThat(stubRegistry.getCreateCount(), is(equalTo(BATCH_SIZE)));
+            assertThat(stubRegistry.getUpdateCount(), is(equalTo(BATCH_SIZE)));
+        }
+    }
+
+    @Test
+    public void testFailedBulkItemsAreSentAsSingleRequests() throws IOException {
+        try (StubRegistry stubRegistry = new StubRegistry();
+             ApiIntegrator apiIntegrator = new ApiIntegrator(stubRegistry.getUrl(), API_KEY)) {
+            stubRegistry.setBulkItemFailureInterval(BULK_ITEM_FAILURE_INTERVAL);
+            List<String> locations = apiIntegrator.createEntities(createEntityDtos());
+
+            assertTrue(locations.stream().allMatch(Objects::nonNull));
+            assertThat(stubRegistry.getBulkRequestCount(), is(equalTo(1)));
+            assertThat(stubRegistry.getCreateCount(), is(equalTo(BATCH_SIZE)));
+        }
+    }
+
+    @Test
+    public void testRegistryWithoutBulkSupportFallsBackToSingleRequests() throws IOException {
+        try (StubRegistry stubRegistry = new StubRegistry();
+             ApiIntegrator apiIntegrator = new ApiIntegrator(stubRegistry.getUrl(), API_KEY)) {
+            stubRegistry.setBulkSupported(false);
+            List<String> locations = apiIntegrator.createEntities(createEntityDtos());
+            apiIntegrator.updateEntities(updateEntityDtos(locations));
+
+            assertTrue(locations.stream().allMatch(Objects::nonNull));
+            assertThat(stubRegistry.getBulkRequestCount(), is(equalTo(1)));
+            assertThat(stubRegistry.getCreateCount(), is(equalTo(BATCH_SIZE)));
+            assertThat(stubRegistry.getUpdateCount(), is(equalTo(BATCH_SIZE)));
+        }
+    }
+
+    @Test
+    public void testTransientFailuresAreRetried() throws IOException {
+        try (StubRegistry stubRegistry = new StubRegistry();
+             ApiIntegrator apiIntegrator = new ApiIntegrator(stubRegistry.getUrl(), API_KEY, retryOptions())) {
+            apiIntegrator.setClientIdsHonoured(true);
+            stubRegistry.failNextRequests(TRANSIENT_FAILURES, SERVICE_UNAVAILABLE, null);
+            String location = apiIntegrator.createEntity(UUID.randomUUID().toString(), BODY);
+            stubRegistry.failNextRequests(TRANSIENT_FAILURES, SERVICE_UNAVAILABLE, null);
+            apiIntegrator.updateEntity(location.substring(location.lastIndexOf(PATH_SEPARATOR) + 1), BODY);
+
+            assertThat(stubRegistry.getCreateCount(), is(equalTo(1)));
+            assertThat(stubRegistry.getUpdateCount(), is(equalTo(1)));
+            assertThat(stubRegistry.getRequestCount(), is(equalTo(2 * (TRANSIENT_FAILURES + 1))));
+        }
+    }
+
+    @Test
+    public void testDroppedConnectionsAndTimeoutsAreRetried() throws IOException {
+        LoaderOptions options = retryOptions();
+        options.setRequestTimeoutMillis(REQUEST_TIMEOUT_MILLIS);
+        try (StubRegistry stubRegistry = new StubRegistry();
+             ApiIntegrator apiIntegrator = new ApiIntegrator(stubRegistry.getUrl(), API_KEY, options)) {
+            apiIntegrator.setClientIdsHonoured(true);
+            stubRegistry.setTimeoutMillis(HELD_REQUEST_MILLIS);
+            stubRegistry.failNextRequests(1, StubRegistry.Fault.DROPPED_CONNECTION);
+            String id = UUID.randomUUID().toString();
+            apiIntegrator.createEntity(id, BODY);
+            stubRegistry.failNextRequests(1, StubRegistry.Fault.TIMEOUT);
+            apiIntegrator.updateEntity(id, BODY);
+
+            assertThat(stubRegistry.getCreateCount(), is(equalTo(1)));
+            assertThat(stubRegistry.getUpdateCount(), is(equalTo(1)));
+            assertThat(stubRegistry.getInjectedFaultCount(), is(equalTo(2)));
+            assertThat(stubRegistry.getRequestCount(), is(equalTo(4)));
+            assertThat(stubRegistry.getDuplicateCreateCount(), is(equalTo(0)));
+        }
+    }
+
+    @Test
+    public void testResponsesCutOffWhileReadAreRetried() throws IOException {
+        LoaderOptions options = retryOptions();
+        options.setRequestTimeoutMillis(REQUEST_TIMEOUT_MILLIS);
+        try (StubRegistry stubRegistry = new StubRegistry();
+             ApiIntegrator apiIntegrator = new ApiIntegrator(stubRegistry.getUrl(), API_KEY, options)) {
+            List<String> locations = apiIntegrator.createEntities(createEntityDtos());
+            stubRegistry.setTimeoutMillis(HELD_REQUEST_MILLIS);
+            stubRegistry.stallNextResponses(1);
+            apiIntegrator.updateEntities(updateEntityDtos(locations));
+
+            assertThat(stubRegistry.getInjectedFaultCount(), is(equalTo(1)));
+            assertThat(stubRegistry.getBulkRequestCount(), is(equalTo(3)));
+            assertThat(stubRegistry.getUpdateCount(), is(equalTo(2 * BATCH_SIZE)));
+        }
+    }
+
+    @Test
+    public void testCreatesCutOffWhileReadAreNotRetriedUntilClientIdsAreHonoured() throws IOException {
+        LoaderOptions options = retryOptions();
+        options.setRequestTimeoutMillis(REQUEST_TIMEOUT_MILLIS);
+        try (StubRegistry stubRegistry = new StubRegistry();
+             ApiIntegrator apiIntegrator = new ApiIntegrator(stubRegistry.getUrl(), API_KEY, options)) {
+            stubRegistry.setTimeoutMillis(HELD_REQUEST_MILLIS);
+            stubRegistry.stallNextResponses(1);
+            try {
+                apiIntegrator.createEntities(createEntityDtos());
+                fail("Expected ProcessingException");
+            } catch (ProcessingException e) {
+                assertThat(stubRegistry.getBulkRequestCount(), is(equalTo(1)));
+                assertThat(stubRegistry.getCreateCount(), is(equalTo(BATCH_SIZE)));
+            }
+        }
+    }
+
+    @Test
+    public void testRequestsWithAnotherApiKeyAreRefused() throws IOException {
+        try (StubRegistry stubRegistry = new StubRegistry();
+             ApiIntegrator apiIntegrator = new ApiIntegrator(stubRegistry.getUrl(), API_KEY, retryOptions())) {
+            stubRegistry.setApiKey(OTHER_API_KEY);
+
+            assertThat(apiIntegrator.createEntity(UUID.randomUUID().toString(), BODY), is(nullValue()));
+            assertThat(stubRegistry.getUnauthorizedCount(), is(equalTo(1)));
+            assertThat(stubRegistry.getCreateCount(), is(equalTo(0)));
+        }
+    }
+
+    @Test
+    public void testRetryAfterIsHonoured() throws IOException {
+        try (StubRegistry stubRegistry = new StubRegistry();
+             ApiIntegrator apiIntegrator = new ApiIntegrator(stubRegistry.getUrl(), API_KEY, retryOptions())) {
+            apiIntegrator.setClientIdsHonoured(true);
+            stubRegistry.failNextRequests(1, TOO_MANY_REQUESTS, RETRY_AFTER_SECONDS);
+            long start = System.nanoTime();
+            String location = apiIntegrator.createEntity(UUID.randomUUID().toString(), BODY);
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertTrue(Objects.nonNull(location));
+            assertTrue(elapsedMillis >= TimeUnit.SECONDS.toMillis(Long.parseLong(RETRY_AFTER_SECONDS)));
+        }
+    }
+
+    @Test
+    public void testCreateWithoutClientSuppliedIdIsNotRetried() throws IOException {
+        try (StubRegistry stubRegistry = new StubRegistry();
+             ApiIntegrator apiIntegrator = new ApiIntegrator(stubRegistry.getUrl(), API_KEY, retryOptions())) {
+            apiIntegrator.setClientIdsHonoured(true);
+            stubRegistry.failNextRequests(1, SERVICE_UNAVAILABLE, null);
+
+            assertThat(apiIntegrator.createEntity(null, BODY), is(nullValue()));
+            assertThat(stubRegistry.getRequestCount(), is(equalTo(1)));
+        }
+    }
+
+    @Test
+    public void testCreateIsNotRetriedUntilClientIdsAreHonoured() throws IOException {
+        try (StubRegistry stubRegistry = new StubRegistry();
+             ApiIntegrator apiIntegrator = new ApiIntegrator(stubRegistry.getUrl(), API_KEY, retryOptions())) {
+            stubRegistry.failNextRequests(1, StubRegistry.Fault.DROPPED_CONNECTION);
+            try {
+                apiIntegrator.createEntity(UUID.randomUUID().toString(), BODY);
+                fail("Expected ProcessingException");
+            } catch (ProcessingException e) {
+                assertThat(stubRegistry.getRequestCount(), is(equalTo(1)));
+                assertThat(stubRegistry.getCreateCount(), is(equalTo(0)));
+            }
+        }
+    }
+
+    @Test
+    public void testUpdateFailsWhenRetriesAreExhausted() throws IOException {
+        LoaderOptions options = retryOptions();
+        try (StubRegistry stubRegistry = new StubRegistry();
+             ApiIntegrator apiIntegrator = new ApiIntegrator(stubRegistry.getUrl(), API_KEY, options)) {
+            stubRegistry.failNextRequests(REQUEST_COUNT, SERVICE_UNAVAILABLE, null);
+            try {
+                apiIntegrator.updateEntity(UUID.randomUUID().toString(), BODY);
+                fail();
+            } catch (RuntimeException e) {
+                assertThat(stubRegistry.getRequestCount(), is(equalTo(options.getMaxRetries() + 1)));
+            }
+        }
+    }
+
+    @Test
+    public void testRequestRateIsLimited() throws IOException {
+        LoaderOptions options = new LoaderOptions();
+        options.setMaxRequestsPerSecond(MAX_REQUESTS_PER_SECOND);
+        options.setAdaptiveConcurrency(true);
+        options.setConcurrency(CONCURRENCY);
+        List<Integer> items = IntStream.range(0, REQUEST_COUNT).boxed().collect(Collectors.toList());
+
+        try (StubRegistry stubRegistry = new StubRegistry();
+             ApiIntegrator apiIntegrator = new ApiIntegrator(stubRegistry.getUrl(), API_KEY, options);
+             ConcurrentUploader uploader = new ConcurrentUploader(CONCURRENCY)) {
+            long start = System.nanoTime();
+            uploader.execute(items, item -> apiIntegrator.createEntity(UUID.randomUUID().toString(), BODY),
+                    (position, location) -> { });
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertThat(stubRegistry.getCreateCount(), is(equalTo(REQUEST_COUNT)));
+            assertTrue(elapsedMillis >= (REQUEST_COUNT - MAX_REQUESTS_PER_SECOND) * 1000 / MAX_REQUESTS_PER_SECOND * 9 / 10);
+            assertTrue(apiIntegrator.getConcurrencyLimit() <= CONCURRENCY);
+        }
+    }
+
+    @Test
+    public void testAsyncRequestsArePendingOnPooledConnections() throws IOException {
+        LoaderOptions options = new LoaderOptions();
+        options.setMaxConnectionsPerRoute(MAX_CONNECTIONS);
+
+        try (StubRegistry stubRegistry = new StubRegistry();
+             ApiIntegrator apiIntegrator = new ApiIntegrator(stubRegistry.getUrl(), API_KEY, options)) {
+            List<CompletableFuture<String>> locations = IntStream.range(0, ASYNC_REQUEST_COUNT)
+                    .mapToObj(i -> apiIntegrator.createEntityAsync(UUID.randomUUID().toString(), BODY)
+                            .toCompletableFuture())
+                    .collect(Collectors.toList());
+            List<CompletableFuture<String>> etags = locations.stream()
+                    .map(location -> location.thenCompose(url -> apiIntegrator.updateEntityAsync(
+                            url.substring(url.lastIndexOf(PATH_SEPARATOR) + 1), BODY, null)).toCompletableFuture())
+                    .collect(Collectors.toList());
+            CompletableFuture.allOf(etags.toArray(new CompletableFuture<?>[0])).join();
+
+            assertThat(stubRegistry.getCreateCount(), is(equalTo(ASYNC_REQUEST_COUNT)));
+            assertThat(stubRegistry.getUpdateCount(), is(equalTo(ASYNC_REQUEST_COUNT)));
+            assertTrue(stubRegistry.getConnectionCount() <= MAX_CONNECTIONS);
+        }
+    }
+
+    @Test
+    public void testAsyncBulkRequestsCreateAndUpdateAllEntities() throws IOException {
+        try (StubRegistry stubRegistry = new StubRegistry();
+             ApiIntegrator apiIntegrator = new ApiIntegrator(stubRegistry.getUrl(), API_KEY)) {
+            stubRegistry.setBulkItemFailureInterval(BULK_ITEM_FAILURE_INTERVAL);
+            List<String> locations = apiIntegrator.createEntitiesAsync(createEntityDtos()).toCompletableFuture()
+                    .join();
+            apiIntegrator.updateEntitiesAsync(updateEntityDtos(locations)).toCompletableFuture().join();
+
+            assertTrue(locations.stream().allMatch(Objects::nonNull));
+            assertThat(stubRegistry.getCreateCount(), is(equalTo(BATCH_SIZE)));
+            assertThat(stubRegistry.getUpdateCount(), is(equalTo(BATCH_SIZE)));
+        }
+    }
+
+    @Test
+    public void testAsyncTransientFailuresAreRetried() throws IOException {
+        try (StubRegistry stubRegistry = new StubRegistry();
+             ApiIntegrator apiIntegrator = new ApiIntegrator(stubRegistry.getUrl(), API_KEY, retryOptions())) {
+            apiIntegrator.setClientIdsHonoured(true);
+            stubRegistry.failNextRequests(TRANSIENT_FAILURES, SERVICE_UNAVAILABLE, null);
+            String location = apiIntegrator.createEntityAsync(UUID.randomUUID().toString(), BODY)
+                    .toCompletableFuture().join();
+
+            assertTrue(Objects.nonNull(location));
+            assertThat(stubRegistry.getCreateCount(), is(equalTo(1)));
+            assertThat(stubRegistry.getRequestCount(), is(equalTo(TRANSIENT_FAILURES + 1)));
+        }
+    }
+
+    @Test
+    public void testAsyncResponsesCutOffWhileReadAreRetried() throws IOException {
+        LoaderOptions options = retryOptions();
+        options.setRequestTimeoutMillis(REQUEST_TIMEOUT_MILLIS);
+        try (StubRegistry stubRegistry = new StubRegistry();
+             ApiIntegrator apiIntegrator = new ApiIntegrator(stubRegistry.getUrl(), API_KEY, options)) {
+            apiIntegrator.setClientIdsHonoured(true);
+            stubRegistry.setTimeoutMillis(HELD_REQUEST_MILLIS);
+            stubRegistry.stallNextResponses(1);
+            List<String> locations = apiIntegrator.createEntitiesAsync(createEntityDtos()).toCompletableFuture()
+                    .join();
+
+            assertTrue(locations.stream().allMatch(Objects::nonNull));
+            assertThat(stubRegistry.getInjectedFaultCount(), is(equalTo(1)));
+            assertThat(stubRegistry.getBulkRequestCount(), is(equalTo(2)));
+        }
+    }
+
+    @Test
+    public void testCancelledAsyncRequestIsNotRetried() throws IOException, InterruptedException {
+        try (StubRegistry stubRegistry = new StubRegistry();
+             ApiIntegrator apiIntegrator = new ApiIntegrator(stubRegistry.getUrl(), API_KEY, retryOptions())) {
+            apiIntegrator.setClientIdsHonoured(true);
+            stubRegistry.failNextRequests(1, TOO_MANY_REQUESTS, RETRY_AFTER_SECONDS);
+            CompletableFuture<String> location = apiIntegrator.createEntityAsync(UUID.randomUUID().toString(), BODY)
+                    .toCompletableFuture();
+            while (stubRegistry.getRequestCount() == 0) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+            location.cancel(true);
+            TimeUnit.MILLISECONDS.sleep(CANCELLED_RETRY_WAIT_MILLIS);
+
+            assertTrue(location.isCancelled());
+            assertThat(stubRegistry.getRequestCount(), is(equalTo(1)));
+            assertThat(stubRegistry.getCreateCount(), is(equalTo(0)));
+        }
+    }
+
+    private LoaderOptions retryOptions() {
+        LoaderOptions options = new LoaderOptions();
+        options.setRetryDelayMillis(1);
+        options.setBreakerThresholdPercent(0);
+        return options;
+    }
+
+    private List<EntityDto> createEntityDtos() {
+        return IntStream.range(0, BATCH_SIZE)
+                .mapToObj(i -> entityDto(UUID.randomUUID().toString()))
+                .collect(Collectors.toList());
+    }
+
+    private List<EntityDto> updateEntityDtos(List<String> locations) {
+        return locations.stream()
+                .map(location -> entityDto(location.substring(location.lastIndexOf(PATH_SEPARATOR) + 1)))
+                .collect(Collectors.toList());
+    }
+
+    private EntityDto entityDto(String id) {
+        EntityDto entityDto = new EntityDto();
+        entityDto.setId(id);
+        entityDto.setBody(BODY);
+        return entityDto;
+    }
+}
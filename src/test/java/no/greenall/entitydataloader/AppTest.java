@@ -46,6 +46,16 @@ public class AppTest {
         App.main(args);
     }
 
+    @Test
+    public void testJournalCannotBeCombinedWithResume() {
+        exceptionRule.expect(RuntimeException.class);
+        exceptionRule.expectMessage("--journal cannot be combined with --resume");
+
+        String[] args = {"-u=http://example.org", "-k=123", "-i=file.ttl", "--journal=a.journal",
+                "--resume=b.journal"};
+        App.main(args);
+    }
+
     @Test
     public void testNoInputFile() throws IOException {
         String helpResponse = getTextFromFile(MISSING_REQUIRED_OPTION_INPUT_FILE_TXT);
@@ -1,14 +1,507 @@
 package no.greenall.entitydataloader;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import no.greenall.entitydataloader.entity.EntityDataManager;
+import no.greenall.entitydataloader.entity.ReferencePolicy;
+import no.greenall.entitydataloader.shard.Shard;
+import no.greenall.entitydataloader.spool.SpoolReplayer;
+import no.greenall.entitydataloader.util.CollectionFiles;
+import no.greenall.entitydataloader.util.StubRegistry;
+import org.apache.jena.riot.Lang;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import picocli.CommandLine;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class EntityDataManagerTest {
 
+    private static final String HUMORD_MINI_TTL = "humord-mini.ttl";
+    private static final String API_KEY = "123";
+    private static final String JOURNAL_FILE = "load.journal";
+    private static final String HUMORD_LINKED_TTL = "humord-linked.ttl";
+    private static final String HUMORD_NAMESPACE = "http://data.ub.uio.no/humord/";
+    private static final int LINKED_CONCEPTS = 3;
+    private static final String ENTITY_PATH = "/entity/";
+    private static final String METRICS_FILE = "metrics.json";
+    private static final String HUMORD_DANGLING_TTL = "humord-dangling.ttl";
+    private static final String MISSING_CONCEPT = "http://data.ub.uio.no/humord/c10775";
+    private static final String HUMORD_SHAPES_TTL = "humord-shapes.ttl";
+    private static final String UNLABELLED_TTL = "humord-unlabelled.ttl";
+    private static final String LABEL_STATEMENT = "unit:preferredLabel   \"Touo sprak\"@nb ;";
+    private static final String SNAPSHOT_FILE = "load.snapshot";
+    private static final String CHANGED_TTL = "humord-linked-changed.ttl";
+    private static final String LABEL = "Touo sprak";
+    private static final String CHANGED_LABEL = "Touo spr\u00e5k";
+    private static final String SHARD_DIRECTORY = "shards";
+    private static final int SHARDS = 2;
+    private static final String SPOOL_FILE = "load.spool";
+    private static final String PREPARED_URL = "http://prepared.example.org/";
+    private static final String CACHE_DIRECTORY = "cache";
+    private static final String COLLECTIONS_DIRECTORY = "collections";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     @Test
     public void testEntityDataManager() throws IOException {
-//        EntityDataManager entityDataManager = new EntityDataManager("humord.ttl", Lang.TURTLE);
+        String filepath = getClass().getClassLoader().getResource(HUMORD_MINI_TTL).getPath();
+
+        try (StubRegistry stubRegistry = new StubRegistry()) {
+            new EntityDataManager(filepath, Lang.TURTLE, stubRegistry.getUrl().toString(), API_KEY);
+
+            assertThat(stubRegistry.getCreateCount(), is(equalTo(1)));
+            assertThat(stubRegistry.getUpdateCount(), is(equalTo(1)));
+        }
+    }
+
+    @Test
+    public void testEntityDataManagerStreaming() throws IOException {
+        String filepath = getClass().getClassLoader().getResource(HUMORD_MINI_TTL).getPath();
+        LoaderOptions options = new LoaderOptions();
+        options.setStreaming(true);
+
+        try (StubRegistry stubRegistry = new StubRegistry()) {
+            new EntityDataManager(filepath, Lang.TURTLE, stubRegistry.getUrl().toString(), API_KEY, options);
+
+            assertThat(stubRegistry.getCreateCount(), is(equalTo(1)));
+            assertThat(stubRegistry.getUpdateCount(), is(equalTo(1)));
+        }
+    }
+
+    @Test
+    public void testEntityDataManagerResumesFromJournal() throws IOException {
+        String filepath = getClass().getClassLoader().getResource(HUMORD_MINI_TTL).getPath();
+        LoaderOptions options = new LoaderOptions();
+        options.setJournalPath(new File(temporaryFolder.getRoot(), JOURNAL_FILE).getPath());
+
+        try (StubRegistry stubRegistry = new StubRegistry()) {
+            new EntityDataManager(filepath, Lang.TURTLE, stubRegistry.getUrl().toString(), API_KEY, options);
+            options.setResume(true);
+            new EntityDataManager(filepath, Lang.TURTLE, stubRegistry.getUrl().toString(), API_KEY, options);
+
+            assertThat(stubRegistry.getCreateCount(), is(equalTo(1)));
+            assertThat(stubRegistry.getUpdateCount(), is(equalTo(1)));
+        }
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testResumeWithoutJournalFails() throws IOException {
+        String filepath = getClass().getClassLoader().getResource(HUMORD_MINI_TTL).getPath();
+        LoaderOptions options = new LoaderOptions();
+        options.setJournalPath(new File(temporaryFolder.getRoot(), JOURNAL_FILE).getPath());
+        options.setResume(true);
+
+        try (StubRegistry stubRegistry = new StubRegistry()) {
+            new EntityDataManager(filepath, Lang.TURTLE, stubRegistry.getUrl().toString(), API_KEY, options);
+        }
+    }
+
+    @Test
+    public void testSinglePassSendsEachEntityOnceWithRewrittenReferences() throws IOException {
+        String filepath = getClass().getClassLoader().getResource(HUMORD_LINKED_TTL).getPath();
+        LoaderOptions options = new LoaderOptions();
+        options.setSinglePass(true);
+
+        try (StubRegistry stubRegistry = new StubRegistry()) {
+            new EntityDataManager(filepath, Lang.TURTLE, stubRegistry.getUrl().toString(), API_KEY, options);
+
+            assertThat(stubRegistry.getCreateCount(), is(equalTo(LINKED_CONCEPTS)));
+            assertThat(stubRegistry.getUpdateCount(), is(equalTo(0)));
+            assertReferencesPointToRegistry(stubRegistry);
+        }
+    }
+
+    @Test
+    public void testSinglePassFallsBackWhenRegistryChoosesIds() throws IOException {
+        String filepath = getClass().getClassLoader().getResource(HUMORD_LINKED_TTL).getPath();
+        LoaderOptions options = new LoaderOptions();
+        options.setSinglePass(true);
+
+        try (StubRegistry stubRegistry = new StubRegistry()) {
+            stubRegistry.setHonourClientIds(false);
+            new EntityDataManager(filepath, Lang.TURTLE, stubRegistry.getUrl().toString(), API_KEY, options);
+
+            assertThat(stubRegistry.getCreateCount(), is(equalTo(LINKED_CONCEPTS)));
+            assertThat(stubRegistry.getUpdateCount(), is(equalTo(LINKED_CONCEPTS)));
+            assertReferencesPointToRegistry(stubRegistry);
+        }
+    }
+
+    @Test
+    public void testSinglePassUpdatesEntitiesWhenALaterPredictionFails() throws IOException {
+        assertLaterPredictionFailureIsUpdated(false);
+    }
+
+    @Test
+    public void testAsyncSinglePassUpdatesEntitiesWhenALaterPredictionFails() throws IOException {
+        assertLaterPredictionFailureIsUpdated(true);
+    }
+
+    private void assertLaterPredictionFailureIsUpdated(boolean async) throws IOException {
+        String filepath = getClass().getClassLoader().getResource(HUMORD_LINKED_TTL).getPath();
+        LoaderOptions options = new LoaderOptions();
+        options.setSinglePass(true);
+        options.setBatchSize(1);
+        options.setAsync(async);
+
+        try (StubRegistry stubRegistry = new StubRegistry()) {
+            stubRegistry.stopHonouringClientIdsAfter(1);
+            new EntityDataManager(filepath, Lang.TURTLE, stubRegistry.getUrl().toString(), API_KEY, options);
+
+            assertThat(stubRegistry.getCreateCount(), is(equalTo(LINKED_CONCEPTS)));
+            assertThat(stubRegistry.getUpdateCount(), is(equalTo(LINKED_CONCEPTS)));
+            assertReferencesPointToRegistry(stubRegistry);
+            assertReferencesPointToEntities(stubRegistry);
+        }
+    }
+
+    @Test
+    public void testSnapshotSkipsUnchangedEntities() throws IOException {
+        String filepath = getClass().getClassLoader().getResource(HUMORD_LINKED_TTL).getPath();
+        LoaderOptions options = snapshotOptions();
+
+        try (StubRegistry stubRegistry = new StubRegistry()) {
+            new EntityDataManager(filepath, Lang.TURTLE, stubRegistry.getUrl().toString(), API_KEY, options);
+            new EntityDataManager(filepath, Lang.TURTLE, stubRegistry.getUrl().toString(), API_KEY, options);
+
+            assertThat(stubRegistry.getCreateCount(), is(equalTo(LINKED_CONCEPTS)));
+            assertThat(stubRegistry.getUpdateCount(), is(equalTo(LINKED_CONCEPTS)));
+        }
+    }
+
+    @Test
+    public void testSnapshotUpdatesOnlyChangedEntities() throws IOException {
+        String filepath = getClass().getClassLoader().getResource(HUMORD_LINKED_TTL).getPath();
+        LoaderOptions options = snapshotOptions();
+
+        try (StubRegistry stubRegistry = new StubRegistry()) {
+            new EntityDataManager(filepath, Lang.TURTLE, stubRegistry.getUrl().toString(), API_KEY, options);
+            new EntityDataManager(changedInput(filepath), Lang.TURTLE, stubRegistry.getUrl().toString(), API_KEY,
+                    options);
+
+            assertThat(stubRegistry.getCreateCount(), is(equalTo(LINKED_CONCEPTS)));
+            assertThat(stubRegistry.getUpdateCount(), is(equalTo(LINKED_CONCEPTS + 1)));
+            assertTrue(stubRegistry.getEntities().values().stream().anyMatch(body -> body.contains(CHANGED_LABEL)));
+        }
+    }
+
+    @Test
+    public void testSnapshotDropsConceptsRemovedFromInput() throws IOException {
+        String linkedFilepath = getClass().getClassLoader().getResource(HUMORD_LINKED_TTL).getPath();
+        String miniFilepath = getClass().getClassLoader().getResource(HUMORD_MINI_TTL).getPath();
+        LoaderOptions options = snapshotOptions();
+
+        try (StubRegistry stubRegistry = new StubRegistry()) {
+            new EntityDataManager(linkedFilepath, Lang.TURTLE, stubRegistry.getUrl().toString(), API_KEY, options);
+            new EntityDataManager(miniFilepath, Lang.TURTLE, stubRegistry.getUrl().toString(), API_KEY, options);
+
+            assertThat(stubRegistry.getCreateCount(), is(equalTo(LINKED_CONCEPTS)));
+        }
+        String snapshot = new String(Files.readAllBytes(Paths.get(options.getSnapshotPath())),
+                StandardCharsets.UTF_8);
+        assertTrue(snapshot.contains(HUMORD_NAMESPACE + "c27724-2\t"));
+        assertFalse(snapshot.contains(HUMORD_NAMESPACE + "c10775\t"));
+        assertFalse(snapshot.contains(HUMORD_NAMESPACE + "c27725\t"));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testSnapshotRefusesToOverwriteEntityChangedInRegistry() throws IOException {
+        String filepath = getClass().getClassLoader().getResource(HUMORD_LINKED_TTL).getPath();
+        LoaderOptions options = snapshotOptions();
+
+        try (StubRegistry stubRegistry = new StubRegistry()) {
+            new EntityDataManager(filepath, Lang.TURTLE, stubRegistry.getUrl().toString(), API_KEY, options);
+            for (Map.Entry<String, String> entity : stubRegistry.getEntities().entrySet()) {
+                if (entity.getValue().contains(LABEL)) {
+                    stubRegistry.changeEntity(entity.getKey(), "{}");
+                }
+            }
+            new EntityDataManager(changedInput(filepath), Lang.TURTLE, stubRegistry.getUrl().toString(), API_KEY,
+                    options);
+        }
+    }
+
+    private LoaderOptions snapshotOptions() {
+        LoaderOptions options = new LoaderOptions();
+        options.setSnapshotPath(new File(temporaryFolder.getRoot(), SNAPSHOT_FILE).getPath());
+        return options;
+    }
+
+    private String changedInput(String filepath) throws IOException {
+        String input = new String(Files.readAllBytes(Paths.get(filepath)), StandardCharsets.UTF_8);
+        Path changed = new File(temporaryFolder.getRoot(), CHANGED_TTL).toPath();
+        Files.write(changed, input.replace(LABEL, CHANGED_LABEL).getBytes(StandardCharsets.UTF_8));
+        return changed.toString();
+    }
+
+    @Test
+    public void testDanglingReferencesFailBeforeAnyEntityIsCreated() throws IOException {
+        String filepath = getClass().getClassLoader().getResource(HUMORD_DANGLING_TTL).getPath();
+        LoaderOptions options = new LoaderOptions();
+        options.setReferencePolicy(ReferencePolicy.FAIL);
+
+        try (StubRegistry stubRegistry = new StubRegistry()) {
+            try {
+                new EntityDataManager(filepath, Lang.TURTLE, stubRegistry.getUrl().toString(), API_KEY, options);
+                fail();
+            } catch (RuntimeException e) {
+                assertThat(stubRegistry.getRequestCount(), is(equalTo(0)));
+            }
+        }
+    }
+
+    @Test
+    public void testDanglingReferencesAreDropped() throws IOException {
+        String filepath = getClass().getClassLoader().getResource(HUMORD_DANGLING_TTL).getPath();
+        LoaderOptions options = new LoaderOptions();
+        options.setReferencePolicy(ReferencePolicy.DROP);
+
+        try (StubRegistry stubRegistry = new StubRegistry()) {
+            new EntityDataManager(filepath, Lang.TURTLE, stubRegistry.getUrl().toString(), API_KEY, options);
+
+            assertThat(stubRegistry.getCreateCount(), is(equalTo(1)));
+            assertFalse(stubRegistry.getEntities().values().stream().anyMatch(body -> body.contains(MISSING_CONCEPT)));
+        }
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testNonConformingConceptsFailBeforeAnyEntityIsCreated() throws IOException {
+        LoaderOptions options = new LoaderOptions();
+        options.setShapesPath(getClass().getClassLoader().getResource(HUMORD_SHAPES_TTL).getPath());
+
+        try (StubRegistry stubRegistry = new StubRegistry()) {
+            try {
+                new EntityDataManager(unlabelledInput(), Lang.TURTLE, stubRegistry.getUrl().toString(), API_KEY,
+                        options);
+                fail();
+            } catch (RuntimeException e) {
+                assertThat(stubRegistry.getRequestCount(), is(equalTo(0)));
+            }
+        }
+    }
+
+    @Test
+    public void testOnlyConformingConceptsAreLoaded() throws IOException {
+        LoaderOptions options = new LoaderOptions();
+        options.setShapesPath(getClass().getClassLoader().getResource(HUMORD_SHAPES_TTL).getPath());
+        options.setValidOnly(true);
+
+        try (StubRegistry stubRegistry = new StubRegistry()) {
+            new EntityDataManager(unlabelledInput(), Lang.TURTLE, stubRegistry.getUrl().toString(), API_KEY, options);
+
+            assertThat(stubRegistry.getCreateCount(), is(equalTo(LINKED_CONCEPTS - 1)));
+            assertThat(stubRegistry.getUpdateCount(), is(equalTo(LINKED_CONCEPTS - 1)));
+        }
+    }
+
+    private String unlabelledInput() throws IOException {
+        String filepath = getClass().getClassLoader().getResource(HUMORD_LINKED_TTL).getPath();
+        String input = new String(Files.readAllBytes(Paths.get(filepath)), StandardCharsets.UTF_8);
+        Path unlabelled = new File(temporaryFolder.getRoot(), UNLABELLED_TTL).toPath();
+        Files.write(unlabelled, input.replace(LABEL_STATEMENT, "").getBytes(StandardCharsets.UTF_8));
+        return unlabelled.toString();
+    }
+
+    @Test
+    public void testMetricsSummaryIsWritten() throws IOException {
+        String filepath = getClass().getClassLoader().getResource(HUMORD_MINI_TTL).getPath();
+        File metricsFile = new File(temporaryFolder.getRoot(), METRICS_FILE);
+        LoaderOptions options = new LoaderOptions();
+        options.setMetricsPath(metricsFile.getPath());
+
+        try (StubRegistry stubRegistry = new StubRegistry()) {
+            new EntityDataManager(filepath, Lang.TURTLE, stubRegistry.getUrl().toString(), API_KEY, options);
+        }
+
+        JsonNode metrics = new ObjectMapper().readTree(metricsFile);
+        assertThat(metrics.get("entitiesCreated").asInt(), is(equalTo(1)));
+        assertThat(metrics.get("entitiesUpdated").asInt(), is(equalTo(1)));
+        assertThat(metrics.get("requests").asInt(), is(equalTo(2)));
+        assertTrue(metrics.get("bytesSent").asLong() > 0);
+        assertThat(metrics.get("phases").get("parse").get("count").asInt(), is(equalTo(1)));
+        assertThat(metrics.get("phases").get("serialize").get("count").asInt(), is(equalTo(2)));
+        assertThat(metrics.get("phases").get("post").get("count").asInt(), is(equalTo(1)));
+        assertThat(metrics.get("phases").get("put").get("count").asInt(), is(equalTo(1)));
+    }
+
+    @Test
+    public void testAsyncLoadRewritesReferences() throws IOException {
+        String filepath = getClass().getClassLoader().getResource(HUMORD_LINKED_TTL).getPath();
+        LoaderOptions options = new LoaderOptions();
+        options.setAsync(true);
+        options.setConcurrency(LINKED_CONCEPTS);
+
+        try (StubRegistry stubRegistry = new StubRegistry()) {
+            new EntityDataManager(filepath, Lang.TURTLE, stubRegistry.getUrl().toString(), API_KEY, options);
+
+            assertThat(stubRegistry.getCreateCount(), is(equalTo(LINKED_CONCEPTS)));
+            assertThat(stubRegistry.getUpdateCount(), is(equalTo(LINKED_CONCEPTS)));
+            assertReferencesPointToRegistry(stubRegistry);
+        }
+    }
+
+    @Test
+    public void testShardsLoadDisjointSlicesAndShareMappings() throws Exception {
+        String filepath = getClass().getClassLoader().getResource(HUMORD_LINKED_TTL).getPath();
+        String shardDirectory = new File(temporaryFolder.getRoot(), SHARD_DIRECTORY).getPath();
+        ExecutorService shards = Executors.newFixedThreadPool(SHARDS);
+
+        try (StubRegistry stubRegistry = new StubRegistry()) {
+            List<Future<?>> results = new ArrayList<>();
+            for (int index = 1; index <= SHARDS; index++) {
+                LoaderOptions options = new LoaderOptions();
+                options.setShard(new Shard(index, SHARDS));
+                options.setShardDirectory(shardDirectory);
+                results.add(shards.submit(() -> new EntityDataManager(filepath, Lang.TURTLE,
+                        stubRegistry.getUrl().toString(), API_KEY, options)));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+
+            assertThat(stubRegistry.getCreateCount(), is(equalTo(LINKED_CONCEPTS)));
+            assertThat(stubRegistry.getUpdateCount(), is(equalTo(LINKED_CONCEPTS)));
+            assertReferencesPointToRegistry(stubRegistry);
+        } finally {
+            shards.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testShardStopsWaitingWhenAnotherShardFails() throws IOException, InterruptedException {
+        String filepath = getClass().getClassLoader().getResource(HUMORD_LINKED_TTL).getPath();
+        String shardDirectory = new File(temporaryFolder.getRoot(), SHARD_DIRECTORY).getPath();
+        LoaderOptions options = new LoaderOptions();
+        options.setShard(new Shard(1, SHARDS));
+        options.setShardDirectory(shardDirectory);
+        Files.createDirectories(Paths.get(shardDirectory));
+        Files.write(Paths.get(shardDirectory, "shard-2-of-2.failed"), new byte[0]);
+
+        try (StubRegistry stubRegistry = new StubRegistry()) {
+            new EntityDataManager(filepath, Lang.TURTLE, stubRegistry.getUrl().toString(), API_KEY, options);
+            fail();
+        } catch (RuntimeException e) {
+            assertThat(e.getMessage(), is(equalTo("Shard 2/2 failed, its entities cannot be referenced")));
+        }
+    }
+
+    @Test
+    public void testPreparedSpoolIsReplayedToAnotherRegistry() throws IOException {
+        String filepath = getClass().getClassLoader().getResource(HUMORD_LINKED_TTL).getPath();
+        String spoolPath = new File(temporaryFolder.getRoot(), SPOOL_FILE).getPath();
+        LoaderOptions options = new LoaderOptions();
+        options.setSpoolPath(spoolPath);
+        options.setCompressSpool(true);
+        new EntityDataManager(filepath, Lang.TURTLE, PREPARED_URL, null, options);
+
+        try (StubRegistry stubRegistry = new StubRegistry()) {
+            LoaderOptions replayOptions = new LoaderOptions();
+            replayOptions.setConcurrency(LINKED_CONCEPTS);
+            new SpoolReplayer(spoolPath, stubRegistry.getUrl().toString(), API_KEY, replayOptions);
+
+            assertThat(stubRegistry.getCreateCount(), is(equalTo(LINKED_CONCEPTS)));
+            assertThat(stubRegistry.getUpdateCount(), is(equalTo(0)));
+            assertReferencesPointToRegistry(stubRegistry);
+            for (String body : stubRegistry.getEntities().values()) {
+                assertFalse(body.contains(PREPARED_URL));
+            }
+
+            replayOptions.setReplayUpdates(true);
+            new SpoolReplayer(spoolPath, stubRegistry.getUrl().toString(), API_KEY, replayOptions);
+
+            assertThat(stubRegistry.getCreateCount(), is(equalTo(LINKED_CONCEPTS)));
+            assertThat(stubRegistry.getUpdateCount(), is(equalTo(LINKED_CONCEPTS)));
+        }
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testReplayStopsWhenRegistryChoosesIds() throws IOException {
+        String filepath = getClass().getClassLoader().getResource(HUMORD_LINKED_TTL).getPath();
+        String spoolPath = new File(temporaryFolder.getRoot(), SPOOL_FILE).getPath();
+        LoaderOptions options = new LoaderOptions();
+        options.setSpoolPath(spoolPath);
+
+        try (StubRegistry stubRegistry = new StubRegistry()) {
+            new EntityDataManager(filepath, Lang.TURTLE, stubRegistry.getUrl().toString(), null, options);
+            stubRegistry.setHonourClientIds(false);
+            new SpoolReplayer(spoolPath, stubRegistry.getUrl().toString(), API_KEY, new LoaderOptions());
+        }
+    }
+
+    @Test
+    public void testSecondLoadReadsParsedInputFromCache() throws IOException {
+        String filepath = getClass().getClassLoader().getResource(HUMORD_LINKED_TTL).getPath();
+        File cacheDirectory = new File(temporaryFolder.getRoot(), CACHE_DIRECTORY);
+        LoaderOptions options = new LoaderOptions();
+        options.setInputCache(true);
+        options.setCacheDirectory(cacheDirectory.getPath());
+
+        for (int load = 0; load < 2; load++) {
+            try (StubRegistry stubRegistry = new StubRegistry()) {
+                new EntityDataManager(filepath, Lang.TURTLE, stubRegistry.getUrl().toString(), API_KEY, options);
+
+                assertThat(stubRegistry.getCreateCount(), is(equalTo(LINKED_CONCEPTS)));
+                assertThat(stubRegistry.getUpdateCount(), is(equalTo(LINKED_CONCEPTS)));
+                assertReferencesPointToRegistry(stubRegistry);
+            }
+            assertThat(cacheDirectory.list().length, is(equalTo(1)));
+        }
+    }
+
+    @Test
+    public void testFilesOfDirectoryAreLoadedTogether() throws IOException {
+        File directory = CollectionFiles.write(getClass().getClassLoader().getResource(HUMORD_LINKED_TTL).getPath(),
+                new File(temporaryFolder.getRoot(), COLLECTIONS_DIRECTORY));
+        InputOptions inputOptions = CommandLine.populateCommand(new InputOptions(), "-i", directory.getPath());
+
+        try (StubRegistry stubRegistry = new StubRegistry()) {
+            new EntityDataManager(inputOptions.getInputFiles(), stubRegistry.getUrl().toString(), API_KEY,
+                    new LoaderOptions());
+
+            assertThat(stubRegistry.getCreateCount(), is(equalTo(LINKED_CONCEPTS)));
+            assertThat(stubRegistry.getUpdateCount(), is(equalTo(LINKED_CONCEPTS)));
+            assertReferencesPointToRegistry(stubRegistry);
+        }
+    }
+
+    private void assertReferencesPointToEntities(StubRegistry stubRegistry) {
+        Pattern entityUrl = Pattern.compile(Pattern.quote(stubRegistry.getUrl() + ENTITY_PATH) + "([0-9a-f-]+)");
+        for (String body : stubRegistry.getEntities().values()) {
+            Matcher matcher = entityUrl.matcher(body);
+            while (matcher.find()) {
+                assertTrue(stubRegistry.getEntities().containsKey(matcher.group(1)));
+            }
+        }
+    }
+
+    private void assertReferencesPointToRegistry(StubRegistry stubRegistry) {
+        for (String body : stubRegistry.getEntities().values()) {
+            assertFalse(body.contains(HUMORD_NAMESPACE));
+            assertTrue(body.contains(stubRegistry.getUrl().toString()));
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package no.greenall.entitydataloader;
+
+import no.greenall.entitydataloader.entity.InputFile;
+import no.greenall.entitydataloader.util.CollectionFiles;
+import org.apache.jena.riot.Lang;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import picocli.CommandLine;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertTrue;
+
+public class InputOptionsTest {
+
+    private static final String HUMORD_LINKED_TTL = "humord-linked.ttl";
+    private static final String COLLECTIONS_DIRECTORY = "collections";
+    private static final String NTRIPLES_GLOB = "*.nt";
+    private static final String EMPTY_GLOB = "*.trig";
+    private static final int LINKED_CONCEPTS = 3;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testDirectoryInputLeavesOutFilesOfUnknownSerialization() throws IOException {
+        List<InputFile> inputFiles = inputFiles("-i", writeCollections().getPath());
+
+        assertThat(inputFiles.size(), is(equalTo(LINKED_CONCEPTS)));
+        assertThat(inputFiles.get(0).getLang(), is(equalTo(Lang.TURTLE)));
+        assertThat(inputFiles.get(1).getLang(), is(equalTo(Lang.NTRIPLES)));
+        assertThat(inputFiles.get(2).getLang(), is(equalTo(Lang.RDFXML)));
+    }
+
+    @Test
+    public void testGlobInputSelectsMatchingFiles() throws IOException {
+        File directory = writeCollections();
+        List<InputFile> inputFiles = inputFiles("-i", new File(directory, NTRIPLES_GLOB).getPath());
+
+        assertThat(inputFiles.size(), is(equalTo(1)));
+        assertTrue(inputFiles.get(0).getPath().endsWith(".nt"));
+    }
+
+    @Test
+    public void testProvidedSerializationAppliesToEveryFile() throws IOException {
+        List<InputFile> inputFiles = inputFiles("-i", writeCollections().getPath(), "-s", "turtle");
+
+        assertThat(inputFiles.size(), is(equalTo(LINKED_CONCEPTS + 1)));
+        for (InputFile inputFile : inputFiles) {
+            assertThat(inputFile.getLang(), is(equalTo(Lang.TURTLE)));
+        }
+    }
+
+    @Test
+    public void testSingleFileSerializationIsRecognizedFromExtension() {
+        String filepath = getClass().getClassLoader().getResource(HUMORD_LINKED_TTL).getPath();
+        List<InputFile> inputFiles = inputFiles("-i", filepath);
+
+        assertThat(inputFiles.size(), is(equalTo(1)));
+        assertThat(inputFiles.get(0).getLang(), is(equalTo(Lang.TURTLE)));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testGlobMatchingNoFilesFails() throws IOException {
+        inputFiles("-i", new File(writeCollections(), EMPTY_GLOB).getPath());
+    }
+
+    private File writeCollections() throws IOException {
+        return CollectionFiles.write(getClass().getClassLoader().getResource(HUMORD_LINKED_TTL).getPath(),
+                new File(temporaryFolder.getRoot(), COLLECTIONS_DIRECTORY));
+    }
+
+    private static List<InputFile> inputFiles(String... args) {
+        return CommandLine.populateCommand(new InputOptions(), args).getInputFiles();
+    }
+}
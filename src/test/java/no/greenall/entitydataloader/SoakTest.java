@@ -0,0 +1,157 @@
+package no.greenall.entitydataloader;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import no.greenall.entitydataloader.entity.EntityDataManager;
+import no.greenall.entitydataloader.util.StubRegistry;
+import no.greenall.entitydataloader.util.SyntheticVocabulary;
+import org.apache.jena.riot.Lang;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.nonNull;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Whole loads of a synthetic vocabulary against a stub registry with a long-tailed latency and a share of failing
+ * requests, checking that every concept arrives exactly once, that every request beyond one per batch was a retry of
+ * the loader, that every fault was retried, and that the load keeps up a minimum rate. A request that takes longer
+ * than the timeout is retried although the stub carried it out, so its creates are replayed with the same ids.
+ *
+ * <p>The tests are skipped unless the system property {@code entitydataloader.soak.concepts} gives the size of the
+ * vocabulary, e.g. {@code ./gradlew test --tests '*SoakTest' -PsoakConcepts=100000}. The minimum rate in entities per
+ * second is set with {@code entitydataloader.soak.min-rate}. The request timeout is short, so that a response held up
+ * in the stub or in the loader, before or while its entity is read, is retried like a request that timed out.
+ */
+public class SoakTest {
+
+    private static final String CONCEPTS_PROPERTY = "entitydataloader.soak.concepts";
+    private static final String MIN_RATE_PROPERTY = "entitydataloader.soak.min-rate";
+    private static final String DEFAULT_MIN_RATE = "100";
+    private static final String API_KEY = "soak";
+    private static final int CONCURRENCY = 16;
+    private static final int BATCH_SIZE = 100;
+    private static final long MEDIAN_LATENCY_MILLIS = 5;
+    private static final double LATENCY_SIGMA = 1;
+    private static final double FAULT_RATE = 0.01;
+    private static final int REQUEST_TIMEOUT_MILLIS = 1000;
+    private static final long HELD_REQUEST_MILLIS = 1500;
+    private static final int MAX_RETRIES = 10;
+    private static final long RETRY_DELAY_MILLIS = 10;
+    private static final long MAX_RETRY_DELAY_MILLIS = 500;
+    private static final String METRICS_FILE = "soak-metrics.json";
+    private static final String SUMMARY_TEMPLATE = "Soak load: %d requests, %d retries, %d injected faults, %d "
+            + "replayed creates, at most %d requests in flight, %.1f entities/s";
+    private static final String RATE_TOO_LOW_TEMPLATE = "%.1f entities/s is below the minimum of %.1f";
+
+    @ClassRule
+    public static TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static int conceptCount;
+    private static File input;
+
+    @BeforeClass
+    public static void writeInput() throws IOException {
+        String concepts = System.getProperty(CONCEPTS_PROPERTY);
+        Assume.assumeTrue(nonNull(concepts));
+        conceptCount = Integer.parseInt(concepts);
+        input = SyntheticVocabulary.write(conceptCount, Lang.NTRIPLES, temporaryFolder.getRoot());
+    }
+
+    @Test
+    public void testLoadUnderLatencyAndFaults() throws IOException {
+        LoaderOptions options = soakOptions();
+        options.setAsync(true);
+
+        try (StubRegistry stubRegistry = startRegistry()) {
+            double rate = load(stubRegistry, options);
+            JsonNode metrics = new ObjectMapper().readTree(new File(options.getMetricsPath()));
+
+            assertThat(metrics.get("entitiesUpdated").asInt(), is(equalTo(conceptCount)));
+            assertTrue(stubRegistry.getUpdateCount() >= conceptCount);
+            assertLoadedOnce(stubRegistry, options, metrics, 2, rate);
+        }
+    }
+
+    @Test
+    public void testSinglePassLoadUnderLatencyAndFaults() throws IOException {
+        LoaderOptions options = soakOptions();
+        options.setSinglePass(true);
+
+        try (StubRegistry stubRegistry = startRegistry()) {
+            double rate = load(stubRegistry, options);
+            JsonNode metrics = new ObjectMapper().readTree(new File(options.getMetricsPath()));
+
+            assertThat(stubRegistry.getUpdateCount(), is(equalTo(0)));
+            assertLoadedOnce(stubRegistry, options, metrics, 1, rate);
+        }
+    }
+
+    private static LoaderOptions soakOptions() {
+        LoaderOptions options = new LoaderOptions();
+        options.setConcurrency(CONCURRENCY);
+        options.setMaxConnectionsPerRoute(CONCURRENCY);
+        options.setBatchSize(BATCH_SIZE);
+        options.setRequestTimeoutMillis(REQUEST_TIMEOUT_MILLIS);
+        options.setMaxRetries(MAX_RETRIES);
+        options.setRetryDelayMillis(RETRY_DELAY_MILLIS);
+        options.setMaxRetryDelayMillis(MAX_RETRY_DELAY_MILLIS);
+        options.setMetricsPath(new File(temporaryFolder.getRoot(), METRICS_FILE).getPath());
+        return options;
+    }
+
+    private static StubRegistry startRegistry() throws IOException {
+        StubRegistry stubRegistry = new StubRegistry();
+        stubRegistry.setApiKey(API_KEY);
+        stubRegistry.setKeepCreateRequestBodies(false);
+        stubRegistry.setLatency(MEDIAN_LATENCY_MILLIS, LATENCY_SIGMA);
+        stubRegistry.setTimeoutMillis(HELD_REQUEST_MILLIS);
+        stubRegistry.setFaults(FAULT_RATE, StubRegistry.Fault.values());
+        return stubRegistry;
+    }
+
+    /**
+     * @return The entities created and updated per second of the load
+     */
+    private static double load(StubRegistry stubRegistry, LoaderOptions options) {
+        long start = System.nanoTime();
+        new EntityDataManager(input.getPath(), Lang.NTRIPLES, stubRegistry.getUrl().toString(), API_KEY, options);
+        double seconds = (System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1);
+        return (stubRegistry.getCreateCount() + stubRegistry.getUpdateCount()) / seconds;
+    }
+
+    private static int bulkRequests() {
+        return (conceptCount + BATCH_SIZE - 1) / BATCH_SIZE;
+    }
+
+    /**
+     * @param phases The number of bulk requests the load sends for each batch
+     */
+    private static void assertLoadedOnce(StubRegistry stubRegistry, LoaderOptions options, JsonNode metrics,
+                                         int phases, double rate) {
+        double minRate = Double.parseDouble(System.getProperty(MIN_RATE_PROPERTY, DEFAULT_MIN_RATE));
+        int retries = metrics.get("retries").asInt();
+        System.out.println(String.format(SUMMARY_TEMPLATE, stubRegistry.getRequestCount(), retries,
+                stubRegistry.getInjectedFaultCount(), stubRegistry.getReplayedCreateCount(),
+                stubRegistry.getMaxRequestsInFlight(), rate));
+        assertThat(metrics.get("entitiesCreated").asInt(), is(equalTo(conceptCount)));
+        assertThat(stubRegistry.getEntities().size(), is(equalTo(conceptCount)));
+        assertThat(stubRegistry.getCreateCount() - stubRegistry.getReplayedCreateCount(), is(equalTo(conceptCount)));
+        assertThat(stubRegistry.getDuplicateCreateCount(), is(equalTo(0)));
+        assertThat(stubRegistry.getUnauthorizedCount(), is(equalTo(0)));
+        assertThat(stubRegistry.getRequestCount(), is(equalTo(phases * bulkRequests() + retries)));
+        assertTrue(retries >= stubRegistry.getInjectedFaultCount());
+        assertTrue(stubRegistry.getMaxRequestsInFlight() <= options.getMaxConnectionsPerRoute());
+        assertTrue(String.format(RATE_TOO_LOW_TEMPLATE, rate, minRate), rate >= minRate);
+    }
+}
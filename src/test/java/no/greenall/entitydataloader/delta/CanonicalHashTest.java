@@ -0,0 +1,65 @@
+package no.greenall.entitydataloader.delta;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+public class CanonicalHashTest {
+
+    private static final String EXAMPLE_NAMESPACE = "http://example.org/";
+    private static final String LABEL = "Austronesiske sprak";
+    private static final String LANGUAGE = "nb";
+
+    @Test
+    public void testHashDoesNotDependOnStatementOrderOrBlankNodeLabels() {
+        Model model = ModelFactory.createDefaultModel();
+        Resource concept = model.createResource(EXAMPLE_NAMESPACE + "concept");
+        concept.addProperty(property("label"), LABEL, LANGUAGE);
+        concept.addProperty(property("note"), model.createResource()
+                .addProperty(property("text"), "first note")
+                .addProperty(property("next"), model.createResource().addProperty(property("text"), "second note")));
+
+        Model reordered = ModelFactory.createDefaultModel();
+        Resource second = reordered.createResource().addProperty(property("text"), "second note");
+        Resource first = reordered.createResource();
+        first.addProperty(property("next"), second);
+        first.addProperty(property("text"), "first note");
+        Resource reorderedConcept = reordered.createResource(EXAMPLE_NAMESPACE + "concept");
+        reorderedConcept.addProperty(property("note"), first);
+        reorderedConcept.addProperty(property("label"), LABEL, LANGUAGE);
+
+        assertThat(CanonicalHash.of(reordered), is(equalTo(CanonicalHash.of(model))));
+    }
+
+    @Test
+    public void testHashChangesWithContent() {
+        Model model = ModelFactory.createDefaultModel();
+        model.createResource(EXAMPLE_NAMESPACE + "concept").addProperty(property("label"), LABEL, LANGUAGE);
+        Model changed = ModelFactory.createDefaultModel();
+        changed.createResource(EXAMPLE_NAMESPACE + "concept").addProperty(property("label"), LABEL, "nn");
+
+        assertThat(CanonicalHash.of(changed), is(not(equalTo(CanonicalHash.of(model)))));
+    }
+
+    @Test
+    public void testHashOfCyclicBlankNodesIsStable() {
+        Model model = ModelFactory.createDefaultModel();
+        Resource first = model.createResource();
+        Resource second = model.createResource();
+        first.addProperty(property("next"), second);
+        second.addProperty(property("next"), first);
+
+        assertThat(CanonicalHash.of(model), is(equalTo(CanonicalHash.of(model))));
+    }
+
+    private static Property property(String localName) {
+        return ModelFactory.createDefaultModel().createProperty(EXAMPLE_NAMESPACE, localName);
+    }
+}
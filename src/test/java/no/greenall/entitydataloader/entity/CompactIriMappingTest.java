@@ -0,0 +1,72 @@
+package no.greenall.entitydataloader.entity;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertTrue;
+
+public class CompactIriMappingTest {
+
+    private static final String CONCEPT_TEMPLATE = "http://data.ub.uio.no/humord/c%05d";
+    private static final String REGISTRY_ENTITY_URL = "https://registry.example.org/entity/";
+    private static final int MAPPINGS = 100_000;
+    private static final int MAX_BYTES_PER_MAPPING = 100;
+
+    @Test
+    public void testMappingsAreReadBackOnAndOffHeap() {
+        for (boolean offHeap : new boolean[]{false, true}) {
+            CompactIriMapping mapping = new CompactIriMapping(offHeap);
+            Map<String, String> expected = new HashMap<>();
+            for (int i = 0; i < MAPPINGS; i++) {
+                String sourceIRI = String.format(CONCEPT_TEMPLATE, i);
+                String replacementIRI = REGISTRY_ENTITY_URL + PredictedIriMapping.idFor(sourceIRI);
+                mapping.put(sourceIRI, replacementIRI);
+                expected.put(sourceIRI, replacementIRI);
+            }
+
+            for (Map.Entry<String, String> entry : expected.entrySet()) {
+                assertThat(mapping.get(entry.getKey()), is(equalTo(entry.getValue())));
+            }
+            assertThat(mapping.size(), is(equalTo(MAPPINGS)));
+            assertThat(mapping.get(String.format(CONCEPT_TEMPLATE, MAPPINGS)), is(nullValue()));
+            assertThat(mapping.get(REGISTRY_ENTITY_URL), is(nullValue()));
+            assertTrue(mapping.getFootprintBytes() / MAPPINGS < MAX_BYTES_PER_MAPPING);
+        }
+    }
+
+    @Test
+    public void testIrisThatAreNotCanonicalUuidsAreKeptAsWritten() {
+        CompactIriMapping mapping = new CompactIriMapping();
+        String uuid = UUID.randomUUID().toString();
+        String[] iris = {"urn:isbn:0451450523", "http://example.org/ontology#Concept", "http://example.org/spr\u00e5k",
+                "http://example.org/", "relative", REGISTRY_ENTITY_URL + uuid.toUpperCase(),
+                REGISTRY_ENTITY_URL + uuid, REGISTRY_ENTITY_URL + uuid + "x"};
+
+        for (String iri : iris) {
+            mapping.put(iri, iri);
+        }
+
+        for (String iri : iris) {
+            assertThat(mapping.get(iri), is(equalTo(iri)));
+        }
+    }
+
+    @Test
+    public void testLaterMappingReplacesEarlierOne() {
+        CompactIriMapping mapping = new CompactIriMapping();
+        String sourceIRI = String.format(CONCEPT_TEMPLATE, 1);
+
+        mapping.put(sourceIRI, REGISTRY_ENTITY_URL + "first");
+        mapping.put(sourceIRI, REGISTRY_ENTITY_URL + "second");
+
+        assertThat(mapping.get(sourceIRI), is(equalTo(REGISTRY_ENTITY_URL + "second")));
+        assertThat(mapping.size(), is(equalTo(1)));
+    }
+}
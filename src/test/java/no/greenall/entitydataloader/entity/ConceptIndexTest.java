@@ -0,0 +1,71 @@
+package no.greenall.entitydataloader.entity;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
+import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.junit.Test;
+
+import java.io.InputStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+public class ConceptIndexTest {
+
+    private static final String HUMORD_MINI_TTL = "humord-mini.ttl";
+    private static final String HUMORD_CONCEPT = "http://data.ub.uio.no/humord/c27724-2";
+    private static final String SYNTHETIC_CONCEPT_TEMPLATE = "http://data.ub.uio.no/humord/synthetic-%d";
+    private static final int SYNTHETIC_CONCEPT_COUNT = 500;
+
+    @Test
+    public void testDescriptionContainsOnlyTriplesOfItsConcept() {
+        ConceptIndex conceptIndex = new ConceptIndex(withSyntheticConcepts(readHumordMini()));
+
+        assertThat(conceptIndex.size(), is(equalTo(SYNTHETIC_CONCEPT_COUNT + 1)));
+        for (String conceptIRI : conceptIndex.getConceptIRIs()) {
+            StmtIterator statements = conceptIndex.getDescription(conceptIRI).listStatements();
+            while (statements.hasNext()) {
+                assertThat(statements.nextStatement().getSubject().getURI(), is(equalTo(conceptIRI)));
+            }
+        }
+    }
+
+    @Test
+    public void testPayloadSizeScalesWithConceptNotFile() {
+        Model humordMini = readHumordMini();
+        String singleFilePayload = EntityDataManager.modelToString(
+                new ConceptIndex(humordMini).getDescription(HUMORD_CONCEPT));
+
+        ConceptIndex largeIndex = new ConceptIndex(withSyntheticConcepts(readHumordMini()));
+        String largeFilePayload = EntityDataManager.modelToString(largeIndex.getDescription(HUMORD_CONCEPT));
+
+        assertThat(largeIndex.getDescription(HUMORD_CONCEPT).size(), is(equalTo(humordMini.size())));
+        assertThat(largeFilePayload.length(), is(equalTo(singleFilePayload.length())));
+    }
+
+    private Model readHumordMini() {
+        Model model = ModelFactory.createDefaultModel();
+        InputStream inputStream = getClass().getClassLoader().getResourceAsStream(HUMORD_MINI_TTL);
+        RDFDataMgr.read(model, inputStream, Lang.TURTLE);
+        return model;
+    }
+
+    private Model withSyntheticConcepts(Model model) {
+        Model synthetic = ModelFactory.createDefaultModel();
+        for (int i = 0; i < SYNTHETIC_CONCEPT_COUNT; i++) {
+            Resource concept = synthetic.createResource(String.format(SYNTHETIC_CONCEPT_TEMPLATE, i));
+            StmtIterator statements = model.listStatements(model.createResource(HUMORD_CONCEPT), null, (RDFNode) null);
+            while (statements.hasNext()) {
+                Statement statement = statements.nextStatement();
+                synthetic.add(concept, statement.getPredicate(), statement.getObject());
+            }
+        }
+        return model.add(synthetic);
+    }
+}
@@ -0,0 +1,73 @@
+package no.greenall.entitydataloader.entity;
+
+import no.greenall.entitydataloader.EntityDto;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.vocabulary.RDF;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertTrue;
+
+public class EntityPayloadWriterTest {
+
+    private static final String HUMORD_MINI_TTL = "humord-mini.ttl";
+    private static final String HUMORD_LINKED_TTL = "humord-linked.ttl";
+    private static final String EXAMPLE_NAMESPACE = "http://example.org/";
+
+    @Test
+    public void testPayloadIsIsomorphicWithGenericJsonLdWriter() {
+        for (String resource : new String[]{HUMORD_MINI_TTL, HUMORD_LINKED_TTL}) {
+            ConceptIndex conceptIndex = new ConceptIndex(read(resource));
+            for (ConceptDescription concept : conceptIndex) {
+                assertIsomorphicWithGenericWriter(concept.getModel());
+            }
+            assertIsomorphicWithGenericWriter(read(resource));
+        }
+    }
+
+    @Test
+    public void testPayloadKeepsLiteralsBlankNodesAndUnprefixedIris() {
+        Model model = ModelFactory.createDefaultModel();
+        model.setNsPrefix("unit", ConceptIndex.UNIT_ONTOLOGY_IRI);
+        Resource concept = model.createResource(EXAMPLE_NAMESPACE + "concept");
+        Property unprefixed = model.createProperty(EXAMPLE_NAMESPACE, "note");
+        concept.addProperty(RDF.type, ConceptIndex.CONCEPT);
+        concept.addProperty(RDF.type, model.createResource(EXAMPLE_NAMESPACE + "Term"));
+        concept.addProperty(unprefixed, "plain \"quoted\" text");
+        concept.addProperty(unprefixed, "norsk tekst", "nb");
+        concept.addLiteral(model.createProperty(ConceptIndex.UNIT_ONTOLOGY_IRI, "count"), 42L);
+        concept.addProperty(model.createProperty(ConceptIndex.UNIT_ONTOLOGY_IRI, "modified"),
+                model.createTypedLiteral("2014-12-30", XSDDatatype.XSDdate));
+        concept.addProperty(model.createProperty(ConceptIndex.UNIT_ONTOLOGY_IRI, "related"), model.createResource());
+        concept.addProperty(RDF.type, "not a class");
+
+        assertIsomorphicWithGenericWriter(model);
+    }
+
+    private void assertIsomorphicWithGenericWriter(Model model) {
+        StringWriter genericPayload = new StringWriter();
+        RDFDataMgr.write(genericPayload, model, Lang.JSONLD);
+
+        EntityDto expected = new EntityDto();
+        expected.setBody(genericPayload.toString());
+        EntityDto actual = new EntityDto();
+        actual.setBody(EntityPayloadWriter.write(model));
+
+        assertTrue(actual.getBody(), actual.isIsomorphic(expected));
+    }
+
+    private Model read(String resource) {
+        Model model = ModelFactory.createDefaultModel();
+        InputStream inputStream = getClass().getClassLoader().getResourceAsStream(resource);
+        RDFDataMgr.read(model, inputStream, Lang.TURTLE);
+        return model;
+    }
+}
@@ -0,0 +1,89 @@
+package no.greenall.entitydataloader.entity;
+
+import no.greenall.entitydataloader.util.SyntheticVocabulary;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class InputCacheTest {
+
+    private static final int VOCABULARY_SIZE = 100;
+    private static final String CACHE_DIRECTORY = "cache";
+    private static final String CHANGED_LABEL = "synthetic";
+    private static final String CHANGED_SAME_SIZE = "SYNTHETIC";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File input;
+    private String cacheDirectory;
+
+    @Before
+    public void writeInput() throws IOException {
+        input = SyntheticVocabulary.write(VOCABULARY_SIZE, Lang.TURTLE, temporaryFolder.getRoot());
+        cacheDirectory = new File(temporaryFolder.getRoot(), CACHE_DIRECTORY).getPath();
+    }
+
+    @Test
+    public void testCachedGraphIsReadInsteadOfInput() {
+        Model parsed = RDFDataMgr.loadModel(input.getPath(), Lang.TURTLE);
+        InputCache inputCache = new InputCache(cacheDirectory, input.getPath(), Lang.TURTLE);
+        assertFalse(inputCache.read(ModelFactory.createDefaultModel()));
+        assertTrue(inputCache.write(parsed));
+
+        Model cached = ModelFactory.createDefaultModel();
+        assertTrue(new InputCache(cacheDirectory, input.getPath(), Lang.TURTLE).read(cached));
+        assertTrue(cached.isIsomorphicWith(parsed));
+        assertThat(cached.getNsPrefixMap(), is(equalTo(parsed.getNsPrefixMap())));
+    }
+
+    @Test
+    public void testChangedInputInvalidatesCache() throws IOException {
+        writeCache();
+        String content = new String(Files.readAllBytes(input.toPath()), StandardCharsets.UTF_8);
+        Files.write(input.toPath(), content.replace(CHANGED_LABEL, CHANGED_SAME_SIZE).getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(input.toPath(), FileTime.fromMillis(input.lastModified() + 1000));
+
+        Model model = ModelFactory.createDefaultModel();
+        assertFalse(new InputCache(cacheDirectory, input.getPath(), Lang.TURTLE).read(model));
+        assertTrue(model.isEmpty());
+    }
+
+    @Test
+    public void testTouchedInputWithSameContentUsesCache() throws IOException {
+        writeCache();
+        Files.setLastModifiedTime(input.toPath(), FileTime.fromMillis(input.lastModified() + 1000));
+
+        assertTrue(new InputCache(cacheDirectory, input.getPath(), Lang.TURTLE).read(ModelFactory.createDefaultModel()));
+    }
+
+    @Test
+    public void testCacheIsKeptPerSerialization() {
+        writeCache();
+
+        assertFalse(new InputCache(cacheDirectory, input.getPath(), Lang.N3).read(ModelFactory.createDefaultModel()));
+    }
+
+    private void writeCache() {
+        InputCache inputCache = new InputCache(cacheDirectory, input.getPath(), Lang.TURTLE);
+        inputCache.read(ModelFactory.createDefaultModel());
+        inputCache.write(RDFDataMgr.loadModel(input.getPath(), Lang.TURTLE));
+    }
+}
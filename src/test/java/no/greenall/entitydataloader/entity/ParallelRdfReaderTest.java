@@ -0,0 +1,97 @@
+package no.greenall.entitydataloader.entity;
+
+import no.greenall.entitydataloader.util.SyntheticVocabulary;
+import no.greenall.entitydataloader.util.TestResources;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ParallelRdfReaderTest {
+
+    private static final int VOCABULARY_SIZE = 200;
+    private static final int THREADS = 4;
+    private static final long RANGE_BYTES = 1024;
+    private static final String BLANK_NODES_INPUT = "blank-nodes.nt";
+    private static final String LATE_PREFIX_INPUT = "late-prefix.ttl";
+    private static final String BLANK_NODE_VALUE_TEMPLATE = "_:b%d <http://example.org/value> \"%d\" .%n";
+    private static final String BLANK_NODE_REFERENCE_TEMPLATE =
+            "<http://example.org/s%d> <http://example.org/note> _:b%d .%n";
+    private static final String LATE_PREFIX_TEMPLATE = "@prefix ex: <http://example.org/%d/> .%n"
+            + "ex:s%d ex:value \"%d\" .%n";
+    private static final String SINGLE_THREAD_FALLBACK = "parsing it on a single thread";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Rule
+    public TestResources testResources = TestResources.getDefaultTestResource();
+
+    @Test
+    public void testNTriplesAreReadInRanges() throws IOException {
+        File input = SyntheticVocabulary.write(VOCABULARY_SIZE, Lang.NTRIPLES, temporaryFolder.getRoot());
+
+        assertReadAsOnSingleThread(input, Lang.NTRIPLES);
+    }
+
+    @Test
+    public void testTurtleIsReadInRangesWithPrefixes() throws IOException {
+        File input = SyntheticVocabulary.write(VOCABULARY_SIZE, Lang.TURTLE, temporaryFolder.getRoot());
+
+        Model parallel = assertReadAsOnSingleThread(input, Lang.TURTLE);
+        assertThat(parallel.getNsPrefixMap(), is(equalTo(RDFDataMgr.loadModel(input.getPath()).getNsPrefixMap())));
+        assertFalse(testResources.getStandardOutString().contains(SINGLE_THREAD_FALLBACK));
+    }
+
+    @Test
+    public void testBlankNodeLabelsAreSharedAcrossRanges() throws IOException {
+        StringBuilder triples = new StringBuilder();
+        for (int i = 0; i < VOCABULARY_SIZE; i++) {
+            triples.append(String.format(BLANK_NODE_VALUE_TEMPLATE, i, i));
+        }
+        for (int i = 0; i < VOCABULARY_SIZE; i++) {
+            triples.append(String.format(BLANK_NODE_REFERENCE_TEMPLATE, i, i));
+        }
+        File input = new File(temporaryFolder.getRoot(), BLANK_NODES_INPUT);
+        Files.write(input.toPath(), triples.toString().getBytes(StandardCharsets.UTF_8));
+
+        assertReadAsOnSingleThread(input, Lang.NTRIPLES);
+    }
+
+    @Test
+    public void testTurtleWithLatePrefixesIsReadOnSingleThread() throws IOException {
+        StringBuilder statements = new StringBuilder();
+        for (int i = 0; i < VOCABULARY_SIZE; i++) {
+            statements.append(String.format(LATE_PREFIX_TEMPLATE, i, i, i));
+        }
+        File input = new File(temporaryFolder.getRoot(), LATE_PREFIX_INPUT);
+        Files.write(input.toPath(), statements.toString().getBytes(StandardCharsets.UTF_8));
+
+        assertReadAsOnSingleThread(input, Lang.TURTLE);
+        assertTrue(testResources.getStandardOutString().contains(SINGLE_THREAD_FALLBACK));
+    }
+
+    private Model assertReadAsOnSingleThread(File input, Lang lang) {
+        Model parallel = ModelFactory.createDefaultModel();
+        ParallelRdfReader.read(parallel, input.getPath(), lang, THREADS, RANGE_BYTES);
+        Model expected = RDFDataMgr.loadModel(input.getPath(), lang);
+
+        assertThat(parallel.size(), is(equalTo(expected.size())));
+        assertTrue(parallel.isIsomorphicWith(expected));
+        return parallel;
+    }
+}
@@ -0,0 +1,49 @@
+package no.greenall.entitydataloader.entity;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.riot.RDFDataMgr;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ReferenceIndexTest {
+
+    private static final String HUMORD_LINKED_TTL = "humord-linked.ttl";
+    private static final String HUMORD_DANGLING_TTL = "humord-dangling.ttl";
+    private static final String HUMORD_SCHEME = "https://unit.no/systems#humord";
+    private static final String MISSING_CONCEPT = "http://data.ub.uio.no/humord/c10775";
+    private static final String DANGLING_CONCEPT = "http://data.ub.uio.no/humord/c27724-2";
+
+    @Test
+    public void testLinkedConceptsHaveNoDanglingReferences() {
+        ReferenceIndex referenceIndex = new ReferenceIndex(new ConceptIndex(read(HUMORD_LINKED_TTL)));
+
+        assertThat(referenceIndex.getDanglingReferenceCount(), is(equalTo(0)));
+        assertThat(referenceIndex.getExternalIRIs(), is(equalTo(Collections.singleton(HUMORD_SCHEME))));
+    }
+
+    @Test
+    public void testReferenceToMissingConceptIsDanglingAndCanBeDropped() {
+        ConceptIndex conceptIndex = new ConceptIndex(read(HUMORD_DANGLING_TTL));
+        ReferenceIndex referenceIndex = new ReferenceIndex(conceptIndex);
+
+        assertThat(referenceIndex.getDanglingIRIs(), is(equalTo(Collections.singleton(MISSING_CONCEPT))));
+        assertThat(referenceIndex.getDanglingReferenceCount(), is(equalTo(1)));
+        assertTrue(referenceIndex.report().contains(DANGLING_CONCEPT));
+
+        Model description = conceptIndex.getDescription(DANGLING_CONCEPT);
+        Model dropped = referenceIndex.withoutDanglingReferences(description);
+        assertThat(dropped.size(), is(equalTo(description.size() - 1)));
+        assertFalse(dropped.containsResource(dropped.createResource(MISSING_CONCEPT)));
+    }
+
+    private Model read(String resource) {
+        return RDFDataMgr.loadModel(getClass().getClassLoader().getResource(resource).getPath());
+    }
+}
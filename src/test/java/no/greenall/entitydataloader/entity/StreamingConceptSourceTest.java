@@ -0,0 +1,123 @@
+package no.greenall.entitydataloader.entity;
+
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.out.NodeFmtLib;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StreamingConceptSourceTest {
+
+    private static final String HUMORD_MINI_TTL = "humord-mini.ttl";
+    private static final String SYNTHETIC_CONCEPT_TEMPLATE = "<http://data.ub.uio.no/humord/synthetic-%d>";
+    private static final String HUMORD_CONCEPT = "<http://data.ub.uio.no/humord/c27724-2>";
+    private static final String SHUFFLED_INPUT = "shuffled.nt";
+    private static final String TRIPLE_TERMINATOR = " .";
+    private static final int SYNTHETIC_CONCEPT_COUNT = 20;
+    private static final int RUN_SIZE = 3;
+    private static final int MAX_FAN_IN = 4;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testUnorderedInputIsGroupedPerSubject() throws IOException {
+        File input = writeShuffledInput();
+
+        try (StreamingConceptSource conceptSource = new StreamingConceptSource(input.getPath(), Lang.NTRIPLES,
+                RUN_SIZE)) {
+            assertGroupedPerSubject(input, conceptSource);
+        }
+    }
+
+    @Test
+    public void testRunsAreMergedWithBoundedFanIn() throws IOException {
+        File input = writeShuffledInput();
+
+        try (StreamingConceptSource conceptSource = new StreamingConceptSource(
+                Collections.singletonList(new InputFile(input.getPath(), Lang.NTRIPLES)), RUN_SIZE, MAX_FAN_IN)) {
+            try (Stream<Path> runs = Files.list(conceptSource.getSpillDirectory())) {
+                assertTrue(runs.count() <= MAX_FAN_IN);
+            }
+            assertGroupedPerSubject(input, conceptSource);
+        }
+    }
+
+    @Test
+    public void testClosingTheSourceEndsAnAbandonedIteration() throws IOException {
+        File input = writeShuffledInput();
+        StreamingConceptSource conceptSource = new StreamingConceptSource(input.getPath(), Lang.NTRIPLES, RUN_SIZE);
+        Iterator<ConceptDescription> concepts = conceptSource.iterator();
+        concepts.next();
+
+        conceptSource.close();
+
+        assertFalse(concepts.hasNext());
+        assertFalse(Files.exists(conceptSource.getSpillDirectory()));
+    }
+
+    private void assertGroupedPerSubject(File input, StreamingConceptSource conceptSource) {
+        Model inputModel = RDFDataMgr.loadModel(input.getPath(), Lang.NTRIPLES);
+        ConceptIndex conceptIndex = new ConceptIndex(inputModel);
+
+        Map<String, Model> streamed = new HashMap<>();
+        for (ConceptDescription concept : conceptSource) {
+            streamed.put(concept.getConceptIRI(), concept.getModel());
+        }
+
+        assertThat(streamed.keySet(), is(equalTo(conceptIndex.getConceptIRIs())));
+        for (String conceptIRI : conceptIndex.getConceptIRIs()) {
+            assertTrue(streamed.get(conceptIRI).isIsomorphicWith(conceptIndex.getDescription(conceptIRI)));
+        }
+    }
+
+    private File writeShuffledInput() throws IOException {
+        Model humordMini = ModelFactory.createDefaultModel();
+        InputStream inputStream = getClass().getClassLoader().getResourceAsStream(HUMORD_MINI_TTL);
+        RDFDataMgr.read(humordMini, inputStream, Lang.TURTLE);
+
+        List<String> humordLines = humordMini.getGraph().find().toList().stream()
+                .map(this::toLine)
+                .collect(Collectors.toList());
+        List<String> lines = humordLines.stream()
+                .flatMap(line -> IntStream.range(0, SYNTHETIC_CONCEPT_COUNT)
+                        .mapToObj(i -> line.replace(HUMORD_CONCEPT, String.format(SYNTHETIC_CONCEPT_TEMPLATE, i))))
+                .collect(Collectors.toList());
+        lines.addAll(humordLines);
+        Collections.shuffle(lines, new Random(1));
+
+        File input = temporaryFolder.newFile(SHUFFLED_INPUT);
+        Files.write(input.toPath(), lines, StandardCharsets.UTF_8);
+        return input;
+    }
+
+    private String toLine(Triple triple) {
+        return NodeFmtLib.str(triple) + TRIPLE_TERMINATOR;
+    }
+}
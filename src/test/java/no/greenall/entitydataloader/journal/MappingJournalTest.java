@@ -0,0 +1,126 @@
+package no.greenall.entitydataloader.journal;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MappingJournalTest {
+
+    private static final String SOURCE_TEMPLATE = "http://example.org/concept/%d";
+    private static final String LOCATION_TEMPLATE = "http://registry.example.org/entity/%d";
+    private static final String JOURNAL_FILE = "load.journal";
+    private static final int ENTRIES = 2_500;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testReopenedJournalKeepsMappingsAndUpdates() throws IOException {
+        String journalPath = new File(temporaryFolder.getRoot(), JOURNAL_FILE).getPath();
+
+        try (MappingJournal journal = new MappingJournal(journalPath)) {
+            for (int i = 0; i < ENTRIES; i++) {
+                journal.put(source(i), location(i));
+                if (i % 2 == 0) {
+                    journal.recordUpdated(source(i));
+                }
+            }
+        }
+
+        try (MappingJournal journal = new MappingJournal(journalPath)) {
+            for (int i = 0; i < ENTRIES; i++) {
+                assertThat(journal.get(source(i)), is(equalTo(location(i))));
+                assertThat(journal.isUpdated(source(i)), is(i % 2 == 0));
+            }
+            assertThat(journal.get(source(ENTRIES)), is(nullValue()));
+            assertFalse(journal.containsKey(source(ENTRIES)));
+
+            journal.recordUpdated(source(1));
+            journal.put(source(ENTRIES), location(ENTRIES));
+        }
+
+        try (MappingJournal journal = new MappingJournal(journalPath)) {
+            assertTrue(journal.isUpdated(source(1)));
+            assertThat(journal.get(source(ENTRIES)), is(equalTo(location(ENTRIES))));
+        }
+    }
+
+    @Test
+    public void testCompactionKeepsTheLatestLocation() throws IOException {
+        String journalPath = new File(temporaryFolder.getRoot(), JOURNAL_FILE).getPath();
+
+        try (MappingJournal journal = new MappingJournal(journalPath)) {
+            journal.put(source(0), location(0));
+            journal.put(source(0), location(1));
+        }
+
+        for (int reopened = 0; reopened < 2; reopened++) {
+            try (MappingJournal journal = new MappingJournal(journalPath)) {
+                assertThat(journal.get(source(0)), is(equalTo(location(1))));
+            }
+        }
+    }
+
+    @Test
+    public void testOffHeapJournalKeepsMappingsAndUpdates() throws IOException {
+        String journalPath = new File(temporaryFolder.getRoot(), JOURNAL_FILE).getPath();
+
+        try (MappingJournal journal = new MappingJournal(journalPath, true)) {
+            journal.put(source(0), location(0));
+            journal.recordUpdated(source(0));
+
+            assertThat(journal.get(source(0)), is(equalTo(location(0))));
+            assertTrue(journal.isUpdated(source(0)));
+            assertFalse(journal.containsKey(source(1)));
+        }
+    }
+
+    @Test
+    public void testRecordsReachTheFileBeforeTheJournalIsClosed() throws IOException {
+        File journalFile = new File(temporaryFolder.getRoot(), JOURNAL_FILE);
+
+        try (MappingJournal journal = new MappingJournal(journalFile.getPath())) {
+            journal.put(source(0), location(0));
+            journal.recordUpdated(source(0));
+
+            assertThat(Files.readAllLines(journalFile.toPath(), StandardCharsets.UTF_8).size(), is(equalTo(2)));
+        }
+    }
+
+    @Test
+    public void testPartiallyWrittenLineIsIgnored() throws IOException {
+        File journalFile = new File(temporaryFolder.getRoot(), JOURNAL_FILE);
+
+        try (MappingJournal journal = new MappingJournal(journalFile.getPath())) {
+            journal.put(source(0), location(0));
+        }
+        Files.write(journalFile.toPath(), ("C\t" + source(1)).getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        try (MappingJournal journal = new MappingJournal(journalFile.getPath())) {
+            assertThat(journal.get(source(0)), is(equalTo(location(0))));
+            assertFalse(journal.containsKey(source(1)));
+        }
+    }
+
+    private static String source(int i) {
+        return String.format(SOURCE_TEMPLATE, i);
+    }
+
+    private static String location(int i) {
+        return String.format(LOCATION_TEMPLATE, i);
+    }
+}
@@ -0,0 +1,42 @@
+package no.greenall.entitydataloader.metrics;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    private static final int SAMPLES = 10_000;
+    private static final double RELATIVE_ERROR = 1.0 / 16;
+
+    @Test
+    public void testPercentilesAreWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int micros = 1; micros <= SAMPLES; micros++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(micros));
+        }
+
+        assertThat(histogram.getCount(), is(equalTo((long) SAMPLES)));
+        assertThat(histogram.getMaxMicros(), is(equalTo((long) SAMPLES)));
+        for (double percentile : new double[]{50, 90, 99, 99.9}) {
+            long expected = (long) (percentile / 100 * SAMPLES);
+            long actual = histogram.getPercentileMicros(percentile);
+            assertTrue(Math.abs(actual - expected) <= expected * RELATIVE_ERROR);
+        }
+    }
+
+    @Test
+    public void testBucketsCoverEveryValue() {
+        for (long micros : new long[]{0, 1, 15, 16, 17, 31, 32, 1_000, 123_456_789, Long.MAX_VALUE}) {
+            int bucket = LatencyHistogram.bucketOf(micros);
+            long highest = LatencyHistogram.highestValueIn(bucket);
+            assertTrue(micros <= highest);
+            assertTrue(bucket == 0 || micros > LatencyHistogram.highestValueIn(bucket - 1));
+        }
+    }
+}
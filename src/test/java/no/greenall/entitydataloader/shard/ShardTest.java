@@ -0,0 +1,48 @@
+package no.greenall.entitydataloader.shard;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertTrue;
+
+public class ShardTest {
+
+    private static final String CONCEPT_TEMPLATE = "http://data.ub.uio.no/humord/c%05d";
+    private static final int CONCEPTS = 1000;
+    private static final int SHARDS = 4;
+
+    @Test
+    public void testShardIsParsed() {
+        Shard shard = Shard.parse("2/4");
+
+        assertThat(shard.getIndex(), is(equalTo(2)));
+        assertThat(shard.getCount(), is(equalTo(SHARDS)));
+        assertThat(shard.toString(), is(equalTo("2/4")));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testShardOutsideTheSlicesIsRejected() {
+        Shard.parse("0/4");
+    }
+
+    @Test
+    public void testEveryConceptBelongsToExactlyOneShard() {
+        int[] slices = new int[SHARDS];
+        for (int i = 0; i < CONCEPTS; i++) {
+            String conceptIRI = String.format(CONCEPT_TEMPLATE, i);
+            int owners = 0;
+            for (int index = 1; index <= SHARDS; index++) {
+                if (new Shard(index, SHARDS).contains(conceptIRI)) {
+                    owners++;
+                    slices[index - 1]++;
+                }
+            }
+            assertThat(owners, is(equalTo(1)));
+        }
+        for (int slice : slices) {
+            assertTrue(slice > CONCEPTS / SHARDS / 2);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package no.greenall.entitydataloader.spool;
+
+import no.greenall.entitydataloader.EntityDto;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SpoolTest {
+
+    private static final String SPOOL_FILE = "load.spool";
+    private static final String ENTITY_URL_PREFIX = "http://example.org/entity/";
+    private static final String BODY_TEMPLATE = "{\"@id\":\"%1$s%2$d\",\"@type\":\"unit:Concept\","
+            + "\"unit:preferredLabel\":{\"@language\":\"nb\",\"@value\":\"Touo spr\u00e5k %3$d\"},"
+            + "\"unit:alternativeLabel\":{\"@language\":\"nb\",\"@value\":\"Touo spr\u00e5k %3$d\"},"
+            + "\"@context\":{\"unit\":\"http://unit.no/entitydata#\"}}";
+    private static final int PAYLOADS = 1000;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testPayloadsAreReadBackInOrder() {
+        assertRoundTrip(false);
+    }
+
+    @Test
+    public void testCompressedPayloadsAreReadBackInOrder() {
+        assertRoundTrip(true);
+    }
+
+    @Test
+    public void testCompressedSpoolIsSmaller() {
+        File plain = writeSpool("plain.spool", false);
+        File compressed = writeSpool("compressed.spool", true);
+
+        assertTrue(compressed.length() < plain.length());
+    }
+
+    @Test
+    public void testUncommittedSpoolIsNotLeftBehind() {
+        File file = new File(temporaryFolder.getRoot(), SPOOL_FILE);
+        try (SpoolWriter writer = new SpoolWriter(file.getPath(), ENTITY_URL_PREFIX, false)) {
+            writer.write(entityDto(0));
+        }
+
+        assertFalse(file.exists());
+        assertThat(temporaryFolder.getRoot().list().length, is(equalTo(0)));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testOtherFilesAreNotReadAsSpools() throws IOException {
+        File file = new File(temporaryFolder.getRoot(), SPOOL_FILE);
+        Files.write(file.toPath(), String.format(BODY_TEMPLATE, ENTITY_URL_PREFIX, 0, 0)
+                .getBytes(StandardCharsets.UTF_8));
+
+        new SpoolReader(file.getPath()).close();
+    }
+
+    private void assertRoundTrip(boolean compressed) {
+        File file = writeSpool(SPOOL_FILE, compressed);
+
+        List<EntityDto> payloads = new ArrayList<>();
+        try (SpoolReader reader = new SpoolReader(file.getPath())) {
+            assertThat(reader.getCount(), is(equalTo((long) PAYLOADS)));
+            assertThat(reader.getEntityUrlPrefix(), is(equalTo(ENTITY_URL_PREFIX)));
+            reader.forEach(payloads::add);
+        }
+        assertThat(payloads.size(), is(equalTo(PAYLOADS)));
+        for (int i = 0; i < PAYLOADS; i++) {
+            assertThat(payloads.get(i).getId(), is(equalTo(String.valueOf(i))));
+            assertThat(payloads.get(i).getBody(), is(equalTo(String.format(BODY_TEMPLATE, ENTITY_URL_PREFIX, i, i))));
+        }
+    }
+
+    private File writeSpool(String fileName, boolean compressed) {
+        File file = new File(temporaryFolder.getRoot(), fileName);
+        try (SpoolWriter writer = new SpoolWriter(file.getPath(), ENTITY_URL_PREFIX, compressed)) {
+            for (int i = 0; i < PAYLOADS; i++) {
+                writer.write(entityDto(i));
+            }
+            writer.commit();
+        }
+        return file;
+    }
+
+    private static EntityDto entityDto(int i) {
+        EntityDto entityDto = new EntityDto();
+        entityDto.setId(String.valueOf(i));
+        entityDto.setBody(String.format(BODY_TEMPLATE, ENTITY_URL_PREFIX, i, i));
+        return entityDto;
+    }
+}
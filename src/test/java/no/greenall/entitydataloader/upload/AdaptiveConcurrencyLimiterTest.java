@@ -0,0 +1,53 @@
+package no.greenall.entitydataloader.upload;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+public class AdaptiveConcurrencyLimiterTest {
+
+    private static final int MAX_LIMIT = 16;
+    private static final long LATENCY_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    @Test
+    public void testLimitGrowsToMaximumWhileRequestsSucceed() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, MAX_LIMIT);
+        completeRequests(limiter, 1_000, LATENCY_NANOS, false);
+
+        assertThat(limiter.getLimit(), is(equalTo(MAX_LIMIT)));
+    }
+
+    @Test
+    public void testLimitIsHalvedWhenRegistryIsOverloaded() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(MAX_LIMIT, MAX_LIMIT);
+        completeRequests(limiter, 1, LATENCY_NANOS, true);
+        assertThat(limiter.getLimit(), is(equalTo(MAX_LIMIT / 2)));
+
+        completeRequests(limiter, 1, LATENCY_NANOS, true);
+        assertThat(limiter.getLimit(), is(equalTo(MAX_LIMIT / 2)));
+
+        completeRequests(limiter, 100, LATENCY_NANOS, true);
+        assertThat(limiter.getLimit(), is(equalTo(1)));
+    }
+
+    @Test
+    public void testLimitIsLoweredWhenLatencyRises() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(MAX_LIMIT, MAX_LIMIT);
+        completeRequests(limiter, 100, LATENCY_NANOS, false);
+        completeRequests(limiter, 20, LATENCY_NANOS * 10, false);
+
+        assertThat(limiter.getLimit() < MAX_LIMIT, is(true));
+    }
+
+    private void completeRequests(AdaptiveConcurrencyLimiter limiter, int count, long latencyNanos,
+                                  boolean overloaded) {
+        for (int i = 0; i < count; i++) {
+            limiter.acquire();
+            limiter.release(latencyNanos, overloaded);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package no.greenall.entitydataloader.upload;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CircuitBreakerTest {
+
+    private static final int WINDOW_SIZE = 4;
+    private static final int THRESHOLD_PERCENT = 50;
+    private static final long PAUSE_MILLIS = 300;
+
+    @Test
+    public void testBreakerPausesCallersWhenFailuresReachThreshold() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(WINDOW_SIZE, THRESHOLD_PERCENT, PAUSE_MILLIS);
+        circuitBreaker.recordSuccess();
+        circuitBreaker.recordFailure();
+        circuitBreaker.recordSuccess();
+        assertFalse(circuitBreaker.isOpen());
+
+        circuitBreaker.recordFailure();
+        assertTrue(circuitBreaker.isOpen());
+
+        long start = System.nanoTime();
+        circuitBreaker.awaitPermission();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(elapsedMillis >= PAUSE_MILLIS / 2);
+        assertFalse(circuitBreaker.isOpen());
+    }
+
+    @Test
+    public void testBreakerStaysClosedBelowThresholdAndWhenDisabled() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(WINDOW_SIZE, THRESHOLD_PERCENT, PAUSE_MILLIS);
+        CircuitBreaker disabledBreaker = new CircuitBreaker(WINDOW_SIZE, 0, PAUSE_MILLIS);
+        for (int i = 0; i < WINDOW_SIZE * 10; i++) {
+            if (i % WINDOW_SIZE == 0) {
+                circuitBreaker.recordFailure();
+            } else {
+                circuitBreaker.recordSuccess();
+            }
+            disabledBreaker.recordFailure();
+        }
+
+        assertFalse(circuitBreaker.isOpen());
+        assertFalse(disabledBreaker.isOpen());
+    }
+}
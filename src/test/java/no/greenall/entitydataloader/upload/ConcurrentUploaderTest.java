@@ -0,0 +1,133 @@
+package no.greenall.entitydataloader.upload;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ConcurrentUploaderTest {
+
+    private static final int CONCURRENCY = 8;
+    private static final int ITEM_COUNT = 200;
+
+    @Test
+    public void testResultsAndProgressAreReportedInSubmissionOrder() {
+        List<Integer> items = IntStream.rangeClosed(1, ITEM_COUNT).boxed().collect(Collectors.toList());
+        List<Integer> progress = new ArrayList<>();
+
+        try (ConcurrentUploader uploader = new ConcurrentUploader(CONCURRENCY)) {
+            List<Integer> results = uploader.execute(items, item -> {
+                sleepRandomly();
+                return item * 2;
+            }, (position, result) -> progress.add(position));
+
+            assertThat(results, is(equalTo(items.stream().map(item -> item * 2).collect(Collectors.toList()))));
+            assertThat(progress, is(equalTo(items)));
+        }
+    }
+
+    @Test
+    public void testNoItemsAreSubmittedAfterAFailure() {
+        List<Integer> items = IntStream.rangeClosed(1, ITEM_COUNT).boxed().collect(Collectors.toList());
+        AtomicInteger started = new AtomicInteger();
+
+        try (ConcurrentUploader uploader = new ConcurrentUploader(CONCURRENCY)) {
+            uploader.execute(items, item -> {
+                started.incrementAndGet();
+                sleepRandomly();
+                if (item == 1) {
+                    throw new IllegalStateException("failed " + item);
+                }
+                return item;
+            }, (position, result) -> { });
+            fail("Expected UploadFailedException");
+        } catch (UploadFailedException e) {
+            List<Integer> failedPositions = e.getFailures().stream().map(UploadFailure::getPosition)
+                    .collect(Collectors.toList());
+            assertThat(failedPositions, is(equalTo(Collections.singletonList(1))));
+            assertTrue(started.get() <= 2 * CONCURRENCY);
+        }
+    }
+
+    @Test
+    public void testAsyncResultsAreReportedInSubmissionOrder() {
+        List<Integer> items = IntStream.rangeClosed(1, ITEM_COUNT).boxed().collect(Collectors.toList());
+        List<Integer> progress = new ArrayList<>();
+
+        try (ConcurrentUploader uploader = new ConcurrentUploader(CONCURRENCY)) {
+            List<Integer> results = uploader.executeAsync(items, item -> CompletableFuture.supplyAsync(() -> {
+                sleepRandomly();
+                return item * 2;
+            }), (position, result) -> progress.add(position));
+
+            assertThat(results, is(equalTo(items.stream().map(item -> item * 2).collect(Collectors.toList()))));
+            assertThat(progress, is(equalTo(items)));
+        }
+    }
+
+    @Test
+    public void testAsyncStagesInFlightAreCancelledWhenThePhaseIsAbandoned() {
+        List<Integer> items = IntStream.rangeClosed(1, ITEM_COUNT).boxed().collect(Collectors.toList());
+        List<CompletableFuture<Integer>> stages = new ArrayList<>();
+
+        try (ConcurrentUploader uploader = new ConcurrentUploader(CONCURRENCY)) {
+            uploader.executeAsync(items, item -> {
+                CompletableFuture<Integer> stage = item == 1 ? CompletableFuture.completedFuture(item)
+                        : new CompletableFuture<>();
+                stages.add(stage);
+                return stage;
+            }, (position, result) -> {
+                throw new IllegalStateException("abandoned");
+            });
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertThat(stages.size(), is(equalTo(2 * CONCURRENCY)));
+            assertTrue(stages.stream().skip(1).allMatch(CompletableFuture::isCancelled));
+        }
+    }
+
+    @Test
+    public void testAsyncItemsAreNotStartedAfterAFailure() {
+        List<Integer> items = IntStream.rangeClosed(1, ITEM_COUNT).boxed().collect(Collectors.toList());
+        List<CompletableFuture<Integer>> stages = new ArrayList<>();
+
+        try (ConcurrentUploader uploader = new ConcurrentUploader(CONCURRENCY)) {
+            uploader.executeAsync(items, item -> {
+                CompletableFuture<Integer> stage = item == 1 ? CompletableFuture.supplyAsync(() -> {
+                    sleepRandomly();
+                    throw new IllegalStateException("failed " + item);
+                }) : new CompletableFuture<>();
+                stages.add(stage);
+                return stage;
+            }, (position, result) -> { });
+            fail("Expected UploadFailedException");
+        } catch (UploadFailedException e) {
+            List<Integer> failedPositions = e.getFailures().stream().map(UploadFailure::getPosition)
+                    .collect(Collectors.toList());
+            assertThat(failedPositions, is(equalTo(Collections.singletonList(1))));
+            assertTrue(stages.size() <= 2 * CONCURRENCY);
+            assertTrue(stages.stream().skip(1).allMatch(CompletableFuture::isCancelled));
+        }
+    }
+
+    private void sleepRandomly() {
+        try {
+            TimeUnit.MILLISECONDS.sleep(ThreadLocalRandom.current().nextInt(3));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package no.greenall.entitydataloader.upload;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+public class RateLimiterTest {
+
+    private static final double PERMITS_PER_SECOND = 20;
+    private static final int REQUESTS = 30;
+
+    @Test
+    public void testRequestsBeyondTheBurstAreSpacedByTheRate() {
+        RateLimiter rateLimiter = new RateLimiter(PERMITS_PER_SECOND);
+        long start = System.nanoTime();
+        for (int i = 0; i < REQUESTS; i++) {
+            rateLimiter.acquire();
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        long expectedMillis = (long) ((REQUESTS - PERMITS_PER_SECOND) * 1000 / PERMITS_PER_SECOND);
+        assertTrue(elapsedMillis >= expectedMillis * 9 / 10);
+    }
+
+    @Test
+    public void testUnlimitedRateDoesNotBlock() {
+        RateLimiter rateLimiter = new RateLimiter(0);
+        long start = System.nanoTime();
+        for (int i = 0; i < REQUESTS * 1000; i++) {
+            rateLimiter.acquire();
+        }
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+    }
+}
@@ -0,0 +1,52 @@
+package no.greenall.entitydataloader.upload;
+
+import org.junit.Test;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RetryPolicyTest {
+
+    private static final long BASE_DELAY_MILLIS = 100;
+    private static final long MAX_DELAY_MILLIS = 1_000;
+
+    @Test
+    public void testDelayIsJitteredBelowCappedExponentialBackoff() {
+        RetryPolicy retryPolicy = new RetryPolicy(5, BASE_DELAY_MILLIS, MAX_DELAY_MILLIS);
+        for (int retry = 0; retry < 10; retry++) {
+            long ceiling = Math.min(MAX_DELAY_MILLIS, BASE_DELAY_MILLIS << retry);
+            for (int sample = 0; sample < 100; sample++) {
+                long delay = retryPolicy.delayMillis(retry, null);
+                assertTrue(delay >= 0 && delay <= ceiling);
+            }
+        }
+    }
+
+    @Test
+    public void testRetryAfterIsALowerBoundOnTheDelay() {
+        RetryPolicy retryPolicy = new RetryPolicy(5, BASE_DELAY_MILLIS, MAX_DELAY_MILLIS);
+        String inOneMinute = DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC).plusMinutes(1));
+
+        assertTrue(retryPolicy.delayMillis(0, "5") >= 5_000);
+        assertTrue(retryPolicy.delayMillis(0, inOneMinute) > 50_000);
+        assertThat(RetryPolicy.retryAfterMillis("soon"), is(equalTo(0L)));
+        assertThat(RetryPolicy.retryAfterMillis(null), is(equalTo(0L)));
+    }
+
+    @Test
+    public void testOnlyTransientStatusCodesAreRetryable() {
+        RetryPolicy retryPolicy = new RetryPolicy(5, BASE_DELAY_MILLIS, MAX_DELAY_MILLIS);
+
+        assertTrue(retryPolicy.isRetryable(503));
+        assertTrue(retryPolicy.isRetryable(429));
+        assertFalse(retryPolicy.isRetryable(400));
+        assertFalse(retryPolicy.isRetryable(404));
+    }
+}
@@ -0,0 +1,57 @@
+package no.greenall.entitydataloader.util;
+
+import no.greenall.entitydataloader.entity.ConceptIndex;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.vocabulary.RDF;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Splits a vocabulary into a directory of per-concept files in mixed serializations, the way collections are
+ * delivered, together with a file that is not RDF.
+ */
+public final class CollectionFiles {
+
+    public static final String README = "README.txt";
+
+    private static final List<Lang> LANGS = Arrays.asList(Lang.TURTLE, Lang.NTRIPLES, Lang.RDFXML, Lang.JSONLD);
+    private static final List<String> EXTENSIONS = Arrays.asList("ttl", "nt", "rdf", "jsonld");
+    private static final String FILE_NAME_TEMPLATE = "collection-%d.%s";
+    private static final String README_TEXT = "Per-collection exports";
+
+    private CollectionFiles() {
+    }
+
+    /**
+     * @return The directory, holding a file for each concept of the input and a {@link #README}
+     */
+    public static File write(String inputPath, File directory) throws IOException {
+        Model input = RDFDataMgr.loadModel(inputPath);
+        Files.createDirectories(directory.toPath());
+        int index = 0;
+        for (Resource concept : input.listSubjectsWithProperty(RDF.type, ConceptIndex.CONCEPT).toList()) {
+            Model description = ModelFactory.createDefaultModel();
+            description.setNsPrefixes(input.getNsPrefixMap());
+            description.add(concept.listProperties());
+            int format = index % LANGS.size();
+            File file = new File(directory, String.format(FILE_NAME_TEMPLATE, index, EXTENSIONS.get(format)));
+            try (OutputStream outputStream = new FileOutputStream(file)) {
+                RDFDataMgr.write(outputStream, description, LANGS.get(format));
+            }
+            index++;
+        }
+        Files.write(new File(directory, README).toPath(), README_TEXT.getBytes(StandardCharsets.UTF_8));
+        return directory;
+    }
+}
@@ -0,0 +1,526 @@
+package no.greenall.entitydataloader.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import no.greenall.entitydataloader.EntityDto;
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * In-process stand-in for the entity registry, implementing {@code POST /entity}, {@code PUT /entity/{id}} and the
+ * bulk variants {@code POST /entity/bulk} and {@code PUT /entity/bulk}, and keeping count of the requests and client
+ * connections it has seen.
+ *
+ * <p>A bulk request takes a JSON array of entities and answers {@code 207} with a JSON array holding the {@code id},
+ * {@code status} and, for created entities, {@code location} of each entity. Created entities keep the id supplied
+ * by the client unless {@link #setHonourClientIds(boolean)} is turned off.
+ *
+ * <p>Single requests are answered with the {@code ETag} of the entity, the quoted MD5 hash of its body, and a single
+ * update with an {@code If-Match} header that does not match the entity is refused with {@code 412}.
+ *
+ * <p>Request bodies with a gzip or deflate {@code Content-Encoding} are decompressed before they are handled.
+ *
+ * <p>For load and soak tests the registry can check the API key of every request, answer after a log-normal latency,
+ * and fail a share of the requests at random with one of the {@link Fault}s. Besides the requests, it counts the
+ * injected faults, the largest number of requests in flight at once, the replayed creates of an id that is already
+ * taken, which leave the entity as it is, and the duplicate creates of a description whose {@code @id} was created
+ * before under another id.
+ */
+public class StubRegistry implements AutoCloseable {
+
+    private static final String LOCALHOST = "localhost";
+    private static final String ENTITY_PATH = "/entity";
+    private static final String BULK_PATH = ENTITY_PATH + "/bulk";
+    private static final String ID = "id";
+    private static final String STATUS = "status";
+    private static final String LOCATION_FIELD = "location";
+    private static final String CONTENT_TYPE = "Content-Type";
+    private static final String APPLICATION_JSON = "application/json";
+    private static final int MULTI_STATUS = 207;
+    private static final String PATH_SEPARATOR = "/";
+    private static final String LOCATION = "Location";
+    private static final String RETRY_AFTER = "Retry-After";
+    private static final String ETAG = "ETag";
+    private static final String IF_MATCH = "If-Match";
+    private static final String CONTENT_ENCODING = "Content-Encoding";
+    private static final String GZIP = "gzip";
+    private static final String DEFLATE = "deflate";
+    private static final String BODY = "body";
+    private static final String ETAG_TEMPLATE = "\"%s\"";
+    private static final String POST = "POST";
+    private static final String PUT = "PUT";
+    private static final String URL_TEMPLATE = "http://%s:%d";
+    private static final int NO_RESPONSE_BODY = -1;
+    private static final String API_KEY = "api-key";
+    private static final String NODE_ID = "@id";
+    private static final int UNAUTHORIZED = 401;
+    private static final int NO_STATUS = 0;
+    private static final long RANDOM_SEED = 42;
+    private static final long DEFAULT_TIMEOUT_MILLIS = 5000;
+
+    /**
+     * The ways in which the registry can fail a request before handling it.
+     */
+    public enum Fault {
+        INTERNAL_SERVER_ERROR(500),
+        SERVICE_UNAVAILABLE(503),
+        TOO_MANY_REQUESTS(429),
+        /**
+         * Holds the request without answering for {@link #setTimeoutMillis(long)}, and then closes the connection.
+         */
+        TIMEOUT(NO_STATUS),
+        /**
+         * Closes the connection without answering.
+         */
+        DROPPED_CONNECTION(NO_STATUS);
+
+        private final int status;
+
+        Fault(int status) {
+            this.status = status;
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executorService;
+    private final Set<InetSocketAddress> connections = ConcurrentHashMap.newKeySet();
+    private final Map<String, String> entities = new ConcurrentHashMap<>();
+    private final List<String> createRequestBodies = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger createCount = new AtomicInteger();
+    private final AtomicInteger updateCount = new AtomicInteger();
+    private final AtomicInteger bulkRequestCount = new AtomicInteger();
+    private final AtomicInteger bulkItemCount = new AtomicInteger();
+    private final AtomicInteger compressedRequestCount = new AtomicInteger();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private volatile boolean bulkSupported = true;
+    private volatile int bulkItemFailureInterval;
+    private volatile boolean honourClientIds = true;
+    private volatile int clientIdCreateLimit = Integer.MAX_VALUE;
+    private final AtomicInteger pendingFailures = new AtomicInteger();
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final CountDownLatch firstRequest = new CountDownLatch(1);
+    private volatile int failureStatus;
+    private volatile String failureRetryAfter;
+    private final AtomicInteger pendingFaults = new AtomicInteger();
+    private final AtomicInteger pendingStalls = new AtomicInteger();
+    private volatile Fault pendingFault;
+    private final Random random = new Random(RANDOM_SEED);
+    private volatile String apiKey;
+    private volatile long medianLatencyMillis;
+    private volatile double latencySigma;
+    private volatile double faultRate;
+    private volatile Fault[] faults = new Fault[0];
+    private volatile long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+    private final Set<String> createdNodeIds = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger duplicateCreateCount = new AtomicInteger();
+    private final AtomicInteger replayedCreateCount = new AtomicInteger();
+    private final AtomicInteger unauthorizedCount = new AtomicInteger();
+    private final AtomicInteger injectedFaultCount = new AtomicInteger();
+    private final AtomicInteger requestsInFlight = new AtomicInteger();
+    private final AtomicInteger maxRequestsInFlight = new AtomicInteger();
+    private volatile boolean keepCreateRequestBodies = true;
+
+    public StubRegistry() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(LOCALHOST, 0), 0);
+        executorService = Executors.newCachedThreadPool();
+        server.setExecutor(executorService);
+        server.createContext(ENTITY_PATH, this::handle);
+        server.start();
+    }
+
+    public URL getUrl() {
+        try {
+            return new URL(String.format(URL_TEMPLATE, LOCALHOST, server.getAddress().getPort()));
+        } catch (MalformedURLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        maxRequestsInFlight.accumulateAndGet(requestsInFlight.incrementAndGet(), Math::max);
+        try {
+            serve(exchange);
+        } finally {
+            requestsInFlight.decrementAndGet();
+        }
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        connections.add(exchange.getRemoteAddress());
+        String body = readBody(exchange.getRequestBody(), exchange.getRequestHeaders().getFirst(CONTENT_ENCODING));
+        String path = exchange.getRequestURI().getPath();
+        String method = exchange.getRequestMethod();
+        requestCount.incrementAndGet();
+        firstRequest.countDown();
+        pause(nextLatencyMillis());
+
+        if (apiKey != null && !apiKey.equals(exchange.getRequestHeaders().getFirst(API_KEY))) {
+            unauthorizedCount.incrementAndGet();
+            exchange.sendResponseHeaders(UNAUTHORIZED, NO_RESPONSE_BODY);
+            exchange.close();
+            return;
+        }
+
+        Fault fault = nextFault();
+        if (fault != null) {
+            injectedFaultCount.incrementAndGet();
+            if (fault == Fault.TIMEOUT) {
+                pause(timeoutMillis);
+            }
+            // Closing the exchange of a request that was not answered closes its connection
+            if (fault.status != NO_STATUS) {
+                exchange.sendResponseHeaders(fault.status, NO_RESPONSE_BODY);
+            }
+        } else if (pendingFailures.getAndUpdate(failures -> Math.max(0, failures - 1)) > 0) {
+            if (failureRetryAfter != null) {
+                exchange.getResponseHeaders().add(RETRY_AFTER, failureRetryAfter);
+            }
+            exchange.sendResponseHeaders(failureStatus, NO_RESPONSE_BODY);
+        } else if (BULK_PATH.equals(path)) {
+            handleBulk(exchange, method, body);
+        } else if (POST.equals(method) && ENTITY_PATH.equals(path)) {
+            String id = create(objectMapper.readTree(body), body);
+            exchange.getResponseHeaders().add(LOCATION, locationOf(id));
+            exchange.getResponseHeaders().add(ETAG, etagOf(id));
+            exchange.sendResponseHeaders(201, NO_RESPONSE_BODY);
+        } else if (PUT.equals(method) && path.startsWith(ENTITY_PATH + PATH_SEPARATOR)) {
+            String id = path.substring(path.lastIndexOf(PATH_SEPARATOR) + 1);
+            String ifMatch = exchange.getRequestHeaders().getFirst(IF_MATCH);
+            if (ifMatch != null && entities.containsKey(id) && !ifMatch.equals(etagOf(id))) {
+                exchange.sendResponseHeaders(412, NO_RESPONSE_BODY);
+            } else if (update(id, body)) {
+                exchange.getResponseHeaders().add(ETAG, etagOf(id));
+                exchange.sendResponseHeaders(200, NO_RESPONSE_BODY);
+            } else {
+                exchange.sendResponseHeaders(404, NO_RESPONSE_BODY);
+            }
+        } else {
+            exchange.sendResponseHeaders(405, NO_RESPONSE_BODY);
+        }
+        exchange.close();
+    }
+
+    private void handleBulk(HttpExchange exchange, String method, String body) throws IOException {
+        bulkRequestCount.incrementAndGet();
+        if (!bulkSupported || !(POST.equals(method) || PUT.equals(method))) {
+            exchange.sendResponseHeaders(404, NO_RESPONSE_BODY);
+            return;
+        }
+
+        ArrayNode results = objectMapper.createArrayNode();
+        for (JsonNode entity : objectMapper.readTree(body)) {
+            ObjectNode result = results.addObject();
+            String id = entity.get(ID).asText();
+            result.put(ID, id);
+            int failureInterval = bulkItemFailureInterval;
+            if (failureInterval > 0 && bulkItemCount.incrementAndGet() % failureInterval == 0) {
+                result.put(STATUS, 503);
+            } else if (POST.equals(method)) {
+                result.put(STATUS, 201);
+                result.put(LOCATION_FIELD, locationOf(create(entity, entity.toString())));
+            } else {
+                result.put(STATUS, update(id, entity.toString()) ? 200 : 404);
+            }
+        }
+
+        byte[] response = objectMapper.writeValueAsBytes(results);
+        exchange.getResponseHeaders().add(CONTENT_TYPE, APPLICATION_JSON);
+        exchange.sendResponseHeaders(MULTI_STATUS, response.length);
+        if (pendingStalls.getAndUpdate(stalls -> Math.max(0, stalls - 1)) > 0) {
+            injectedFaultCount.incrementAndGet();
+            OutputStream outputStream = exchange.getResponseBody();
+            outputStream.write(response, 0, response.length / 2);
+            outputStream.flush();
+            pause(timeoutMillis);
+            // Closing the exchange short of the announced length closes its connection
+            return;
+        }
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(response);
+        }
+    }
+
+    private String create(JsonNode entity, String body) {
+        String requestedId = entity.path(ID).asText(null);
+        String id = honourClientIds && requestedId != null && createCount.get() < clientIdCreateLimit
+                ? requestedId : UUID.randomUUID().toString();
+        String nodeId = entity.path(BODY).path(NODE_ID).asText(null);
+        if (entities.put(id, body) != null) {
+            replayedCreateCount.incrementAndGet();
+        } else if (nodeId != null && !createdNodeIds.add(nodeId)) {
+            duplicateCreateCount.incrementAndGet();
+        }
+        if (keepCreateRequestBodies) {
+            createRequestBodies.add(body);
+        }
+        createCount.incrementAndGet();
+        return id;
+    }
+
+    private boolean update(String id, String body) {
+        if (entities.replace(id, body) != null) {
+            updateCount.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    private Fault nextFault() {
+        if (pendingFaults.getAndUpdate(faults -> Math.max(0, faults - 1)) > 0) {
+            return pendingFault;
+        }
+        Fault[] candidates = faults;
+        if (candidates.length == 0 || random.nextDouble() >= faultRate) {
+            return null;
+        }
+        return candidates[random.nextInt(candidates.length)];
+    }
+
+    private long nextLatencyMillis() {
+        long median = medianLatencyMillis;
+        return median > 0 ? Math.round(median * Math.exp(latencySigma * random.nextGaussian())) : 0;
+    }
+
+    private static void pause(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private String etagOf(String id) throws IOException {
+        EntityDto entityDto = new EntityDto();
+        entityDto.setBody(objectMapper.readTree(entities.get(id)).path(BODY).toString());
+        return String.format(ETAG_TEMPLATE, entityDto.getEtagValue());
+    }
+
+    private String locationOf(String id) {
+        return getUrl() + ENTITY_PATH + PATH_SEPARATOR + id;
+    }
+
+    private String readBody(InputStream requestBody, String contentEncoding) throws IOException {
+        InputStream decoded = requestBody;
+        if (GZIP.equals(contentEncoding)) {
+            decoded = new GZIPInputStream(requestBody);
+        } else if (DEFLATE.equals(contentEncoding)) {
+            decoded = new InflaterInputStream(requestBody);
+        }
+        if (decoded != requestBody) {
+            compressedRequestCount.incrementAndGet();
+        }
+        try (InputStream inputStream = decoded) {
+            return IOUtils.toString(inputStream, StandardCharsets.UTF_8);
+        }
+    }
+
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    public int getCreateCount() {
+        return createCount.get();
+    }
+
+    public int getUpdateCount() {
+        return updateCount.get();
+    }
+
+    public int getBulkRequestCount() {
+        return bulkRequestCount.get();
+    }
+
+    public int getRequestCount() {
+        return requestCount.get();
+    }
+
+    public int getCompressedRequestCount() {
+        return compressedRequestCount.get();
+    }
+
+    public int getDuplicateCreateCount() {
+        return duplicateCreateCount.get();
+    }
+
+    public int getReplayedCreateCount() {
+        return replayedCreateCount.get();
+    }
+
+    public int getUnauthorizedCount() {
+        return unauthorizedCount.get();
+    }
+
+    public int getInjectedFaultCount() {
+        return injectedFaultCount.get();
+    }
+
+    public int getMaxRequestsInFlight() {
+        return maxRequestsInFlight.get();
+    }
+
+    /**
+     * Waits until the registry has received a request.
+     *
+     * @return Whether a request was received before the timeout
+     */
+    public boolean awaitFirstRequest(long timeout, TimeUnit unit) throws InterruptedException {
+        return firstRequest.await(timeout, unit);
+    }
+
+    /**
+     * Answers the next requests with the status code before handling requests normally again.
+     *
+     * @param count      The number of requests to fail
+     * @param status     The status code to answer with
+     * @param retryAfter The value of the {@code Retry-After} header, or null to leave it out
+     */
+    public void failNextRequests(int count, int status, String retryAfter) {
+        this.failureStatus = status;
+        this.failureRetryAfter = retryAfter;
+        pendingFailures.set(count);
+    }
+
+    /**
+     * Fails the next requests with the fault.
+     */
+    public void failNextRequests(int count, Fault fault) {
+        this.pendingFault = fault;
+        pendingFaults.set(count);
+    }
+
+    /**
+     * Carries out the next bulk requests, but sends only the first half of each response body before holding it for
+     * {@link #setTimeoutMillis(long)} and closing the connection.
+     */
+    public void stallNextResponses(int count) {
+        pendingStalls.set(count);
+    }
+
+    /**
+     * Fails a share of the requests, drawn at random, with one of the faults, also drawn at random.
+     *
+     * @param rate The share of the requests to fail, between 0 and 1
+     */
+    public void setFaults(double rate, Fault... faults) {
+        this.faultRate = rate;
+        this.faults = faults.clone();
+    }
+
+    /**
+     * How long a request failing with {@link Fault#TIMEOUT} is held before its connection is closed.
+     */
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Delays every request by a latency drawn from a log-normal distribution, as the latencies of a service under load
+     * tend to be.
+     *
+     * @param medianMillis The median latency, or 0 to answer at once
+     * @param sigma        The shape of the distribution, 0 for a fixed latency and about 1 for a long tail
+     */
+    public void setLatency(long medianMillis, double sigma) {
+        this.medianLatencyMillis = medianMillis;
+        this.latencySigma = sigma;
+    }
+
+    /**
+     * Refuses requests that do not carry the API key with {@code 401}, or accepts any key if the key is null.
+     */
+    public void setApiKey(String apiKey) {
+        this.apiKey = apiKey;
+    }
+
+    /**
+     * Whether the bodies of create requests are kept for {@link #getCreateRequestBodies()}, which soak tests turn off
+     * to keep the heap for the load.
+     */
+    public void setKeepCreateRequestBodies(boolean keepCreateRequestBodies) {
+        this.keepCreateRequestBodies = keepCreateRequestBodies;
+    }
+
+    /**
+     * Whether a created entity gets the id supplied by the client, or an id chosen by the registry.
+     */
+    public void setHonourClientIds(boolean honourClientIds) {
+        this.honourClientIds = honourClientIds;
+    }
+
+    /**
+     * Gives the first created entities the ids supplied by the client, and those created after them ids chosen by the
+     * registry.
+     */
+    public void stopHonouringClientIdsAfter(int creates) {
+        this.clientIdCreateLimit = creates;
+    }
+
+    public void setBulkSupported(boolean bulkSupported) {
+        this.bulkSupported = bulkSupported;
+    }
+
+    /**
+     * Makes every n-th entity of a bulk request fail with {@code 503}, while single requests still succeed.
+     */
+    public void setBulkItemFailureInterval(int bulkItemFailureInterval) {
+        this.bulkItemFailureInterval = bulkItemFailureInterval;
+    }
+
+    /**
+     * Changes the body of an entity as another client of the registry would, without counting it as an update.
+     */
+    public void changeEntity(String id, String body) {
+        ObjectNode entity = objectMapper.createObjectNode();
+        entity.put(ID, id);
+        try {
+            entity.set(BODY, objectMapper.readTree(body));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        entities.put(id, entity.toString());
+    }
+
+    public List<String> getCreateRequestBodies() {
+        return new ArrayList<>(createRequestBodies);
+    }
+
+    public Map<String, String> getEntities() {
+        return Collections.unmodifiableMap(entities);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executorService.shutdownNow();
+    }
+}
@@ -0,0 +1,88 @@
+package no.greenall.entitydataloader.util;
+
+import no.greenall.entitydataloader.entity.ConceptIndex;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.vocabulary.RDF;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Generates vocabularies of any size with the shape of {@code humord-mini.ttl}: every concept has a type, scheme,
+ * identifier, label, note and modification date, and every concept but the first has a broader concept earlier in
+ * the vocabulary.
+ */
+public final class SyntheticVocabulary {
+
+    public static final String NAMESPACE = "http://data.ub.uio.no/humord/synthetic-";
+
+    private static final String SCHEME = "https://unit.no/systems#humord";
+    private static final String LANGUAGE = "nb";
+    private static final String LABEL_TEMPLATE = "Syntetisk begrep %d";
+    private static final String NOTE_TEMPLATE = "Lukket bemerkning: syntetisk %d";
+    private static final String IDENTIFIER_TEMPLATE = "HUME%05d";
+    private static final String MODIFIED = "2014-12-30";
+    private static final String FILE_PREFIX = "synthetic-";
+    private static final String FILE_SUFFIX_TEMPLATE = ".%s";
+    private static final int BRANCHING = 10;
+
+    private SyntheticVocabulary() {
+    }
+
+    public static String conceptIRI(int index) {
+        return NAMESPACE + index;
+    }
+
+    public static Model generate(int size) {
+        Model model = ModelFactory.createDefaultModel();
+        model.setNsPrefix("unit", ConceptIndex.UNIT_ONTOLOGY_IRI);
+        Resource scheme = model.createResource(SCHEME);
+        Property inScheme = unitProperty(model, "inScheme");
+        Property broader = unitProperty(model, "broader");
+        Property editorialNote = unitProperty(model, "editorialNote");
+        Property localIdentifier = unitProperty(model, "localIdentifier");
+        Property modified = unitProperty(model, "modified");
+        Property preferredLabel = unitProperty(model, "preferredLabel");
+
+        for (int i = 0; i < size; i++) {
+            Resource concept = model.createResource(conceptIRI(i))
+                    .addProperty(RDF.type, ConceptIndex.CONCEPT)
+                    .addProperty(editorialNote, String.format(NOTE_TEMPLATE, i), LANGUAGE)
+                    .addProperty(inScheme, scheme)
+                    .addProperty(localIdentifier, String.format(IDENTIFIER_TEMPLATE, i))
+                    .addProperty(modified, model.createTypedLiteral(MODIFIED, XSDDatatype.XSDdate))
+                    .addProperty(preferredLabel, String.format(LABEL_TEMPLATE, i), LANGUAGE);
+            if (i > 0) {
+                concept.addProperty(broader, model.createResource(conceptIRI((i - 1) / BRANCHING)));
+            }
+        }
+        return model;
+    }
+
+    /**
+     * Writes a generated vocabulary to a new file in the directory.
+     *
+     * @return The file, named with the first file extension of the serialization
+     */
+    public static File write(int size, Lang lang, File directory) throws IOException {
+        String extension = lang.getFileExtensions().get(0);
+        File file = File.createTempFile(FILE_PREFIX + size + "-", String.format(FILE_SUFFIX_TEMPLATE, extension),
+                directory);
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            RDFDataMgr.write(outputStream, generate(size), lang);
+        }
+        return file;
+    }
+
+    private static Property unitProperty(Model model, String localName) {
+        return model.createProperty(ConceptIndex.UNIT_ONTOLOGY_IRI, localName);
+    }
+}
@@ -0,0 +1,65 @@
+package no.greenall.entitydataloader.validation;
+
+import no.greenall.entitydataloader.entity.ConceptIndex;
+import no.greenall.entitydataloader.metrics.LoadMetrics;
+import no.greenall.entitydataloader.metrics.Phase;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collections;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.Assert.assertTrue;
+
+public class ConceptValidatorTest {
+
+    private static final String HUMORD_LINKED_TTL = "humord-linked.ttl";
+    private static final String HUMORD_SHAPES_TTL = "humord-shapes.ttl";
+    private static final String MISSING_LABEL = "unit:preferredLabel   \"Touo sprak\"@nb ;";
+    private static final String UNLABELLED_CONCEPT = "http://data.ub.uio.no/humord/c27725";
+    private static final String PREFERRED_LABEL = "preferredLabel";
+    private static final int THREADS = 2;
+    private static final int LINKED_CONCEPTS = 3;
+
+    @Test
+    public void testConformingConceptsHaveNoViolations() throws IOException {
+        LoadMetrics metrics = new LoadMetrics();
+        ValidationSummary summary = validator().validateAll(new ConceptIndex(read("")), THREADS, metrics);
+
+        assertThat(summary.getValidated(), is(equalTo(LINKED_CONCEPTS)));
+        assertTrue(summary.getInvalidConceptIRIs().isEmpty());
+        assertThat(metrics.getHistogram(Phase.VALIDATE).getCount(), is(equalTo((long) LINKED_CONCEPTS)));
+    }
+
+    @Test
+    public void testConceptWithoutLabelIsReported() throws IOException {
+        ValidationSummary summary = validator().validateAll(new ConceptIndex(read(MISSING_LABEL)), THREADS,
+                new LoadMetrics());
+
+        assertThat(summary.getInvalidConceptIRIs(), is(equalTo(Collections.singleton(UNLABELLED_CONCEPT))));
+        assertTrue(summary.report().contains(UNLABELLED_CONCEPT));
+        assertTrue(summary.report().contains(PREFERRED_LABEL));
+    }
+
+    private ConceptValidator validator() {
+        return new ConceptValidator(getClass().getClassLoader().getResource(HUMORD_SHAPES_TTL).getPath());
+    }
+
+    private Model read(String removedStatement) throws IOException {
+        String input = new String(Files.readAllBytes(Paths.get(
+                getClass().getClassLoader().getResource(HUMORD_LINKED_TTL).getPath())), StandardCharsets.UTF_8);
+        Model model = ModelFactory.createDefaultModel();
+        RDFDataMgr.read(model, new StringReader(input.replace(removedStatement, "")), null, Lang.TURTLE);
+        return model;
+    }
+}